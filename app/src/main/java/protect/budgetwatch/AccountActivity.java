@@ -0,0 +1,53 @@
+package protect.budgetwatch;
+
+import android.view.Menu;
+import android.view.MenuItem;
+import android.widget.ListAdapter;
+
+import java.util.List;
+
+/**
+ * Lists the accounts used by transactions, with the expenses and
+ * revenues of each during a date range and its balance over all time.
+ */
+public class AccountActivity extends DateRangeListActivity<List<AccountTotal>>
+{
+    public AccountActivity()
+    {
+        super("accountStart", "accountEnd", R.string.noAccounts);
+    }
+
+    @Override
+    List<AccountTotal> load(DBHelper db, long startMs, long endMs)
+    {
+        return db.getAccountTotals(startMs, endMs);
+    }
+
+    @Override
+    ListAdapter createAdapter(List<AccountTotal> accounts)
+    {
+        return new AccountAdapter(this, accounts);
+    }
+
+    @Override
+    public boolean onCreateOptionsMenu(Menu menu)
+    {
+        getMenuInflater().inflate(R.menu.account_menu, menu);
+        return super.onCreateOptionsMenu(menu);
+    }
+
+    @Override
+    public boolean onOptionsItemSelected(MenuItem item)
+    {
+        int id = item.getItemId();
+
+        if(id == R.id.action_calendar)
+        {
+            DateSelectDialogFragment.forCurrentActivity("accountStart", "accountEnd")
+                    .show(getFragmentManager(), "tag");
+            return true;
+        }
+
+        return super.onOptionsItemSelected(item);
+    }
+}
@@ -0,0 +1,63 @@
+package protect.budgetwatch;
+
+import android.content.Context;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.ArrayAdapter;
+import android.widget.TextView;
+
+import java.util.List;
+
+class AccountAdapter extends ArrayAdapter<AccountTotal>
+{
+    private final String NO_ACCOUNT_NAME;
+    private final String TOTALS_FORMAT;
+
+    public AccountAdapter(Context context, List<AccountTotal> items)
+    {
+        super(context, 0, items);
+
+        NO_ACCOUNT_NAME = context.getResources().getString(R.string.noAccountName);
+        TOTALS_FORMAT = context.getResources().getString(R.string.accountTotalsFormat);
+    }
+
+    static class ViewHolder
+    {
+        TextView accountName;
+        TextView accountTotals;
+    }
+
+    @Override
+    public View getView(int position, View convertView, ViewGroup parent)
+    {
+        // Get the data item for this position
+        AccountTotal item = getItem(position);
+
+        ViewHolder holder;
+
+        // Check if an existing view is being reused, otherwise inflate the view
+
+        if (convertView == null)
+        {
+            convertView = LayoutInflater.from(getContext()).inflate(R.layout.account_layout,
+                    parent, false);
+
+            holder = new ViewHolder();
+            holder.accountName = (TextView) convertView.findViewById(R.id.accountName);
+            holder.accountTotals = (TextView) convertView.findViewById(R.id.accountTotals);
+            convertView.setTag(holder);
+        }
+        else
+        {
+            holder = (ViewHolder)convertView.getTag();
+        }
+
+        holder.accountName.setText(item.account.isEmpty() ? NO_ACCOUNT_NAME : item.account);
+        holder.accountTotals.setText(String.format(TOTALS_FORMAT,
+                MoneyUtil.toUnits(item.expenseCents), MoneyUtil.toUnits(item.revenueCents),
+                MoneyUtil.toUnits(item.balanceCents)));
+
+        return convertView;
+    }
+}
@@ -0,0 +1,24 @@
+package protect.budgetwatch;
+
+/**
+ * The totals of the transactions of one account,
+ * as returned by DBHelper.getAccountTotals().
+ */
+public class AccountTotal
+{
+    public final String account; // "" for transactions without an account
+    public final long expenseCents;
+    public final long revenueCents;
+
+    // Revenues less expenses over all time
+    public final long balanceCents;
+
+    public AccountTotal(final String account, final long expenseCents, final long revenueCents,
+                        final long balanceCents)
+    {
+        this.account = account;
+        this.expenseCents = expenseCents;
+        this.revenueCents = revenueCents;
+        this.balanceCents = balanceCents;
+    }
+}
@@ -0,0 +1,75 @@
+package protect.budgetwatch;
+
+import android.content.Context;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.util.AttributeSet;
+import android.view.View;
+
+import androidx.core.content.ContextCompat;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Draws the expenses of a series of buckets as a bar chart,
+ * oldest on the left.
+ */
+public class BucketChartView extends View
+{
+    private final Paint _barPaint = new Paint();
+    private List<TotalsBucket> _buckets = Collections.emptyList();
+    private long _maxExpenseCents = 0;
+
+    public BucketChartView(Context context, AttributeSet attrs)
+    {
+        super(context, attrs);
+        _barPaint.setColor(ContextCompat.getColor(context, R.color.colorPrimary));
+        _barPaint.setStyle(Paint.Style.FILL);
+    }
+
+    public void setBuckets(List<TotalsBucket> buckets)
+    {
+        _buckets = buckets;
+        _maxExpenseCents = 0;
+        for(TotalsBucket bucket : buckets)
+        {
+            _maxExpenseCents = Math.max(_maxExpenseCents, bucket.expenseCents);
+        }
+
+        invalidate();
+    }
+
+    public List<TotalsBucket> getBuckets()
+    {
+        return _buckets;
+    }
+
+    @Override
+    protected void onDraw(Canvas canvas)
+    {
+        super.onDraw(canvas);
+
+        if(_buckets.isEmpty() || _maxExpenseCents <= 0)
+        {
+            return;
+        }
+
+        final float left = getPaddingLeft();
+        final float top = getPaddingTop();
+        final float width = getWidth() - getPaddingLeft() - getPaddingRight();
+        final float height = getHeight() - getPaddingTop() - getPaddingBottom();
+        final float barWidth = width / _buckets.size();
+
+        for(int index = 0; index < _buckets.size(); index++)
+        {
+            long expenseCents = Math.max(_buckets.get(index).expenseCents, 0);
+            float barHeight = height * expenseCents / _maxExpenseCents;
+            float barLeft = left + barWidth * index;
+
+            // Leave a gap between bars when there is room for one
+            float gap = barWidth > 3 ? 1 : 0;
+            canvas.drawRect(barLeft, top + height - barHeight, barLeft + barWidth - gap, top + height, _barPaint);
+        }
+    }
+}
@@ -6,10 +6,28 @@ public class Budget
     public final int max;
     public final int current;
 
+    // Exact value of 'current' in cents, before it was rounded up
+    public final long currentCents;
+
     public Budget(final String name, final int max, final int value)
+    {
+        this(name, max, value, (long)value * 100);
+    }
+
+    private Budget(final String name, final int max, final int value, final long valueCents)
     {
         this.name = name;
         this.max = max;
         this.current = value;
+        this.currentCents = valueCents;
+    }
+
+    /**
+     * Create a Budget whose current value is given in cents. The 'current'
+     * field is rounded up to whole units.
+     */
+    public static Budget fromCents(final String name, final int max, final long valueCents)
+    {
+        return new Budget(name, max, MoneyUtil.toUnitsRoundedUp(valueCents), valueCents);
     }
 }
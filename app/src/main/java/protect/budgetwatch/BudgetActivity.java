@@ -1,9 +1,11 @@
 package protect.budgetwatch;
 
 
+import android.content.DialogInterface;
 import android.content.Intent;
 import android.os.Bundle;
 import androidx.appcompat.app.ActionBar;
+import androidx.appcompat.app.AlertDialog;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.appcompat.widget.Toolbar;
 import android.util.Log;
@@ -18,14 +20,32 @@ import android.widget.ProgressBar;
 import android.widget.TextView;
 
 import java.text.DateFormat;
+import java.text.SimpleDateFormat;
 import java.util.Calendar;
+import java.util.Collections;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 
 public class BudgetActivity extends AppCompatActivity
 {
     private final static String TAG = "BudgetWatch";
 
+    // Number of months shown in the history of a budget
+    private final static int HISTORY_MONTHS = 12;
+
+    // What the screen shows, as read in the background
+    private static class BudgetsLoaded
+    {
+        BudgetSnapshot snapshot;
+        Map<String, Long> forecasts;
+    }
+
     private DBHelper _db;
+    private DatabaseLoader.Load _loading;
+    private DatabaseLoader.Load _loadingHistory;
+    private long _budgetStartMs;
+    private long _budgetEndMs;
 
     @Override
     protected void onCreate(Bundle savedInstanceState)
@@ -40,7 +60,7 @@ public class BudgetActivity extends AppCompatActivity
             actionBar.setDisplayHomeAsUpEnabled(true);
         }
 
-        _db = new DBHelper(this);
+        _db = BudgetWatchApplication.getDatabase(this);
     }
 
     @Override
@@ -50,18 +70,7 @@ public class BudgetActivity extends AppCompatActivity
 
         final ListView budgetList = (ListView) findViewById(R.id.list);
         final TextView helpText = (TextView)findViewById(R.id.helpText);
-
-        if(_db.getBudgetCount() > 0)
-        {
-            budgetList.setVisibility(View.VISIBLE);
-            helpText.setVisibility(View.GONE);
-        }
-        else
-        {
-            budgetList.setVisibility(View.GONE);
-            helpText.setVisibility(View.VISIBLE);
-            helpText.setText(R.string.noBudgets);
-        }
+        final ProgressBar loading = (ProgressBar)findViewById(R.id.loading);
 
         final Calendar date = Calendar.getInstance();
 
@@ -76,6 +85,8 @@ public class BudgetActivity extends AppCompatActivity
         final Bundle b = getIntent().getExtras();
         final long budgetStartMs = b != null ? b.getLong("budgetStart", dateMonthStartMs) : dateMonthStartMs;
         final long budgetEndMs = b != null ? b.getLong("budgetEnd", dateMonthEndMs) : dateMonthEndMs;
+        _budgetStartMs = budgetStartMs;
+        _budgetEndMs = budgetEndMs;
 
         date.setTimeInMillis(budgetStartMs);
         String budgetStartString = DateFormat.getDateInstance(DateFormat.SHORT).format(date.getTime());
@@ -89,8 +100,64 @@ public class BudgetActivity extends AppCompatActivity
         final TextView dateRangeField = (TextView) findViewById(R.id.dateRange);
         dateRangeField.setText(dateRangeString);
 
-        final List<Budget> budgets = _db.getBudgets(budgetStartMs, budgetEndMs);
-        final BudgetAdapter budgetListAdapter = new BudgetAdapter(this, budgets);
+        // Forecasts are of the end of the current month, so are only
+        // shown when the current month is displayed
+        final boolean showForecasts = budgetStartMs == dateMonthStartMs && budgetEndMs == dateMonthEndMs;
+        final long nowMs = System.currentTimeMillis();
+
+        // The budgets are read in the background, until then
+        // only show that they are loading
+        budgetList.setVisibility(View.GONE);
+        helpText.setVisibility(View.GONE);
+        loading.setVisibility(View.VISIBLE);
+
+        if(_loading != null)
+        {
+            _loading.cancel();
+        }
+
+        _loading = DatabaseLoader.load(new DatabaseLoader.Query<BudgetsLoaded>()
+        {
+            @Override
+            public BudgetsLoaded load()
+            {
+                BudgetsLoaded loaded = new BudgetsLoaded();
+                loaded.snapshot = _db.getBudgetSnapshot(budgetStartMs, budgetEndMs);
+                loaded.forecasts = showForecasts ? _db.getMonthEndForecasts(nowMs) :
+                        Collections.<String, Long>emptyMap();
+                return loaded;
+            }
+        }, new DatabaseLoader.Callback<BudgetsLoaded>()
+        {
+            @Override
+            public void onLoaded(BudgetsLoaded loaded)
+            {
+                showBudgets(loaded);
+            }
+        });
+    }
+
+    private void showBudgets(final BudgetsLoaded loaded)
+    {
+        final ListView budgetList = (ListView) findViewById(R.id.list);
+        final TextView helpText = (TextView)findViewById(R.id.helpText);
+        final ProgressBar loading = (ProgressBar)findViewById(R.id.loading);
+
+        loading.setVisibility(View.GONE);
+
+        if(loaded.snapshot.count > 0)
+        {
+            budgetList.setVisibility(View.VISIBLE);
+            helpText.setVisibility(View.GONE);
+        }
+        else
+        {
+            budgetList.setVisibility(View.GONE);
+            helpText.setVisibility(View.VISIBLE);
+            helpText.setText(R.string.noBudgets);
+        }
+
+        final BudgetAdapter budgetListAdapter = new BudgetAdapter(this, loaded.snapshot.budgets, loaded.forecasts);
         budgetList.setAdapter(budgetListAdapter);
 
         registerForContextMenu(budgetList);
@@ -115,12 +182,10 @@ public class BudgetActivity extends AppCompatActivity
             }
         });
 
-        Budget blankBudget = _db.getBlankBudget(budgetStartMs, budgetEndMs);
-
-        setupTotalEntry(budgets, blankBudget);
+        setupTotalEntry(loaded.snapshot);
     }
 
-    private void setupTotalEntry(final List<Budget> budgets, final Budget blankBudget)
+    private void setupTotalEntry(final BudgetSnapshot snapshot)
     {
         final TextView budgetName = (TextView)findViewById(R.id.budgetName);
         final TextView budgetValue = (TextView)findViewById(R.id.budgetValue);
@@ -128,21 +193,11 @@ public class BudgetActivity extends AppCompatActivity
 
         budgetName.setText(R.string.totalBudgetTitle);
 
-        int max = 0;
-        int current = 0;
-
-        for(Budget budget : budgets)
-        {
-            max += budget.max;
-            current += budget.current;
-        }
-
-        current += blankBudget.current;
-
-        budgetBar.setMax(max);
-        budgetBar.setProgress(current);
+        budgetBar.setMax(snapshot.totalMax);
+        budgetBar.setProgress(snapshot.totalCurrent);
 
-        String fraction = String.format(getResources().getString(R.string.fraction), current, max);
+        String fraction = String.format(getResources().getString(R.string.fraction),
+                snapshot.totalCurrent, snapshot.totalMax);
         budgetValue.setText(fraction);
     }
 
@@ -153,7 +208,7 @@ public class BudgetActivity extends AppCompatActivity
         if (v.getId()==R.id.list)
         {
             MenuInflater inflater = getMenuInflater();
-            inflater.inflate(R.menu.view_menu, menu);
+            inflater.inflate(R.menu.budget_list_menu, menu);
         }
     }
 
@@ -178,11 +233,98 @@ public class BudgetActivity extends AppCompatActivity
 
                 return true;
             }
+
+            if (budget != null && item.getItemId() == R.id.action_history)
+            {
+                showHistory(budget.name);
+                return true;
+            }
+
+            if (budget != null && item.getItemId() == R.id.action_top_descriptions)
+            {
+                Intent i = new Intent(getApplicationContext(), TopDescriptionsActivity.class);
+                Bundle bundle = new Bundle();
+                bundle.putString("budget", budget.name);
+                bundle.putLong("budgetStart", _budgetStartMs);
+                bundle.putLong("budgetEnd", _budgetEndMs);
+                i.putExtras(bundle);
+                startActivity(i);
+
+                return true;
+            }
         }
 
         return super.onContextItemSelected(item);
     }
 
+    /**
+     * Show the expenses and revenues of a budget for each of the
+     * months up to the end of the displayed date range.
+     */
+    private void showHistory(final String budgetName)
+    {
+        final Calendar date = Calendar.getInstance();
+        date.setTimeInMillis(_budgetEndMs);
+        date.add(Calendar.MONTH, 1 - HISTORY_MONTHS);
+        final long historyStartMs = date.getTimeInMillis();
+        final long historyEndMs = _budgetEndMs;
+
+        if(_loadingHistory != null)
+        {
+            _loadingHistory.cancel();
+        }
+
+        _loadingHistory = DatabaseLoader.load(new DatabaseLoader.Query<List<BudgetMonth>>()
+        {
+            @Override
+            public List<BudgetMonth> load()
+            {
+                return _db.getBudgetHistory(budgetName, historyStartMs, historyEndMs);
+            }
+        }, new DatabaseLoader.Callback<List<BudgetMonth>>()
+        {
+            @Override
+            public void onLoaded(List<BudgetMonth> history)
+            {
+                // A dialog may not be shown once the activity is closing
+                if(isFinishing() == false)
+                {
+                    showHistory(budgetName, history);
+                }
+            }
+        });
+    }
+
+    private void showHistory(final String budgetName, final List<BudgetMonth> history)
+    {
+        final Calendar date = Calendar.getInstance();
+        final SimpleDateFormat monthFormat = new SimpleDateFormat("MMM yyyy", Locale.getDefault());
+        final String entryFormat = getResources().getString(R.string.budgetHistoryEntry);
+        final String [] entries = new String[history.size()];
+
+        // Most recent month first
+        for(int index = 0; index < entries.length; index++)
+        {
+            BudgetMonth month = history.get(history.size() - 1 - index);
+            date.setTimeInMillis(CalendarUtil.getStartOfMonthMs(month.year, month.month));
+            entries[index] = String.format(entryFormat, monthFormat.format(date.getTime()),
+                    MoneyUtil.toUnits(month.expenseCents), MoneyUtil.toUnits(month.revenueCents));
+        }
+
+        new AlertDialog.Builder(this)
+            .setTitle(String.format(getResources().getString(R.string.budgetHistoryTitle), budgetName))
+            .setItems(entries, null)
+            .setCancelable(true)
+            .setPositiveButton(R.string.ok, new DialogInterface.OnClickListener()
+            {
+                public void onClick(DialogInterface dialog, int which)
+                {
+                    dialog.dismiss();
+                }
+            })
+            .show();
+    }
+
     @Override
     public boolean onCreateOptionsMenu(Menu menu)
     {
@@ -208,6 +350,29 @@ public class BudgetActivity extends AppCompatActivity
             new DateSelectDialogFragment().show(getFragmentManager(), "tag");
         }
 
+        if(id == R.id.action_compare)
+        {
+            Intent i = new Intent(getApplicationContext(), BudgetComparisonActivity.class);
+            Bundle bundle = new Bundle();
+            bundle.putLong("budgetStart", _budgetStartMs);
+            bundle.putLong("budgetEnd", _budgetEndMs);
+            i.putExtras(bundle);
+            startActivity(i);
+            return true;
+        }
+
+        if(id == R.id.action_top_descriptions)
+        {
+            // Without a budget, the top expenses of all budgets are listed
+            Intent i = new Intent(getApplicationContext(), TopDescriptionsActivity.class);
+            Bundle bundle = new Bundle();
+            bundle.putLong("budgetStart", _budgetStartMs);
+            bundle.putLong("budgetEnd", _budgetEndMs);
+            i.putExtras(bundle);
+            startActivity(i);
+            return true;
+        }
+
         if(id == android.R.id.home)
         {
             finish();
@@ -218,9 +383,20 @@ public class BudgetActivity extends AppCompatActivity
     }
 
     @Override
-    protected void onDestroy()
+    public void onDestroy()
     {
-        _db.close();
+        if(_loading != null)
+        {
+            _loading.cancel();
+        }
+
+        // A dialog may not be shown once the activity is destroyed,
+        // such as when the screen is rotated while the history loads
+        if(_loadingHistory != null)
+        {
+            _loadingHistory.cancel();
+        }
+
         super.onDestroy();
     }
 }
\ No newline at end of file
@@ -8,17 +8,40 @@ import android.widget.ArrayAdapter;
 import android.widget.ProgressBar;
 import android.widget.TextView;
 
+import androidx.core.content.ContextCompat;
+
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 
 class BudgetAdapter extends ArrayAdapter<Budget>
 {
     private final String FRACTION_FORMAT;
+    private final String FORECAST_FORMAT;
+    private final String FORECAST_OVER_FORMAT;
+
+    private final Map<String, Long> _forecasts;
 
     public BudgetAdapter(Context context, List<Budget> items)
+    {
+        this(context, items, Collections.<String, Long>emptyMap());
+    }
+
+    /**
+     * @param forecasts
+     *      month-end spending forecast in cents of each budget, by name,
+     *      as from DBHelper.getMonthEndForecasts(). Budgets without a
+     *      forecast show none.
+     */
+    public BudgetAdapter(Context context, List<Budget> items, Map<String, Long> forecasts)
     {
         super(context, 0, items);
 
         FRACTION_FORMAT = context.getResources().getString(R.string.fraction);
+        FORECAST_FORMAT = context.getResources().getString(R.string.forecastFormat);
+        FORECAST_OVER_FORMAT = context.getResources().getString(R.string.forecastOverFormat);
+
+        _forecasts = forecasts;
     }
 
     static class ViewHolder
@@ -26,6 +49,7 @@ class BudgetAdapter extends ArrayAdapter<Budget>
         TextView budgetName;
         ProgressBar budgetBar;
         TextView budgetValue;
+        TextView budgetForecast;
     }
 
     @Override
@@ -47,6 +71,7 @@ class BudgetAdapter extends ArrayAdapter<Budget>
             holder.budgetName = (TextView) convertView.findViewById(R.id.budgetName);
             holder.budgetBar = (ProgressBar) convertView.findViewById(R.id.budgetBar);
             holder.budgetValue = (TextView) convertView.findViewById(R.id.budgetValue);
+            holder.budgetForecast = (TextView) convertView.findViewById(R.id.budgetForecast);
             convertView.setTag(holder);
         }
         else
@@ -63,6 +88,27 @@ class BudgetAdapter extends ArrayAdapter<Budget>
 
         holder.budgetValue.setText(fraction);
 
+        Long forecastCents = _forecasts.get(item.name);
+        if(forecastCents != null)
+        {
+            int forecast = MoneyUtil.toUnitsRoundedUp(forecastCents);
+            if(forecast > item.max)
+            {
+                holder.budgetForecast.setText(String.format(FORECAST_OVER_FORMAT, forecast, forecast - item.max));
+                holder.budgetForecast.setTextColor(ContextCompat.getColor(getContext(), R.color.overBudget));
+            }
+            else
+            {
+                holder.budgetForecast.setText(String.format(FORECAST_FORMAT, forecast));
+                holder.budgetForecast.setTextColor(holder.budgetValue.getTextColors());
+            }
+            holder.budgetForecast.setVisibility(View.VISIBLE);
+        }
+        else
+        {
+            holder.budgetForecast.setVisibility(View.GONE);
+        }
+
         return convertView;
     }
 }
@@ -0,0 +1,51 @@
+package protect.budgetwatch;
+
+/**
+ * The spending of a budget, expenses less revenues, during a date range
+ * and during the same range one month and one year earlier, as returned
+ * by DBHelper.getBudgetComparisons().
+ */
+public class BudgetComparison
+{
+    public final String name; // "" for transactions without a budget
+    public final long currentCents;
+    public final long lastMonthCents;
+    public final long lastYearCents;
+
+    public BudgetComparison(final String name, final long currentCents, final long lastMonthCents,
+                            final long lastYearCents)
+    {
+        this.name = name;
+        this.currentCents = currentCents;
+        this.lastMonthCents = lastMonthCents;
+        this.lastYearCents = lastYearCents;
+    }
+
+    /**
+     * @return the change from the spending one month earlier, in percent,
+     * or null if there was no spending then to compare with
+     */
+    public Double getMonthChangePercent()
+    {
+        return changePercent(lastMonthCents);
+    }
+
+    /**
+     * @return the change from the spending one year earlier, in percent,
+     * or null if there was no spending then to compare with
+     */
+    public Double getYearChangePercent()
+    {
+        return changePercent(lastYearCents);
+    }
+
+    private Double changePercent(final long previousCents)
+    {
+        if(previousCents == 0)
+        {
+            return null;
+        }
+
+        return (currentCents - previousCents) * 100.0 / Math.abs(previousCents);
+    }
+}
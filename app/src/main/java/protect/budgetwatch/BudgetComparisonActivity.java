@@ -0,0 +1,29 @@
+package protect.budgetwatch;
+
+import android.widget.ListAdapter;
+
+import java.util.List;
+
+/**
+ * Lists the spending of each budget during a date range, compared with
+ * the same range one month earlier and one year earlier.
+ */
+public class BudgetComparisonActivity extends DateRangeListActivity<List<BudgetComparison>>
+{
+    public BudgetComparisonActivity()
+    {
+        super("budgetStart", "budgetEnd", 0);
+    }
+
+    @Override
+    List<BudgetComparison> load(DBHelper db, long startMs, long endMs)
+    {
+        return db.getBudgetComparisons(startMs, endMs);
+    }
+
+    @Override
+    ListAdapter createAdapter(List<BudgetComparison> comparisons)
+    {
+        return new BudgetComparisonAdapter(this, comparisons);
+    }
+}
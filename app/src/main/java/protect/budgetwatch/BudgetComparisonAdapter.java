@@ -0,0 +1,87 @@
+package protect.budgetwatch;
+
+import android.content.Context;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.ArrayAdapter;
+import android.widget.TextView;
+
+import java.util.List;
+
+class BudgetComparisonAdapter extends ArrayAdapter<BudgetComparison>
+{
+    private final String NO_BUDGET_NAME;
+    private final String CURRENT_FORMAT;
+    private final String LAST_MONTH_FORMAT;
+    private final String LAST_YEAR_FORMAT;
+    private final String CHANGE_FORMAT;
+    private final String NO_CHANGE;
+
+    public BudgetComparisonAdapter(Context context, List<BudgetComparison> items)
+    {
+        super(context, 0, items);
+
+        NO_BUDGET_NAME = context.getResources().getString(R.string.noBudgetName);
+        CURRENT_FORMAT = context.getResources().getString(R.string.comparisonCurrentFormat);
+        LAST_MONTH_FORMAT = context.getResources().getString(R.string.comparisonLastMonthFormat);
+        LAST_YEAR_FORMAT = context.getResources().getString(R.string.comparisonLastYearFormat);
+        CHANGE_FORMAT = context.getResources().getString(R.string.comparisonChangeFormat);
+        NO_CHANGE = context.getResources().getString(R.string.comparisonNoChange);
+    }
+
+    static class ViewHolder
+    {
+        TextView budgetName;
+        TextView currentValue;
+        TextView lastMonthValue;
+        TextView lastYearValue;
+    }
+
+    @Override
+    public View getView(int position, View convertView, ViewGroup parent)
+    {
+        // Get the data item for this position
+        BudgetComparison item = getItem(position);
+
+        ViewHolder holder;
+
+        // Check if an existing view is being reused, otherwise inflate the view
+
+        if (convertView == null)
+        {
+            convertView = LayoutInflater.from(getContext()).inflate(R.layout.budget_comparison_layout,
+                    parent, false);
+
+            holder = new ViewHolder();
+            holder.budgetName = (TextView) convertView.findViewById(R.id.budgetName);
+            holder.currentValue = (TextView) convertView.findViewById(R.id.currentValue);
+            holder.lastMonthValue = (TextView) convertView.findViewById(R.id.lastMonthValue);
+            holder.lastYearValue = (TextView) convertView.findViewById(R.id.lastYearValue);
+            convertView.setTag(holder);
+        }
+        else
+        {
+            holder = (ViewHolder)convertView.getTag();
+        }
+
+        holder.budgetName.setText(item.name.isEmpty() ? NO_BUDGET_NAME : item.name);
+        holder.currentValue.setText(String.format(CURRENT_FORMAT, MoneyUtil.toUnits(item.currentCents)));
+        holder.lastMonthValue.setText(String.format(LAST_MONTH_FORMAT,
+                MoneyUtil.toUnits(item.lastMonthCents), formatChange(item.getMonthChangePercent())));
+        holder.lastYearValue.setText(String.format(LAST_YEAR_FORMAT,
+                MoneyUtil.toUnits(item.lastYearCents), formatChange(item.getYearChangePercent())));
+
+        return convertView;
+    }
+
+    private String formatChange(Double percent)
+    {
+        if(percent == null)
+        {
+            return NO_CHANGE;
+        }
+
+        return String.format(CHANGE_FORMAT, percent);
+    }
+}
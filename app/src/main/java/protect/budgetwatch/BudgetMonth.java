@@ -0,0 +1,21 @@
+package protect.budgetwatch;
+
+/**
+ * The expenses and revenues of a budget, or of all budgets,
+ * during one month.
+ */
+public class BudgetMonth
+{
+    public final int year;
+    public final int month; // as Calendar.MONTH, January is 0
+    public final long expenseCents;
+    public final long revenueCents;
+
+    public BudgetMonth(final int year, final int month, final long expenseCents, final long revenueCents)
+    {
+        this.year = year;
+        this.month = month;
+        this.expenseCents = expenseCents;
+        this.revenueCents = revenueCents;
+    }
+}
@@ -0,0 +1,47 @@
+package protect.budgetwatch;
+
+import java.util.List;
+
+/**
+ * The budgets over one date range, with their totals, as returned by
+ * DBHelper.getBudgetSnapshot(). Everything in a snapshot is computed
+ * from the same read of the database, so the parts always agree.
+ */
+public class BudgetSnapshot
+{
+    // Budgets sorted by name, without the blank budget
+    public final List<Budget> budgets;
+
+    // Transactions which have no budget
+    public final Budget blankBudget;
+
+    // Number of budgets in 'budgets'
+    public final int count;
+
+    // Sum of the 'max' of every budget
+    public final int totalMax;
+
+    // Sum of the 'current' of every budget, including the blank budget
+    public final int totalCurrent;
+
+    public BudgetSnapshot(final List<Budget> budgets, final Budget blankBudget)
+    {
+        this.budgets = budgets;
+        this.blankBudget = blankBudget;
+        this.count = budgets.size();
+
+        int max = 0;
+        int current = 0;
+
+        for(Budget budget : budgets)
+        {
+            max += budget.max;
+            current += budget.current;
+        }
+
+        current += blankBudget.current;
+
+        this.totalMax = max;
+        this.totalCurrent = current;
+    }
+}
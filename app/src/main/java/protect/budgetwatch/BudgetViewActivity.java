@@ -14,8 +14,12 @@ import android.view.Menu;
 import android.view.MenuItem;
 import android.view.View;
 import android.widget.EditText;
+import android.widget.ProgressBar;
 import android.widget.TextView;
 
+import java.util.Calendar;
+import java.util.List;
+
 public class BudgetViewActivity extends AppCompatActivity
 {
     private static final String TAG = "BudgetWatch";
@@ -25,6 +29,14 @@ public class BudgetViewActivity extends AppCompatActivity
     private TextView _budgetNameView;
     private EditText _valueEdit;
     private TextView _valueView;
+    private View _spendingLayout;
+    private BucketChartView _spendingChart;
+    private ProgressBar _spendingLoading;
+    private View _content;
+    private ProgressBar _loadingBar;
+    private DatabaseLoader.Load _loading;
+    private DatabaseLoader.Load _loadingSpending;
+    private DatabaseLoader.Load _saving;
 
     private String _budgetName;
     private boolean _updateBudget;
@@ -44,12 +56,17 @@ public class BudgetViewActivity extends AppCompatActivity
             actionBar.setDisplayHomeAsUpEnabled(true);
         }
 
-        _db = new DBHelper(this);
+        _db = BudgetWatchApplication.getDatabase(this);
 
         _budgetNameEdit = (EditText) findViewById(R.id.budgetNameEdit);
         _budgetNameView = (TextView) findViewById(R.id.budgetNameView);
         _valueEdit = (EditText) findViewById(R.id.valueEdit);
         _valueView = (TextView) findViewById(R.id.valueView);
+        _spendingLayout = findViewById(R.id.spendingLayout);
+        _spendingChart = (BucketChartView) findViewById(R.id.spendingChart);
+        _spendingLoading = (ProgressBar) findViewById(R.id.spendingLoading);
+        _content = findViewById(R.id.content);
+        _loadingBar = (ProgressBar) findViewById(R.id.loading);
 
         final Bundle b = getIntent().getExtras();
         _budgetName = b != null ? b.getString("id") : null;
@@ -57,7 +74,6 @@ public class BudgetViewActivity extends AppCompatActivity
         _viewBudget = b != null && b.getBoolean("view", false);
     }
 
-    @SuppressLint("DefaultLocale")
     @Override
     public void onResume()
     {
@@ -65,24 +81,33 @@ public class BudgetViewActivity extends AppCompatActivity
 
         if(_updateBudget || _viewBudget)
         {
-            (_updateBudget ? _budgetNameEdit : _budgetNameView).setText(_budgetName);
-
-            Budget existingBudget = _db.getBudgetStoredOnly(_budgetName);
-            (_updateBudget ? _valueEdit : _valueView).setText(String.format("%d", existingBudget.max));
+            // The budget is read in the background, until then
+            // only show that it is loading
+            _content.setVisibility(View.GONE);
+            _loadingBar.setVisibility(View.VISIBLE);
 
-            if(_updateBudget)
+            if(_loading != null)
             {
-                setTitle(R.string.editBudgetTitle);
-
-                _budgetNameView.setVisibility(View.GONE);
-                _valueView.setVisibility(View.GONE);
+                _loading.cancel();
             }
-            else
+
+            final String budgetName = _budgetName;
+
+            _loading = DatabaseLoader.load(new DatabaseLoader.Query<Budget>()
             {
-                _budgetNameEdit.setVisibility(View.GONE);
-                _valueEdit.setVisibility(View.GONE);
-                setTitle(R.string.viewBudgetTitle);
-            }
+                @Override
+                public Budget load()
+                {
+                    return _db.getBudgetStoredOnly(budgetName);
+                }
+            }, new DatabaseLoader.Callback<Budget>()
+            {
+                @Override
+                public void onLoaded(Budget budget)
+                {
+                    showBudget(budget);
+                }
+            });
         }
         else
         {
@@ -90,11 +115,90 @@ public class BudgetViewActivity extends AppCompatActivity
 
             _budgetNameView.setVisibility(View.GONE);
             _valueView.setVisibility(View.GONE);
+            _spendingLayout.setVisibility(View.GONE);
         }
     }
 
+    @SuppressLint("DefaultLocale")
+    private void showBudget(final Budget existingBudget)
+    {
+        _loadingBar.setVisibility(View.GONE);
+        _content.setVisibility(View.VISIBLE);
+
+        (_updateBudget ? _budgetNameEdit : _budgetNameView).setText(_budgetName);
+        (_updateBudget ? _valueEdit : _valueView).setText(String.format("%d", existingBudget.max));
+
+        if(_updateBudget)
+        {
+            setTitle(R.string.editBudgetTitle);
+
+            _budgetNameView.setVisibility(View.GONE);
+            _valueView.setVisibility(View.GONE);
+            _spendingLayout.setVisibility(View.GONE);
+        }
+        else
+        {
+            _budgetNameEdit.setVisibility(View.GONE);
+            _valueEdit.setVisibility(View.GONE);
+            setTitle(R.string.viewBudgetTitle);
+
+            loadSpending();
+        }
+    }
+
+    /**
+     * Read the weekly spending of the budget over the last year in the
+     * background, showing that it is loading until then.
+     */
+    private void loadSpending()
+    {
+        final long nowMs = System.currentTimeMillis();
+        final Calendar date = Calendar.getInstance();
+        date.setTimeInMillis(nowMs);
+        date.add(Calendar.YEAR, -1);
+        final long startMs = date.getTimeInMillis();
+        final String budgetName = _budgetName;
+
+        _spendingChart.setVisibility(View.INVISIBLE);
+        _spendingLoading.setVisibility(View.VISIBLE);
+
+        if(_loadingSpending != null)
+        {
+            _loadingSpending.cancel();
+        }
+
+        _loadingSpending = DatabaseLoader.load(new DatabaseLoader.Query<List<TotalsBucket>>()
+        {
+            @Override
+            public List<TotalsBucket> load()
+            {
+                return _db.getTotalsByBucket(TotalsBucket.WEEK, budgetName, null, startMs, nowMs);
+            }
+        }, new DatabaseLoader.Callback<List<TotalsBucket>>()
+        {
+            @Override
+            public void onLoaded(List<TotalsBucket> buckets)
+            {
+                _spendingLoading.setVisibility(View.GONE);
+                _spendingChart.setVisibility(View.VISIBLE);
+                _spendingChart.setBuckets(buckets);
+            }
+        });
+    }
+
+    private boolean isBusy()
+    {
+        return (_loading != null && _loading.isFinished() == false) ||
+                (_saving != null && _saving.isFinished() == false);
+    }
+
     private void doSave()
     {
+        if(isBusy())
+        {
+            return;
+        }
+
         String budgetName = _budgetNameEdit.getText().toString();
         String valueStr = _valueEdit.getText().toString();
 
@@ -121,16 +225,79 @@ public class BudgetViewActivity extends AppCompatActivity
             return;
         }
 
-        if(_updateBudget == false)
+        save(budgetName, value);
+    }
+
+    /**
+     * Write the budget in the background, and close the screen once it
+     * is saved. A rename to the name of another budget is not saved,
+     * and leaves the screen open to pick another name.
+     */
+    private void save(final String budgetName, final int value)
+    {
+        final boolean updateBudget = _updateBudget;
+        final String oldName = _budgetName;
+
+        _saving = DatabaseLoader.load(new DatabaseLoader.Query<Boolean>()
         {
-            _db.insertBudget(budgetName, value);
-        }
-        else
+            @Override
+            public Boolean load()
+            {
+                if(updateBudget == false)
+                {
+                    _db.insertBudget(budgetName, value);
+                }
+                else if(budgetName.equals(oldName))
+                {
+                    _db.updateBudget(budgetName, value);
+                }
+                else if(_db.renameBudget(oldName, budgetName, value) == false)
+                {
+                    // Otherwise the budget being renamed was deleted since it
+                    // was shown, and there is nothing left to save
+                    return _db.getBudgetStoredOnly(budgetName) == null;
+                }
+
+                return true;
+            }
+        }, new DatabaseLoader.Callback<Boolean>()
         {
-            _db.updateBudget(budgetName, value);
-        }
+            @Override
+            public void onLoaded(Boolean saved)
+            {
+                if(saved)
+                {
+                    finish();
+                }
+                else
+                {
+                    Snackbar.make(_budgetNameEdit, R.string.budgetNameInUse, Snackbar.LENGTH_LONG).show();
+                }
+            }
+        });
+    }
 
-        finish();
+    /**
+     * Delete the budget in the background, and close the
+     * screen once it is deleted.
+     */
+    private void delete(final String budgetName)
+    {
+        _saving = DatabaseLoader.load(new DatabaseLoader.Query<Boolean>()
+        {
+            @Override
+            public Boolean load()
+            {
+                return _db.deleteBudget(budgetName);
+            }
+        }, new DatabaseLoader.Callback<Boolean>()
+        {
+            @Override
+            public void onLoaded(Boolean deleted)
+            {
+                finish();
+            }
+        });
     }
 
     @Override
@@ -187,11 +354,12 @@ public class BudgetViewActivity extends AppCompatActivity
                 @Override
                 public void onClick(DialogInterface dialog, int which)
                 {
-                    Log.e(TAG, "Deleting budget: " + budgetName);
+                    if(isBusy() == false)
+                    {
+                        Log.e(TAG, "Deleting budget: " + budgetName);
+                        delete(budgetName);
+                    }
 
-                    _db.deleteBudget(budgetName);
-
-                    finish();
                     dialog.dismiss();
                 }
             });
@@ -225,9 +393,19 @@ public class BudgetViewActivity extends AppCompatActivity
     }
 
     @Override
-    protected void onDestroy()
+    public void onDestroy()
     {
-        _db.close();
+        // Saves and deletes are left to finish, only the reads are dropped
+        if(_loading != null)
+        {
+            _loading.cancel();
+        }
+
+        if(_loadingSpending != null)
+        {
+            _loadingSpending.cancel();
+        }
+
         super.onDestroy();
     }
 }
@@ -0,0 +1,29 @@
+package protect.budgetwatch;
+
+import android.app.Application;
+import android.content.Context;
+
+/**
+ * Application which owns the database helper shared by the
+ * whole process.
+ */
+public class BudgetWatchApplication extends Application
+{
+    private DBHelper _db;
+
+    @Override
+    public void onCreate()
+    {
+        super.onCreate();
+        _db = new DBHelper(this);
+    }
+
+    /**
+     * @return the database helper shared by all activities, fragments
+     * and tasks of the application. Callers must not close it.
+     */
+    public static DBHelper getDatabase(Context context)
+    {
+        return ((BudgetWatchApplication)context.getApplicationContext())._db;
+    }
+}
@@ -59,4 +59,23 @@ class CalendarUtil
         date.set(Calendar.MILLISECOND, date.getActualMaximum(Calendar.MILLISECOND));
         return date.getTimeInMillis();
     }
+
+    /**
+     * @return true if the range starts at the first millisecond of a month
+     * and ends at the last millisecond of a month, as returned by
+     * getStartOfMonthMs() and getEndOfMonthMs().
+     */
+    public static boolean isWholeMonths(long startMs, long endMs)
+    {
+        final Calendar date = Calendar.getInstance();
+
+        date.setTimeInMillis(startMs);
+        if(startMs != getStartOfMonthMs(date.get(Calendar.YEAR), date.get(Calendar.MONTH)))
+        {
+            return false;
+        }
+
+        date.setTimeInMillis(endMs);
+        return endMs == getEndOfMonthMs(date.get(Calendar.YEAR), date.get(Calendar.MONTH));
+    }
 }
@@ -13,10 +13,7 @@ import java.io.File;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
-import java.text.DateFormat;
-import java.util.Date;
 import java.util.List;
-import java.util.Locale;
 
 /**
  * Class for exporting the database into CSV (Comma Separate Values)
@@ -26,21 +23,19 @@ public class CsvDatabaseExporter implements DatabaseExporter
 {
     private static final String DATE_FORMATTED_FIELD = "date_formatted";
 
-    public void exportData(Context context, DBHelper db, Long startTimeMs, Long endTimeMs, OutputStream outStream, ImportExportProgressUpdater updater) throws IOException, InterruptedException
+    public void exportData(Context context, DBHelper db, Long startTimeMs, Long endTimeMs, OutputStream outStream, final ImportExportProgressUpdater updater) throws IOException, InterruptedException
     {
         OutputStreamWriter stream = new OutputStreamWriter(outStream, Charsets.UTF_8);
         BufferedWriter output = new BufferedWriter(stream);
-        CSVPrinter printer = new CSVPrinter(output, CSVFormat.RFC4180);
+        final CSVPrinter printer = new CSVPrinter(output, CSVFormat.RFC4180);
 
         int numEntries = 0;
 
         List<String> budgetNames = db.getBudgetNames();
         numEntries += budgetNames.size();
 
-        Cursor expenseTransactions = db.getTransactions(DBHelper.TransactionDbIds.EXPENSE, null, null, startTimeMs, endTimeMs);
-        numEntries += expenseTransactions.getCount();
-        Cursor revenueTransactions = db.getTransactions(DBHelper.TransactionDbIds.REVENUE, null, null, startTimeMs, endTimeMs);
-        numEntries += revenueTransactions.getCount();
+        numEntries += db.getTransactionCount(DBHelper.TransactionDbIds.EXPENSE, startTimeMs, endTimeMs);
+        numEntries += db.getTransactionCount(DBHelper.TransactionDbIds.REVENUE, startTimeMs, endTimeMs);
 
         updater.setTotal(numEntries);
 
@@ -58,49 +53,47 @@ public class CsvDatabaseExporter implements DatabaseExporter
                     DATE_FORMATTED_FIELD,
                     DBHelper.TransactionDbIds.RECEIPT);
 
-            for (Cursor cursor : new Cursor[]{
-                db.getTransactions(DBHelper.TransactionDbIds.EXPENSE, null, null, startTimeMs, endTimeMs),
-                db.getTransactions(DBHelper.TransactionDbIds.REVENUE, null, null, startTimeMs, endTimeMs)
-            })
+            for (int type : new int[]{DBHelper.TransactionDbIds.EXPENSE, DBHelper.TransactionDbIds.REVENUE})
             {
-                while (cursor.moveToNext())
+                // Read the transactions a page at a time, so that only
+                // one page is held in memory
+                db.forEachTransaction(DBHelper.TransactionProjections.DETAIL, type, startTimeMs, endTimeMs,
+                        new DBHelper.TransactionHandler()
                 {
-                    Transaction transaction = Transaction.toTransaction(cursor);
-
-                    String receiptFilename = "";
-                    if(transaction.receipt.length() > 0)
-                    {
-                        File receiptFile = new File(transaction.receipt);
-                        receiptFilename = receiptFile.getName();
-                    }
-
-                    Locale currentLocale = Locale.getDefault();
-                    DateFormat dateFormat = DateFormat.getDateTimeInstance(
-                            DateFormat.DEFAULT, DateFormat.DEFAULT, currentLocale);
-
-                    String dateFormatted = dateFormat.format(new Date(transaction.dateMs));
-
-                    printer.printRecord(transaction.id,
-                            transaction.type == DBHelper.TransactionDbIds.EXPENSE ?
-                                    "EXPENSE" : "REVENUE",
-                            transaction.description,
-                            transaction.account,
-                            transaction.budget,
-                            transaction.value,
-                            transaction.note,
-                            transaction.dateMs,
-                            dateFormatted,
-                            receiptFilename);
-
-                    updater.update();
-
-                    if (Thread.currentThread().isInterrupted())
+                    @Override
+                    public void onTransaction(Cursor cursor) throws IOException, InterruptedException
                     {
-                        throw new InterruptedException();
+                        Transaction transaction = Transaction.toTransaction(cursor);
+
+                        String receiptFilename = "";
+                        if(transaction.receipt.length() > 0)
+                        {
+                            File receiptFile = new File(transaction.receipt);
+                            receiptFilename = receiptFile.getName();
+                        }
+
+                        String dateFormatted = DateTextCache.dateTimes().format(transaction.dateMs);
+
+                        printer.printRecord(transaction.id,
+                                transaction.type == DBHelper.TransactionDbIds.EXPENSE ?
+                                        "EXPENSE" : "REVENUE",
+                                transaction.description,
+                                transaction.account,
+                                transaction.budget,
+                                MoneyUtil.toDecimal(transaction.valueCents),
+                                transaction.note,
+                                transaction.dateMs,
+                                dateFormatted,
+                                receiptFilename);
+
+                        updater.update();
+
+                        if (Thread.currentThread().isInterrupted())
+                        {
+                            throw new InterruptedException();
+                        }
                     }
-                }
-
-                cursor.close();
+                });
             }
 
 
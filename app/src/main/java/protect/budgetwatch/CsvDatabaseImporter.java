@@ -1,7 +1,6 @@
 package protect.budgetwatch;
 
 import android.content.Context;
-import android.database.sqlite.SQLiteDatabase;
 import android.os.Environment;
 
 import com.google.common.base.Charsets;
@@ -31,8 +30,7 @@ public class CsvDatabaseImporter implements DatabaseImporter
         InputStreamReader reader = new InputStreamReader(input, Charsets.UTF_8);
         final CSVParser parser = new CSVParser(reader, CSVFormat.RFC4180.withHeader());
 
-        SQLiteDatabase database = db.getWritableDatabase();
-        database.beginTransaction();
+        DBHelper.BulkInserter inserter = db.beginBulkInsert();
 
         try
         {
@@ -41,11 +39,11 @@ public class CsvDatabaseImporter implements DatabaseImporter
                 String type = record.get(DBHelper.TransactionDbIds.TYPE);
                 if(type.equals("BUDGET"))
                 {
-                    importBudget(database, db, record);
+                    importBudget(inserter, record);
                 }
                 else
                 {
-                    importTransaction(context, database, db, record);
+                    importTransaction(context, inserter, record);
                 }
 
                 updater.update();
@@ -58,7 +56,7 @@ public class CsvDatabaseImporter implements DatabaseImporter
 
             // Do not close the parser, as it will close the input stream;
             // Closing the input stream is the responsibility of the caller.
-            database.setTransactionSuccessful();
+            inserter.setSuccessful();
         }
         catch(IllegalArgumentException|IllegalStateException e)
         {
@@ -66,8 +64,7 @@ public class CsvDatabaseImporter implements DatabaseImporter
         }
         finally
         {
-            database.endTransaction();
-            database.close();
+            inserter.end();
         }
     }
 
@@ -122,12 +119,12 @@ public class CsvDatabaseImporter implements DatabaseImporter
     }
 
     /**
-     * Extract an double from the items array. The index into the array
-     * is determined by looking up the index in the fields map using the
-     * "key" as the key. If no such key exists, or the data is not a valid
-     * double, a FormatException is thrown.
+     * Extract a monetary value in cents from the items array. The index into
+     * the array is determined by looking up the index in the fields map using
+     * the "key" as the key. If no such key exists, or the data is not a valid
+     * decimal number, a FormatException is thrown.
      */
-    private double extractDouble(String key, CSVRecord record)
+    private long extractCents(String key, CSVRecord record)
             throws FormatException
     {
         if(record.isMapped(key) == false)
@@ -137,7 +134,7 @@ public class CsvDatabaseImporter implements DatabaseImporter
 
         try
         {
-            return Double.parseDouble(record.get(key));
+            return MoneyUtil.toCents(record.get(key));
         }
         catch(NumberFormatException e)
         {
@@ -173,7 +170,7 @@ public class CsvDatabaseImporter implements DatabaseImporter
      * Import a single transaction into the database using the given
      * session.
      */
-    private void importTransaction(Context context, SQLiteDatabase database, DBHelper helper, CSVRecord record)
+    private void importTransaction(Context context, DBHelper.BulkInserter inserter, CSVRecord record)
             throws FormatException
     {
         int id = extractInt(DBHelper.TransactionDbIds.NAME, record);
@@ -195,7 +192,7 @@ public class CsvDatabaseImporter implements DatabaseImporter
         String description = extractString(DBHelper.TransactionDbIds.DESCRIPTION, record, "");
         String account = extractString(DBHelper.TransactionDbIds.ACCOUNT, record, "");
         String budget = extractString(DBHelper.TransactionDbIds.BUDGET, record, "");
-        double value = extractDouble(DBHelper.TransactionDbIds.VALUE, record);
+        long valueCents = extractCents(DBHelper.TransactionDbIds.VALUE, record);
         String note = extractString(DBHelper.TransactionDbIds.NOTE, record, "");
         long dateMs = extractLong(DBHelper.TransactionDbIds.DATE, record);
 
@@ -215,21 +212,22 @@ public class CsvDatabaseImporter implements DatabaseImporter
             }
         }
 
-        helper.insertTransaction(database, id, type, description, account, budget, value, note, dateMs, receipt);
+        inserter.insertTransaction(id, type, description, account, budget, valueCents, note, dateMs, receipt);
     }
 
     /**
      * Import a single budget into the database using the given
      * session.
      */
-    private void importBudget(SQLiteDatabase database, DBHelper helper, CSVRecord record)
+    private void importBudget(DBHelper.BulkInserter inserter, CSVRecord record)
             throws FormatException
     {
-        String name = extractString(DBHelper.BudgetDbIds.NAME, record, null);
+        // The transaction field for id is used to hold the budget name
+        String name = extractString(DBHelper.TransactionDbIds.NAME, record, null);
 
         // The transaction field for value is used to indicate the budget value
         int budget = extractInt(DBHelper.TransactionDbIds.VALUE, record);
 
-        helper.insertBudget(database, name, budget);
+        inserter.insertBudget(name, budget);
     }
 }
@@ -3,33 +3,58 @@ package protect.budgetwatch;
 import android.content.ContentValues;
 import android.content.Context;
 import android.content.Intent;
+import android.content.SharedPreferences;
 import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.SQLException;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
-
+import android.database.sqlite.SQLiteStatement;
+import android.text.TextUtils;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Calendar;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.ListIterator;
+import java.util.Map;
+import java.util.TimeZone;
+import java.util.regex.Pattern;
 
 /**
- * Helper class for managing data in the database
+ * Helper class for managing data in the database.
+ *
+ * A single instance is owned by the application (see
+ * BudgetWatchApplication.getDatabase()) and shared by all screens and
+ * background tasks. The underlying SQLiteDatabase is kept open for the
+ * life of the process, so methods here must not close it.
  */
 class DBHelper extends SQLiteOpenHelper
 {
     private static final String DATABASE_NAME = "BudgetWatch.db";
 
     public static final int ORIGINAL_DATABASE_VERSION = 1;
-    public static final int DATABASE_VERSION = 2;
+    public static final int DATABASE_VERSION = 9;
 
     /**
-     * All strings used with the budget table
+     * All strings used with the budget table.
+     *
+     * A budget whose max is null has been deleted, or was never created,
+     * but its name is still used by transactions. Such rows only exist so
+     * that the transactions can refer to the budget by id, and are not
+     * returned as budgets.
      */
     static class BudgetDbIds
     {
         public static final String TABLE = "budgets";
-        public static final String NAME = "_id";
+        public static final String ID = "_id";
+        public static final String NAME = "name";
         public static final String MAX = "max";
+
+        // Condition selecting budgets which have not been deleted
+        public static final String EXISTS = MAX + " is not null";
     }
 
     /**
@@ -42,62 +67,744 @@ class DBHelper extends SQLiteOpenHelper
         public static final String TYPE = "type";
         public static final String DESCRIPTION = "description";
         public static final String ACCOUNT = "account";
-        public static final String BUDGET = "budget";
-        public static final String VALUE = "value";
+        public static final String BUDGET_ID = "budget_id";
+        public static final String VALUE = "value"; // in cents
         public static final String NOTE = "note";
         public static final String DATE = "date";
         public static final String RECEIPT = "receipt";
 
+        // Name of the budget of a transaction, as selected by
+        // TransactionProjections. It is not a column of the table.
+        public static final String BUDGET = "budget";
+
+        // The value formatted as text in whole units, e.g. 1234 as "12.34"
+        public static final String VALUE_TEXT = "printf('%.2f', " + VALUE + " / 100.0)";
+
+        public static final String TYPE_DATE_INDEX = "transactions_type_date";
+        public static final String BUDGET_TYPE_DATE_INDEX = "transactions_budget_type_date";
+        public static final String RECEIPT_DATE_INDEX = "transactions_receipt_date";
+        public static final String ACCOUNT_TYPE_DATE_INDEX = "transactions_account_type_date";
+
+        // Condition selecting transactions which have a receipt. The
+        // receipt index is partial on this exact expression, so queries
+        // must use it verbatim for the index to be considered.
+        public static final String HAS_RECEIPT = "LENGTH(" + RECEIPT + ") > 0";
+
+        // Whether a transaction has a receipt, 1 or 0, as selected by
+        // TransactionProjections.LIST. It is not a column of the table.
+        public static final String HAS_RECEIPT_COLUMN = "has_receipt";
+
         public static final int EXPENSE = 1;
         public static final int REVENUE = 2;
     }
 
+    /**
+     * All strings used in the monthly budget totals table. Each row
+     * holds the sum of the values, in cents, and the number of the
+     * transactions of one type in one budget during one month. The
+     * table is kept up to date by triggers on the transaction table.
+     */
+    static class BudgetMonthTotalsDbIds
+    {
+        public static final String TABLE = "budget_month_totals";
+        public static final String BUDGET_ID = "budget_id"; // 0 for no budget
+        public static final String MONTH = "month";
+        public static final String TYPE = "type";
+        public static final String TOTAL = "total";
+        public static final String COUNT = "count";
+
+        public static final String INSERT_TRIGGER = "budget_month_totals_insert";
+        public static final String UPDATE_TRIGGER = "budget_month_totals_update";
+        public static final String DELETE_TRIGGER = "budget_month_totals_delete";
+    }
+
+    // Name of the budget of a transaction, selected as TransactionDbIds.BUDGET
+    private static final String BUDGET_NAME_COLUMN =
+            "(select " + BudgetDbIds.NAME + " from " + BudgetDbIds.TABLE +
+            " where " + BudgetDbIds.TABLE + "." + BudgetDbIds.ID + " = " +
+                TransactionDbIds.TABLE + "." + TransactionDbIds.BUDGET_ID + ") " +
+            "as " + TransactionDbIds.BUDGET;
+
+    /**
+     * Columns selected from the transaction table for each use of
+     * a transaction query. Selecting only what is used lets each window
+     * of a cursor hold more rows. Transaction.toTransaction() reads
+     * DETAIL, TransactionRow reads LIST and TransactionReceipt reads RECEIPT.
+     */
+    static class TransactionProjections
+    {
+        // Every column of a transaction, for viewing or editing it
+        public static final String DETAIL =
+                TransactionDbIds.NAME + ", " +
+                TransactionDbIds.TYPE + ", " +
+                TransactionDbIds.DESCRIPTION + ", " +
+                TransactionDbIds.ACCOUNT + ", " +
+                BUDGET_NAME_COLUMN + ", " +
+                TransactionDbIds.VALUE + ", " +
+                TransactionDbIds.NOTE + ", " +
+                TransactionDbIds.DATE + ", " +
+                TransactionDbIds.RECEIPT;
+
+        // What a row of a transaction list shows. Only whether there
+        // is a receipt is shown, as HAS_RECEIPT_COLUMN.
+        public static final String LIST =
+                TransactionDbIds.NAME + ", " +
+                TransactionDbIds.DESCRIPTION + ", " +
+                BUDGET_NAME_COLUMN + ", " +
+                TransactionDbIds.VALUE + ", " +
+                TransactionDbIds.NOTE + ", " +
+                TransactionDbIds.DATE + ", " +
+                TransactionDbIds.HAS_RECEIPT + " as " + TransactionDbIds.HAS_RECEIPT_COLUMN;
+
+        // What is needed to check or remove a receipt, and to find
+        // the next page of transactions
+        public static final String RECEIPT =
+                TransactionDbIds.NAME + ", " +
+                TransactionDbIds.DATE + ", " +
+                TransactionDbIds.RECEIPT;
+    }
+
+    /**
+     * All strings used with the transaction search table, a full text
+     * index of the description, account and note of each transaction,
+     * by transaction id (docid). It reads the text from the transaction
+     * table rather than holding a copy, and is kept up to date by
+     * triggers on the transaction table.
+     */
+    static class TransactionSearchDbIds
+    {
+        public static final String TABLE = "transactions_search";
+
+        public static final String INSERT_TRIGGER = "transactions_search_insert";
+        public static final String BEFORE_UPDATE_TRIGGER = "transactions_search_before_update";
+        public static final String AFTER_UPDATE_TRIGGER = "transactions_search_after_update";
+        public static final String DELETE_TRIGGER = "transactions_search_delete";
+    }
+
+    // Order of the transaction lists, newest first. The id orders
+    // transactions on the same date, so that pages can be found by
+    // date and id; see getTransactionsPage().
+    private static final String TRANSACTION_ORDER = " ORDER BY " +
+            TransactionDbIds.DATE + " DESC, " + TransactionDbIds.NAME + " DESC";
+
+    // Number of transactions read at a time when going through all of them
+    public static final int TRANSACTION_PAGE_SIZE = 500;
+
+    /**
+     * Handles the transactions read by forEachTransaction() and
+     * forEachTransactionWithReceipt(), one at a time.
+     */
+    public interface TransactionHandler
+    {
+        /**
+         * Handle the transaction at the current position of the cursor,
+         * without moving the cursor.
+         */
+        void onTransaction(Cursor cursor) throws IOException, InterruptedException;
+    }
+
+    // Reads the page of transactions following the one with the given
+    // date and id, or the first page if afterDateMs is null
+    private interface PageQuery
+    {
+        Cursor getPage(Long afterDateMs, int afterId);
+    }
+
+    // A search which may be the start of a value, such as "12" or "12.5"
+    private static final Pattern NUMERIC_SEARCH = Pattern.compile("[0-9]*\\.?[0-9]+|[0-9]+\\.");
+
+    private static final int MONTHS_PER_YEAR = 12;
+    private static final int DAYS_PER_WEEK = 7;
+    private static final long SECONDS_PER_DAY = 24 * 60 * 60;
+
+    private static final String PREFS_NAME = "protect.budgetwatch";
+    private static final String MONTH_TOTALS_TIME_ZONE_PREF = "monthTotalsTimeZone";
+
+    // Number of date ranges for which budget totals are remembered
+    private static final int BUDGET_CACHE_SIZE = 8;
+
+    // Number of months before the current one whose spending is used
+    // to forecast the spending of the current month
+    private static final int FORECAST_HISTORY_MONTHS = 3;
+
+    // Number of changes to budget totals kept for bringing remembered
+    // totals up to date, see transactionsChanged()
+    private static final int BUDGET_DELTA_LOG_SIZE = 256;
+
+    // Lock for the following, which are shared by every DBHelper
+    private static final Object _changeLock = new Object();
+
+    // Counts changes to the budgets and transactions, made through any
+    // DBHelper, so that remembered results can tell whether they are current
+    private static long _dataGeneration = 0;
+
+    // Changes to budget totals made in each generation after
+    // _budgetDeltasStart, oldest first
+    private static final LinkedList<BudgetDelta> _budgetDeltas = new LinkedList<>();
+    private static long _budgetDeltasStart = 0;
+
+    // Number of transaction writes which may have committed but
+    // whose changes have not been recorded yet
+    private static int _pendingTransactionChanges = 0;
+
     private final Context _context;
 
+    // Time zone which the monthly totals were last confirmed to be computed in
+    private String _monthTotalsTimeZone = null;
+
+    // Results of getBudgetsWithBlank() by date range, which are valid for
+    // the data generation and time zone they were computed in. The
+    // least recently used range is forgotten first.
+    private final Map<String, BudgetCacheEntry> _budgetCache =
+            new LinkedHashMap<String, BudgetCacheEntry>(BUDGET_CACHE_SIZE, 0.75f, true)
+            {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, BudgetCacheEntry> eldest)
+                {
+                    return size() > BUDGET_CACHE_SIZE;
+                }
+            };
+    private long _budgetCacheGeneration = -1;
+    private String _budgetCacheTimeZone = null;
+
     public DBHelper(Context context)
     {
-        super(context, DATABASE_NAME, null, DATABASE_VERSION);
-        _context = context;
+        super(context.getApplicationContext(), DATABASE_NAME, null, DATABASE_VERSION);
+        _context = context.getApplicationContext();
+
+        // Write-ahead logging lets readers proceed while a writer, such
+        // as an import, holds a transaction open.
+        setWriteAheadLoggingEnabled(true);
+    }
+
+    /**
+     * Record that the budgets or transactions have changed, so that
+     * results computed before the change are not used again. This
+     * must be called after the change is committed.
+     */
+    private static void dataChanged()
+    {
+        synchronized(_changeLock)
+        {
+            _dataGeneration++;
+
+            // Remembered results cannot be brought past this change
+            _budgetDeltas.clear();
+            _budgetDeltasStart = _dataGeneration;
+        }
+    }
+
+    /**
+     * Start a write to a transaction whose change to the budget totals
+     * will be recorded with transactionsChanged(). Until then, no results
+     * read from the database are remembered, as they may or may not
+     * include the write.
+     */
+    private static void beginTransactionChange()
+    {
+        synchronized(_changeLock)
+        {
+            _pendingTransactionChanges++;
+        }
+    }
+
+    /**
+     * Finish a write started with beginTransactionChange(), recording the
+     * change it made to the budget totals, as the transaction removed and
+     * the transaction added. Either is null if there was none, such as
+     * when the write failed. Remembered totals are brought up to date by
+     * applying these rather than being computed again. This must be
+     * called after the change is committed.
+     */
+    private static void transactionsChanged(final BudgetDelta removed, final BudgetDelta added)
+    {
+        synchronized(_changeLock)
+        {
+            _pendingTransactionChanges--;
+
+            if(removed == null && added == null)
+            {
+                return;
+            }
+
+            _dataGeneration++;
+
+            for(BudgetDelta delta : new BudgetDelta[]{removed, added})
+            {
+                if(delta != null)
+                {
+                    delta.generation = _dataGeneration;
+                    _budgetDeltas.add(delta);
+                }
+            }
+
+            while(_budgetDeltas.size() > BUDGET_DELTA_LOG_SIZE)
+            {
+                _budgetDeltasStart = _budgetDeltas.removeFirst().generation;
+            }
+        }
+    }
+
+    /**
+     * @return the changes to budget totals made after the first generation
+     * up to and including the second, or null if they are no longer known
+     */
+    private static List<BudgetDelta> getBudgetDeltas(long fromGeneration, long toGeneration)
+    {
+        synchronized(_changeLock)
+        {
+            if(fromGeneration < _budgetDeltasStart)
+            {
+                return null;
+            }
+
+            List<BudgetDelta> deltas = new ArrayList<>();
+            for(BudgetDelta delta : _budgetDeltas)
+            {
+                if(delta.generation > fromGeneration && delta.generation <= toGeneration)
+                {
+                    deltas.add(delta);
+                }
+            }
+
+            return deltas;
+        }
     }
 
     /**
-     * Send a notification that the transaction database has changed
+     * Send a notification that the transaction database has changed,
+     * where any transaction may have changed
      */
     private void sendChangeNotification()
     {
         _context.sendBroadcast(new Intent(TransactionDatabaseChangedReceiver.ACTION_DATABASE_CHANGED));
     }
 
+    /**
+     * Send a notification that one transaction has changed, so
+     * listeners may update only what shows transactions of its types.
+     *
+     * @param types
+     *      the type of the transaction, and its type before the change
+     *      if it was updated
+     */
+    private void sendChangeNotification(final int... types)
+    {
+        Intent intent = new Intent(TransactionDatabaseChangedReceiver.ACTION_DATABASE_CHANGED);
+        intent.putExtra(TransactionDatabaseChangedReceiver.EXTRA_TRANSACTION_TYPES, types);
+        _context.sendBroadcast(intent);
+    }
+
     @Override
     public void onCreate(SQLiteDatabase db)
     {
         // create table for budgets
         db.execSQL(
                 "create table  " + BudgetDbIds.TABLE + "(" +
-                        BudgetDbIds.NAME + " text primary key," +
-                        BudgetDbIds.MAX + " INTEGER not null)");
+                        BudgetDbIds.ID + " INTEGER primary key autoincrement," +
+                        BudgetDbIds.NAME + " TEXT not null unique," +
+                        BudgetDbIds.MAX + " INTEGER)");
        // create table for transactions
         db.execSQL("create table " + TransactionDbIds.TABLE + "(" +
                 TransactionDbIds.NAME + " INTEGER primary key autoincrement," +
                 TransactionDbIds.TYPE + " INTEGER not null," +
                 TransactionDbIds.DESCRIPTION + " TEXT not null," +
                 TransactionDbIds.ACCOUNT + " TEXT," +
-                TransactionDbIds.BUDGET + " TEXT," +
-                TransactionDbIds.VALUE + " REAL not null," +
+                TransactionDbIds.BUDGET_ID + " INTEGER references " +
+                    BudgetDbIds.TABLE + "(" + BudgetDbIds.ID + ")," +
+                TransactionDbIds.VALUE + " INTEGER not null," +
                 TransactionDbIds.NOTE + " TEXT," +
                 TransactionDbIds.DATE + " INTEGER not null," +
                 TransactionDbIds.RECEIPT + " TEXT)");
+
+        createDerivedObjects(db);
     }
 
     @Override
     public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion)
     {
+        // Version 3 added the transaction indexes, version 4 the monthly
+        // budget totals, version 7 the transaction search index,
+        // version 8 the account index and version 9 the transaction
+        // counts in the monthly budget totals. None
+        // hold data of their own, so rather than upgrading them step by
+        // step they are dropped here and recreated from the current
+        // definitions after the tables have been upgraded.
+        dropDerivedObjects(db);
+
         // Upgrade from version 1 to version 2
         if(oldVersion < 2 && newVersion >= 2)
         {
             db.execSQL("ALTER TABLE " + TransactionDbIds.TABLE
                 + " ADD COLUMN " + TransactionDbIds.RECEIPT + " TEXT");
         }
+
+        // Upgrade from version 4 to version 5
+        if(oldVersion < 5 && newVersion >= 5)
+        {
+            // Transaction values were stored as floating point, which
+            // cannot represent most amounts exactly. They are now stored
+            // as a whole number of cents. SQLite cannot change the type
+            // of a column, so the table is copied.
+            db.execSQL("create table transactions_v5(" +
+                    "_id INTEGER primary key autoincrement," +
+                    "type INTEGER not null," +
+                    "description TEXT not null," +
+                    "account TEXT," +
+                    "budget TEXT," +
+                    "value INTEGER not null," +
+                    "note TEXT," +
+                    "date INTEGER not null," +
+                    "receipt TEXT)");
+            db.execSQL("insert into transactions_v5(" +
+                    "_id, type, description, account, budget, value, note, date, receipt) " +
+                    "select _id, type, description, account, budget, " +
+                    "cast(round(value * 100) as integer), note, date, receipt " +
+                    "from transactions");
+            db.execSQL("drop table transactions");
+            db.execSQL("alter table transactions_v5 rename to transactions");
+        }
+
+        // Upgrade from version 5 to version 6
+        if(oldVersion < 6 && newVersion >= 6)
+        {
+            // Budgets were keyed by name, which transactions repeated.
+            // Budgets now have an integer id which transactions refer to.
+            // Budget names only used by transactions get a row without
+            // a max, so that every transaction budget has an id.
+            db.execSQL("create table budgets_v6(" +
+                    "_id INTEGER primary key autoincrement," +
+                    "name TEXT not null unique," +
+                    "max INTEGER)");
+            db.execSQL("insert into budgets_v6(name, max) " +
+                    "select _id, max from budgets order by _id");
+            db.execSQL("insert or ignore into budgets_v6(name, max) " +
+                    "select distinct budget, null from transactions " +
+                    "where budget is not null and budget != '' order by budget");
+
+            db.execSQL("create table transactions_v6(" +
+                    "_id INTEGER primary key autoincrement," +
+                    "type INTEGER not null," +
+                    "description TEXT not null," +
+                    "account TEXT," +
+                    "budget_id INTEGER references budgets(_id)," +
+                    "value INTEGER not null," +
+                    "note TEXT," +
+                    "date INTEGER not null," +
+                    "receipt TEXT)");
+            db.execSQL("insert into transactions_v6(" +
+                    "_id, type, description, account, budget_id, value, note, date, receipt) " +
+                    "select _id, type, description, account, " +
+                    "(select budgets_v6._id from budgets_v6 where budgets_v6.name = transactions.budget), " +
+                    "value, note, date, receipt " +
+                    "from transactions");
+
+            db.execSQL("drop table transactions");
+            db.execSQL("drop table budgets");
+            db.execSQL("alter table budgets_v6 rename to budgets");
+            db.execSQL("alter table transactions_v6 rename to transactions");
+        }
+
+        createDerivedObjects(db);
+    }
+
+    /**
+     * Create the indexes, tables and triggers whose contents are derived
+     * from the budgets and transactions tables, and fill them in from
+     * the existing data.
+     */
+    private static void createDerivedObjects(SQLiteDatabase db)
+    {
+        createTransactionIndexes(db);
+        createMonthTotals(db);
+        createTransactionSearch(db);
+    }
+
+    /**
+     * Drop everything created by createDerivedObjects(), if it exists.
+     */
+    private static void dropDerivedObjects(SQLiteDatabase db)
+    {
+        for(String trigger : new String[]{BudgetMonthTotalsDbIds.INSERT_TRIGGER,
+                BudgetMonthTotalsDbIds.UPDATE_TRIGGER, BudgetMonthTotalsDbIds.DELETE_TRIGGER,
+                TransactionSearchDbIds.INSERT_TRIGGER, TransactionSearchDbIds.BEFORE_UPDATE_TRIGGER,
+                TransactionSearchDbIds.AFTER_UPDATE_TRIGGER, TransactionSearchDbIds.DELETE_TRIGGER})
+        {
+            db.execSQL("drop trigger if exists " + trigger);
+        }
+
+        db.execSQL("drop table if exists " + BudgetMonthTotalsDbIds.TABLE);
+        db.execSQL("drop table if exists " + TransactionSearchDbIds.TABLE);
+
+        for(String index : new String[]{TransactionDbIds.TYPE_DATE_INDEX,
+                TransactionDbIds.BUDGET_TYPE_DATE_INDEX, TransactionDbIds.RECEIPT_DATE_INDEX,
+                TransactionDbIds.ACCOUNT_TYPE_DATE_INDEX})
+        {
+            db.execSQL("drop index if exists " + index);
+        }
+    }
+
+    /**
+     * Create the indexes used by the transaction queries.
+     *
+     * The (type, date) index serves the transaction lists, which filter on
+     * type and sort by date. The (budget id, type, date, value) index serves
+     * lists filtered by budget as well as the budget totals, which can be
+     * summed from the index without reading the table. The receipt index
+     * only holds transactions which have a receipt. The (account, type,
+     * date, value) index serves the account totals in the same way.
+     */
+    private static void createTransactionIndexes(SQLiteDatabase db)
+    {
+        db.execSQL("create index " + TransactionDbIds.TYPE_DATE_INDEX +
+                " on " + TransactionDbIds.TABLE + "(" +
+                TransactionDbIds.TYPE + ", " +
+                TransactionDbIds.DATE + ")");
+        db.execSQL("create index " + TransactionDbIds.BUDGET_TYPE_DATE_INDEX +
+                " on " + TransactionDbIds.TABLE + "(" +
+                TransactionDbIds.BUDGET_ID + ", " +
+                TransactionDbIds.TYPE + ", " +
+                TransactionDbIds.DATE + ", " +
+                TransactionDbIds.VALUE + ")");
+        db.execSQL("create index " + TransactionDbIds.RECEIPT_DATE_INDEX +
+                " on " + TransactionDbIds.TABLE + "(" +
+                TransactionDbIds.DATE + ") where " + TransactionDbIds.HAS_RECEIPT);
+        db.execSQL("create index " + TransactionDbIds.ACCOUNT_TYPE_DATE_INDEX +
+                " on " + TransactionDbIds.TABLE + "(" +
+                TransactionDbIds.ACCOUNT + ", " +
+                TransactionDbIds.TYPE + ", " +
+                TransactionDbIds.DATE + ", " +
+                TransactionDbIds.VALUE + ")");
+    }
+
+    /**
+     * SQL expression for the month of a date column holding milliseconds,
+     * in the local time zone. The month is counted as year * 12 + month,
+     * where January is 0, the same as is computed from a Calendar.
+     */
+    private static String monthOf(final String dateColumn)
+    {
+        final String localTime = dateColumn + " / 1000, 'unixepoch', 'localtime'";
+        return "(cast(strftime('%Y', " + localTime + ") as integer) * 12 + " +
+                "cast(strftime('%m', " + localTime + ") as integer) - 1)";
+    }
+
+    /**
+     * SQL expression for the day of a date column holding milliseconds,
+     * in the local time zone, counted in days since 1 January 1970.
+     */
+    private static String dayOf(final String dateColumn)
+    {
+        return floorDivOf("cast(strftime('%s', " + floorDivOf(dateColumn, 1000) +
+                ", 'unixepoch', 'localtime') as integer)", SECONDS_PER_DAY);
+    }
+
+    /**
+     * @return the day of a date in milliseconds, in the local time
+     * zone, counted as dayOf() counts days.
+     */
+    private static long toDay(long dateMs)
+    {
+        final long localMs = dateMs + TimeZone.getDefault().getOffset(dateMs);
+        return floorDiv(localMs, SECONDS_PER_DAY * 1000L);
+    }
+
+    /**
+     * SQL expression dividing a value by a positive divisor, rounded down.
+     * SQLite rounds integer division toward zero, which would count
+     * times before 1970 in the day or week after theirs.
+     */
+    private static String floorDivOf(final String value, final long divisor)
+    {
+        return "((" + value + ") / " + divisor + " - ((" + value + ") % " + divisor + " < 0))";
+    }
+
+    /**
+     * @return the value divided by a positive divisor, rounded down as
+     * floorDivOf() rounds
+     */
+    private static long floorDiv(long value, long divisor)
+    {
+        long quotient = value / divisor;
+        if(value % divisor < 0)
+        {
+            quotient--;
+        }
+        return quotient;
+    }
+
+    /**
+     * SQL statement which adds (or with "-", removes) the value of a
+     * transaction row, either "new" or "old" in a trigger, to its month
+     * total, and counts (or uncounts) the transaction.
+     */
+    private static String applyToMonthTotal(final String row, final String operator)
+    {
+        return "update " + BudgetMonthTotalsDbIds.TABLE + " set " +
+                BudgetMonthTotalsDbIds.TOTAL + " = " + BudgetMonthTotalsDbIds.TOTAL + " " +
+                    operator + " " + row + "." + TransactionDbIds.VALUE + ", " +
+                BudgetMonthTotalsDbIds.COUNT + " = " + BudgetMonthTotalsDbIds.COUNT + " " +
+                    operator + " 1 where " +
+                BudgetMonthTotalsDbIds.BUDGET_ID + " = ifnull(" + row + "." + TransactionDbIds.BUDGET_ID + ", 0) and " +
+                BudgetMonthTotalsDbIds.MONTH + " = " + monthOf(row + "." + TransactionDbIds.DATE) + " and " +
+                BudgetMonthTotalsDbIds.TYPE + " = " + row + "." + TransactionDbIds.TYPE + ";";
+    }
+
+    /**
+     * SQL statement which ensures a month total row exists for the
+     * given transaction row in a trigger.
+     */
+    private static String ensureMonthTotal(final String row)
+    {
+        return "insert or ignore into " + BudgetMonthTotalsDbIds.TABLE + "(" +
+                BudgetMonthTotalsDbIds.BUDGET_ID + ", " +
+                BudgetMonthTotalsDbIds.MONTH + ", " +
+                BudgetMonthTotalsDbIds.TYPE + ", " +
+                BudgetMonthTotalsDbIds.TOTAL + ", " +
+                BudgetMonthTotalsDbIds.COUNT + ") values (" +
+                "ifnull(" + row + "." + TransactionDbIds.BUDGET_ID + ", 0), " +
+                monthOf(row + "." + TransactionDbIds.DATE) + ", " +
+                row + "." + TransactionDbIds.TYPE + ", 0, 0);";
+    }
+
+    /**
+     * Create the monthly budget totals table and the triggers which
+     * keep it current as transactions are inserted, updated and deleted.
+     */
+    private static void createMonthTotals(SQLiteDatabase db)
+    {
+        db.execSQL("create table " + BudgetMonthTotalsDbIds.TABLE + "(" +
+                BudgetMonthTotalsDbIds.BUDGET_ID + " INTEGER not null," +
+                BudgetMonthTotalsDbIds.MONTH + " INTEGER not null," +
+                BudgetMonthTotalsDbIds.TYPE + " INTEGER not null," +
+                BudgetMonthTotalsDbIds.TOTAL + " INTEGER not null," +
+                BudgetMonthTotalsDbIds.COUNT + " INTEGER not null," +
+                "primary key(" + BudgetMonthTotalsDbIds.BUDGET_ID + ", " +
+                    BudgetMonthTotalsDbIds.MONTH + ", " +
+                    BudgetMonthTotalsDbIds.TYPE + "))");
+
+        db.execSQL("create trigger " + BudgetMonthTotalsDbIds.INSERT_TRIGGER +
+                " after insert on " + TransactionDbIds.TABLE + " begin " +
+                ensureMonthTotal("new") +
+                applyToMonthTotal("new", "+") +
+                " end");
+        db.execSQL("create trigger " + BudgetMonthTotalsDbIds.DELETE_TRIGGER +
+                " after delete on " + TransactionDbIds.TABLE + " begin " +
+                applyToMonthTotal("old", "-") +
+                " end");
+        db.execSQL("create trigger " + BudgetMonthTotalsDbIds.UPDATE_TRIGGER +
+                " after update of " +
+                    TransactionDbIds.TYPE + ", " +
+                    TransactionDbIds.BUDGET_ID + ", " +
+                    TransactionDbIds.VALUE + ", " +
+                    TransactionDbIds.DATE +
+                " on " + TransactionDbIds.TABLE + " begin " +
+                applyToMonthTotal("old", "-") +
+                ensureMonthTotal("new") +
+                applyToMonthTotal("new", "+") +
+                " end");
+
+        rebuildMonthTotals(db);
+    }
+
+    /**
+     * Create the transaction search index and the triggers which keep
+     * it current as transactions are inserted, updated and deleted.
+     *
+     * The index reads the text it indexes from the transaction table, so
+     * the old text is removed from the index before a row is changed or
+     * deleted, while the row still has it.
+     */
+    private static void createTransactionSearch(SQLiteDatabase db)
+    {
+        final String columns = TransactionDbIds.DESCRIPTION + ", " +
+                TransactionDbIds.ACCOUNT + ", " +
+                TransactionDbIds.NOTE;
+        final String removeOld = "delete from " + TransactionSearchDbIds.TABLE +
+                " where docid = old." + TransactionDbIds.NAME + ";";
+        final String addNew = "insert into " + TransactionSearchDbIds.TABLE +
+                "(docid, " + columns + ") values (" +
+                "new." + TransactionDbIds.NAME + ", " +
+                "new." + TransactionDbIds.DESCRIPTION + ", " +
+                "new." + TransactionDbIds.ACCOUNT + ", " +
+                "new." + TransactionDbIds.NOTE + ");";
+
+        db.execSQL("create virtual table " + TransactionSearchDbIds.TABLE + " using fts4(" +
+                "content=\"" + TransactionDbIds.TABLE + "\", " + columns + ")");
+
+        db.execSQL("create trigger " + TransactionSearchDbIds.INSERT_TRIGGER +
+                " after insert on " + TransactionDbIds.TABLE + " begin " +
+                addNew +
+                " end");
+        db.execSQL("create trigger " + TransactionSearchDbIds.DELETE_TRIGGER +
+                " before delete on " + TransactionDbIds.TABLE + " begin " +
+                removeOld +
+                " end");
+        db.execSQL("create trigger " + TransactionSearchDbIds.BEFORE_UPDATE_TRIGGER +
+                " before update of " + columns + " on " + TransactionDbIds.TABLE + " begin " +
+                removeOld +
+                " end");
+        db.execSQL("create trigger " + TransactionSearchDbIds.AFTER_UPDATE_TRIGGER +
+                " after update of " + columns + " on " + TransactionDbIds.TABLE + " begin " +
+                addNew +
+                " end");
+
+        db.execSQL("insert into " + TransactionSearchDbIds.TABLE + "(" + TransactionSearchDbIds.TABLE + ") " +
+                "values ('rebuild')");
+    }
+
+    /**
+     * Recompute the monthly budget totals from the transaction table.
+     */
+    private static void rebuildMonthTotals(SQLiteDatabase db)
+    {
+        db.execSQL("delete from " + BudgetMonthTotalsDbIds.TABLE);
+        db.execSQL("insert into " + BudgetMonthTotalsDbIds.TABLE + "(" +
+                BudgetMonthTotalsDbIds.BUDGET_ID + ", " +
+                BudgetMonthTotalsDbIds.MONTH + ", " +
+                BudgetMonthTotalsDbIds.TYPE + ", " +
+                BudgetMonthTotalsDbIds.TOTAL + ", " +
+                BudgetMonthTotalsDbIds.COUNT + ") " +
+                "select ifnull(" + TransactionDbIds.BUDGET_ID + ", 0), " +
+                monthOf(TransactionDbIds.DATE) + ", " +
+                TransactionDbIds.TYPE + ", " +
+                "sum(" + TransactionDbIds.VALUE + "), " +
+                "count(*) " +
+                "from " + TransactionDbIds.TABLE + " group by 1, 2, 3");
+    }
+
+    /**
+     * The monthly budget totals are keyed by month in the local time zone.
+     * If the time zone has changed since they were computed, recompute
+     * them so that they line up with the months as seen by the user.
+     */
+    private synchronized void checkMonthTotalsTimeZone()
+    {
+        final String timeZone = TimeZone.getDefault().getID();
+        if(timeZone.equals(_monthTotalsTimeZone))
+        {
+            return;
+        }
+
+        SharedPreferences prefs = _context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        if(timeZone.equals(prefs.getString(MONTH_TOTALS_TIME_ZONE_PREF, null)) == false)
+        {
+            SQLiteDatabase db = getWritableDatabase();
+            db.beginTransaction();
+            try
+            {
+                rebuildMonthTotals(db);
+                db.setTransactionSuccessful();
+            }
+            finally
+            {
+                db.endTransaction();
+            }
+
+            prefs.edit().putString(MONTH_TOTALS_TIME_ZONE_PREF, timeZone).apply();
+        }
+
+        _monthTotalsTimeZone = timeZone;
     }
 
     /**
@@ -114,7 +821,6 @@ class DBHelper extends SQLiteOpenHelper
     {
         SQLiteDatabase db = getWritableDatabase();
         boolean result = insertBudget(db, name, max);
-        db.close();
 
         return result;
     }
@@ -139,10 +845,64 @@ class DBHelper extends SQLiteOpenHelper
         contentValues.put(BudgetDbIds.NAME, name);
         contentValues.put(BudgetDbIds.MAX, max);
 
+        // If transactions already use the name, the budget has a row
+        // without a max, which becomes the budget.
+        final int rowsUpdated = writableDb.update(BudgetDbIds.TABLE, contentValues,
+                BudgetDbIds.NAME + "=? and not " + BudgetDbIds.EXISTS, new String[]{name});
+        if(rowsUpdated == 1)
+        {
+            dataChanged();
+            return true;
+        }
+
         final long newId = writableDb.insert(BudgetDbIds.TABLE, null, contentValues);
+        if(newId != -1)
+        {
+            dataChanged();
+        }
         return (newId != -1);
     }
 
+    /**
+     * Get the id of the named budget, adding a row for the name
+     * if there is none yet. The row is added without a max, so it
+     * does not become a budget itself.
+     *
+     * @param writableDb
+     *      writable database instance to use
+     * @param name
+     *      name of the budget
+     * @return id of the budget, or null if the name is null or empty,
+     * which means no budget
+     */
+    private static Long getOrAddBudgetId(SQLiteDatabase writableDb, final String name)
+    {
+        if(name == null || name.isEmpty())
+        {
+            return null;
+        }
+
+        final String query = "select " + BudgetDbIds.ID + " from " + BudgetDbIds.TABLE +
+                " where " + BudgetDbIds.NAME + "=?";
+        final String [] args = new String[]{name};
+
+        Cursor data = writableDb.rawQuery(query, args);
+        Long id = data.moveToFirst() ? data.getLong(0) : null;
+        data.close();
+
+        if(id == null)
+        {
+            ContentValues contentValues = new ContentValues();
+            contentValues.put(BudgetDbIds.NAME, name);
+            writableDb.insertWithOnConflict(BudgetDbIds.TABLE, null, contentValues,
+                    SQLiteDatabase.CONFLICT_IGNORE);
+
+            id = DatabaseUtils.longForQuery(writableDb, query, args);
+        }
+
+        return id;
+    }
+
     /**
      * Update the budget value of a given budget in the database
      *
@@ -159,32 +919,150 @@ class DBHelper extends SQLiteOpenHelper
         contentValues.put(BudgetDbIds.MAX, max);
 
         SQLiteDatabase db = getWritableDatabase();
-        int rowsUpdated = db.update(BudgetDbIds.TABLE, contentValues, BudgetDbIds.NAME + "=?",
+        int rowsUpdated = db.update(BudgetDbIds.TABLE, contentValues,
+                BudgetDbIds.NAME + "=? and " + BudgetDbIds.EXISTS,
                 new String[]{name});
-        db.close();
+
+        if(rowsUpdated == 1)
+        {
+            dataChanged();
+        }
 
         return (rowsUpdated == 1);
     }
 
     /**
-     * Delete a given budget from the database
+     * Rename a budget and set its value, both in one database
+     * transaction. The transactions of the budget refer to it
+     * by id, so they follow it to the new name without being updated.
      *
-     * @param name
-     *      name of the budget to delete
-     * @return if the budget was successfully deleted,
-     * false otherwise
+     * If the new name is only used by transactions, and is not a
+     * budget, those transactions are moved into the renamed budget.
+     *
+     * @param oldName
+     *      current name of the budget
+     * @param newName
+     *      name to give the budget
+     * @param max
+     *      budget value to give the budget
+     * @return true if the budget exists and was renamed, false if it
+     * does not exist or there is already a budget with the new name,
+     * in which case nothing is changed
      */
-    public boolean deleteBudget (final String name)
+    public boolean renameBudget(final String oldName, final String newName, final int max)
     {
+        if(newName.isEmpty())
+        {
+            return false;
+        }
+
         SQLiteDatabase db = getWritableDatabase();
-        int rowsDeleted =  db.delete(BudgetDbIds.TABLE,
-                BudgetDbIds.NAME + " = ? ",
-                new String[]{name});
-        db.close();
-        return (rowsDeleted == 1);
-    }
+        boolean renamed = false;
 
-    /**
+        db.beginTransaction();
+        try
+        {
+            Cursor data = db.rawQuery("select " + BudgetDbIds.ID + ", " + BudgetDbIds.NAME + ", " +
+                    BudgetDbIds.EXISTS + " from " + BudgetDbIds.TABLE +
+                    " where " + BudgetDbIds.NAME + " in (?, ?)", new String[]{oldName, newName});
+
+            Long oldId = null;
+            Long newId = null;
+            boolean newExists = false;
+
+            while(data.moveToNext())
+            {
+                if(data.getString(1).equals(oldName))
+                {
+                    if(data.getInt(2) == 1)
+                    {
+                        oldId = data.getLong(0);
+                    }
+                }
+                else
+                {
+                    newId = data.getLong(0);
+                    newExists = (data.getInt(2) == 1);
+                }
+            }
+            data.close();
+
+            if(oldId != null && newExists == false)
+            {
+                if(newId != null)
+                {
+                    ContentValues contentValues = new ContentValues();
+                    contentValues.put(TransactionDbIds.BUDGET_ID, oldId);
+                    db.update(TransactionDbIds.TABLE, contentValues,
+                            TransactionDbIds.BUDGET_ID + "=?", new String[]{Long.toString(newId)});
+
+                    db.delete(BudgetDbIds.TABLE, BudgetDbIds.ID + "=?",
+                            new String[]{Long.toString(newId)});
+                }
+
+                ContentValues contentValues = new ContentValues();
+                contentValues.put(BudgetDbIds.NAME, newName);
+                contentValues.put(BudgetDbIds.MAX, max);
+                renamed = db.update(BudgetDbIds.TABLE, contentValues,
+                        BudgetDbIds.ID + "=?", new String[]{Long.toString(oldId)}) == 1;
+            }
+
+            if(renamed)
+            {
+                db.setTransactionSuccessful();
+            }
+        }
+        finally
+        {
+            db.endTransaction();
+        }
+
+        if(renamed)
+        {
+            // The budget name of the transactions has changed
+            dataChanged();
+            sendChangeNotification();
+        }
+
+        return renamed;
+    }
+
+    /**
+     * Delete a given budget from the database. The transactions
+     * of the budget are not deleted, and still have its name.
+     *
+     * @param name
+     *      name of the budget to delete
+     * @return if the budget was successfully deleted,
+     * false otherwise
+     */
+    public boolean deleteBudget (final String name)
+    {
+        ContentValues contentValues = new ContentValues();
+        contentValues.putNull(BudgetDbIds.MAX);
+
+        SQLiteDatabase db = getWritableDatabase();
+        int rowsDeleted = db.update(BudgetDbIds.TABLE, contentValues,
+                BudgetDbIds.NAME + " = ? and " + BudgetDbIds.EXISTS,
+                new String[]{name});
+
+        // The row is only kept if transactions use the name
+        db.delete(BudgetDbIds.TABLE,
+                BudgetDbIds.NAME + " = ? and not " + BudgetDbIds.EXISTS + " and not exists (" +
+                    "select 1 from " + TransactionDbIds.TABLE + " where " +
+                    TransactionDbIds.TABLE + "." + TransactionDbIds.BUDGET_ID + " = " +
+                    BudgetDbIds.TABLE + "." + BudgetDbIds.ID + ")",
+                new String[]{name});
+
+        if(rowsDeleted == 1)
+        {
+            dataChanged();
+        }
+
+        return (rowsDeleted == 1);
+    }
+
+    /**
      * Get Budget object for the named budget in the database,
      * but only fill in the 'name' and 'max' fields;
      * the value of other fields is undefined.
@@ -197,174 +1075,996 @@ class DBHelper extends SQLiteOpenHelper
     public Budget getBudgetStoredOnly(final String name)
     {
         SQLiteDatabase db = getReadableDatabase();
-        Cursor data = db.rawQuery("select * from " + BudgetDbIds.TABLE +
-                " where " + BudgetDbIds.NAME + "=?", new String[]{name});
+        Cursor data = db.rawQuery("select * from " + BudgetDbIds.TABLE +
+                " where " + BudgetDbIds.NAME + "=? and " + BudgetDbIds.EXISTS, new String[]{name});
+
+        Budget budget = null;
+
+        if(data.getCount() == 1)
+        {
+            data.moveToFirst();
+            String goalName = data.getString(data.getColumnIndexOrThrow(BudgetDbIds.NAME));
+            int goalMax = data.getInt(data.getColumnIndexOrThrow(BudgetDbIds.MAX));
+
+            budget = new Budget(goalName, goalMax, 0);
+        }
+
+        data.close();
+
+        return budget;
+    }
+
+    /**
+     * Get Budget objects for each budget in the database,
+     * with the 'current' field filled out from all transactions
+     * between the provided dates.
+     *
+     * @param startDateMs
+     *      first date in milliseconds for transactions to compute
+     *      into the 'current' field.
+     * @param endDateMs
+     *      last date in milliseconds for transactions to compute
+     *      into the 'current' field.
+     * @return list of Budget objects, or an empty field if none
+     * could be found.
+     */
+    public List<Budget> getBudgets(long startDateMs, long endDateMs)
+    {
+        LinkedList<Budget> budgets = getBudgetsWithBlank(startDateMs, endDateMs);
+        budgets.removeLast();
+        return budgets;
+    }
+
+    /**
+     * Get Budget object representing transactions which
+     * have no budget, e.g. the budget is blank. The 'current' field
+     * will be filled out from all transactions between the provided
+     * dates, and the 'max' field is left at 0.
+     *
+     * @param startDateMs
+     *      first date in milliseconds for transactions to compute
+     *      into the 'current' field.
+     * @param endDateMs
+     *      last date in milliseconds for transactions to compute
+     *      into the 'current' field.
+     * @return Budget object
+     */
+    public Budget getBlankBudget(long startDateMs, long endDateMs)
+    {
+        return getBudgetsWithBlank(startDateMs, endDateMs).getLast();
+    }
+
+    /**
+     * Get Budget objects for each budget in the database followed by
+     * the Budget object for transactions which have no budget, as
+     * getBudgets() and getBlankBudget() would return them.
+     *
+     * The transactions between the provided dates are read in a single
+     * pass, grouped by budget, and the totals joined to the budgets, so
+     * the cost does not grow with the number of budgets. If the dates
+     * cover whole months the totals are instead read from the monthly
+     * budget totals, without reading any transactions.
+     *
+     * The result for each date range is remembered, so asking for the
+     * same range again does not query the database. Changes to single
+     * transactions are applied to the remembered totals; any other
+     * change to the budgets or transactions, or a change of time zone,
+     * forgets them.
+     *
+     * @param startDateMs
+     *      first date in milliseconds for transactions to compute
+     *      into the 'current' field.
+     * @param endDateMs
+     *      last date in milliseconds for transactions to compute
+     *      into the 'current' field.
+     * @return list of Budget objects sorted by name, where the last
+     * entry is always the blank budget. The list belongs to the caller.
+     */
+    public LinkedList<Budget> getBudgetsWithBlank(long startDateMs, long endDateMs)
+    {
+        final String key = startDateMs + ":" + endDateMs;
+        final String timeZone = TimeZone.getDefault().getID();
+
+        // Read before querying. If the data changes during the query, or
+        // a write which the query may or may not see is underway, the
+        // result is not remembered.
+        final long generation;
+        final boolean cacheable;
+        synchronized(_changeLock)
+        {
+            generation = _dataGeneration;
+            cacheable = (_pendingTransactionChanges == 0);
+        }
+
+        synchronized(_budgetCache)
+        {
+            if(generation > _budgetCacheGeneration || timeZone.equals(_budgetCacheTimeZone) == false)
+            {
+                List<BudgetDelta> deltas = null;
+                if(timeZone.equals(_budgetCacheTimeZone))
+                {
+                    deltas = getBudgetDeltas(_budgetCacheGeneration, generation);
+                }
+
+                if(deltas != null)
+                {
+                    for(BudgetCacheEntry entry : _budgetCache.values())
+                    {
+                        for(BudgetDelta delta : deltas)
+                        {
+                            entry.apply(delta);
+                        }
+                    }
+                }
+                else
+                {
+                    _budgetCache.clear();
+                }
+
+                _budgetCacheGeneration = generation;
+                _budgetCacheTimeZone = timeZone;
+            }
+
+            BudgetCacheEntry cached = _budgetCache.get(key);
+            if(cached != null)
+            {
+                return new LinkedList<>(cached.budgets);
+            }
+        }
+
+        LinkedList<Budget> budgets = queryBudgetsWithBlank(startDateMs, endDateMs);
+
+        synchronized(_budgetCache)
+        {
+            boolean current;
+            synchronized(_changeLock)
+            {
+                current = cacheable && generation == _dataGeneration && _pendingTransactionChanges == 0;
+            }
+
+            if(current && generation == _budgetCacheGeneration && timeZone.equals(_budgetCacheTimeZone))
+            {
+                _budgetCache.put(key, new BudgetCacheEntry(startDateMs, endDateMs, new LinkedList<>(budgets)));
+            }
+        }
+
+        return budgets;
+    }
+
+    /**
+     * Get the budgets, the blank budget and their totals over a date
+     * range, as a screen listing the budgets shows them.
+     *
+     * The budgets come from a single getBudgetsWithBlank() call, which
+     * is one query or none if the range is remembered, and the count and
+     * totals are computed from its result rather than queried again.
+     *
+     * @param startDateMs
+     *      first date in milliseconds for transactions to compute
+     *      into the 'current' field.
+     * @param endDateMs
+     *      last date in milliseconds for transactions to compute
+     *      into the 'current' field.
+     * @return the snapshot, which belongs to the caller
+     */
+    public BudgetSnapshot getBudgetSnapshot(long startDateMs, long endDateMs)
+    {
+        LinkedList<Budget> budgets = getBudgetsWithBlank(startDateMs, endDateMs);
+        Budget blankBudget = budgets.removeLast();
+        return new BudgetSnapshot(budgets, blankBudget);
+    }
+
+    /**
+     * The change made to the budget totals by adding or removing one
+     * transaction.
+     */
+    private static class BudgetDelta
+    {
+        private final String budget; // "" for no budget
+        private final int type;
+        private final long dateMs;
+        private final long valueCents; // negative if the transaction was removed
+
+        // Generation of the data in which the change was made
+        private long generation;
+
+        private BudgetDelta(final String budget, final int type, final long dateMs, final long valueCents)
+        {
+            this.budget = (budget != null) ? budget : "";
+            this.type = type;
+            this.dateMs = dateMs;
+            this.valueCents = valueCents;
+        }
+
+        /**
+         * @return the change to the 'current' value of the budget,
+         * which counts expenses less revenues
+         */
+        private long currentCents()
+        {
+            if(type == TransactionDbIds.EXPENSE)
+            {
+                return valueCents;
+            }
+            else if(type == TransactionDbIds.REVENUE)
+            {
+                return -valueCents;
+            }
+
+            return 0;
+        }
+    }
+
+    /**
+     * Read the change to the budget totals which removing the given
+     * transaction would make.
+     *
+     * @return the change, or null if the transaction does not exist
+     */
+    private static BudgetDelta readRemovedTransaction(SQLiteDatabase db, final int id)
+    {
+        Cursor data = db.rawQuery("select " + TransactionDbIds.TYPE + ", " +
+                TransactionDbIds.DATE + ", " +
+                TransactionDbIds.VALUE + ", " +
+                BUDGET_NAME_COLUMN + " from " + TransactionDbIds.TABLE +
+                " where " + TransactionDbIds.NAME + "=?", new String[]{Integer.toString(id)});
+
+        BudgetDelta delta = null;
+
+        if(data.moveToFirst())
+        {
+            delta = new BudgetDelta(data.getString(3), data.getInt(0), data.getLong(1), -data.getLong(2));
+        }
+
+        data.close();
+
+        return delta;
+    }
+
+    /**
+     * The budgets of one date range, as returned by getBudgetsWithBlank().
+     */
+    private static class BudgetCacheEntry
+    {
+        private final long startDateMs;
+        private final long endDateMs;
+        private final LinkedList<Budget> budgets;
+
+        private BudgetCacheEntry(final long startDateMs, final long endDateMs, final LinkedList<Budget> budgets)
+        {
+            this.startDateMs = startDateMs;
+            this.endDateMs = endDateMs;
+            this.budgets = budgets;
+        }
+
+        /**
+         * Bring the budgets up to date with a change to the transactions.
+         * A change to a budget which is not listed, because it was deleted
+         * and is only used by transactions, is not counted, as it would
+         * not be by the query.
+         */
+        private void apply(final BudgetDelta delta)
+        {
+            if(delta.dateMs < startDateMs || delta.dateMs > endDateMs)
+            {
+                return;
+            }
+
+            ListIterator<Budget> iterator = budgets.listIterator();
+            while(iterator.hasNext())
+            {
+                Budget budget = iterator.next();
+                if(budget.name.equals(delta.budget))
+                {
+                    iterator.set(Budget.fromCents(budget.name, budget.max,
+                            budget.currentCents + delta.currentCents()));
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Query the database for getBudgetsWithBlank().
+     */
+    private LinkedList<Budget> queryBudgetsWithBlank(long startDateMs, long endDateMs)
+    {
+        final String ID_COL = "id";
+        final String NAME_COL = "name";
+        final String MAX_COL = "max";
+        final String BLANK_COL = "blank";
+        final String TOTAL_EXPENSE_COL = "total_expense";
+        final String TOTAL_REVENUE_COL = "total_revenue";
+
+        // One row per budget, plus a row for transactions without a budget
+        final String budgetRows = "select " + BudgetDbIds.ID + " as " + ID_COL + ", " +
+                BudgetDbIds.NAME + " as " + NAME_COL + ", " +
+                BudgetDbIds.MAX + " as " + MAX_COL + ", 0 as " + BLANK_COL +
+                " from " + BudgetDbIds.TABLE + " where " + BudgetDbIds.EXISTS +
+                " union all select 0, '', 0, 1";
+
+        // Determine over how many months the budgets represent.
+        // Adjust the budget max to match the number of months
+        // represented.
+        int startMonths = toMonth(startDateMs);
+        int endMonths = toMonth(endDateMs);
+        int totalMonthsInRange = endMonths - startMonths + 1;
+
+        final String totals;
+        final String[] args;
+
+        if(CalendarUtil.isWholeMonths(startDateMs, endDateMs))
+        {
+            checkMonthTotalsTimeZone();
+
+            // Expense and revenue totals for each budget, from the monthly totals
+            totals = "select " + BudgetMonthTotalsDbIds.BUDGET_ID + ", " +
+                    "sum(case when " + BudgetMonthTotalsDbIds.TYPE + " = ? then " + BudgetMonthTotalsDbIds.TOTAL + " else 0 end) " +
+                        "as " + TOTAL_EXPENSE_COL + ", " +
+                    "sum(case when " + BudgetMonthTotalsDbIds.TYPE + " = ? then " + BudgetMonthTotalsDbIds.TOTAL + " else 0 end) " +
+                        "as " + TOTAL_REVENUE_COL + " " +
+                    "from " + BudgetMonthTotalsDbIds.TABLE + " where " +
+                    BudgetMonthTotalsDbIds.MONTH + " >= ? and " +
+                    BudgetMonthTotalsDbIds.MONTH + " <= ? " +
+                    "group by " + BudgetMonthTotalsDbIds.BUDGET_ID;
+            args = new String[]
+                {
+                    Integer.toString(TransactionDbIds.EXPENSE),
+                    Integer.toString(TransactionDbIds.REVENUE),
+                    Integer.toString(startMonths),
+                    Integer.toString(endMonths)
+                };
+        }
+        else
+        {
+            // Expense and revenue totals for each budget, from a single scan
+            totals = "select ifnull(" + TransactionDbIds.BUDGET_ID + ", 0) as " +
+                        BudgetMonthTotalsDbIds.BUDGET_ID + ", " +
+                    "sum(case when " + TransactionDbIds.TYPE + " = ? then " + TransactionDbIds.VALUE + " else 0 end) " +
+                        "as " + TOTAL_EXPENSE_COL + ", " +
+                    "sum(case when " + TransactionDbIds.TYPE + " = ? then " + TransactionDbIds.VALUE + " else 0 end) " +
+                        "as " + TOTAL_REVENUE_COL + " " +
+                    "from " + TransactionDbIds.TABLE + " where " +
+                    TransactionDbIds.DATE + " >= ? and " +
+                    TransactionDbIds.DATE + " <= ? " +
+                    "group by 1";
+            args = new String[]
+                {
+                    Integer.toString(TransactionDbIds.EXPENSE),
+                    Integer.toString(TransactionDbIds.REVENUE),
+                    Long.toString(startDateMs),
+                    Long.toString(endDateMs)
+                };
+        }
+
+        SQLiteDatabase db = getReadableDatabase();
+
+        Cursor data = db.rawQuery("select b." + NAME_COL + ", b." + MAX_COL + ", b." + BLANK_COL + ", " +
+                "ifnull(t." + TOTAL_EXPENSE_COL + ", 0) as " + TOTAL_EXPENSE_COL + ", " +
+                "ifnull(t." + TOTAL_REVENUE_COL + ", 0) as " + TOTAL_REVENUE_COL + " " +
+                "from (" + budgetRows + ") as b left join (" + totals + ") as t " +
+                "on t." + BudgetMonthTotalsDbIds.BUDGET_ID + " = b." + ID_COL + " " +
+                "order by b." + BLANK_COL + ", b." + NAME_COL, args);
+
+        LinkedList<Budget> budgets = new LinkedList<>();
+        Budget blankBudget = new Budget("", 0, 0);
+
+        if(data.moveToFirst())
+        {
+            final int nameIndex = data.getColumnIndexOrThrow(NAME_COL);
+            final int maxIndex = data.getColumnIndexOrThrow(MAX_COL);
+            final int blankIndex = data.getColumnIndexOrThrow(BLANK_COL);
+            final int expenseIndex = data.getColumnIndexOrThrow(TOTAL_EXPENSE_COL);
+            final int revenueIndex = data.getColumnIndexOrThrow(TOTAL_REVENUE_COL);
+
+            do
+            {
+                long expenses = data.getLong(expenseIndex);
+                long revenues = data.getLong(revenueIndex);
+                long currentCents = expenses - revenues;
+
+                if(data.getInt(blankIndex) == 1)
+                {
+                    blankBudget = Budget.fromCents("", 0, currentCents);
+                    continue;
+                }
+
+                String name = data.getString(nameIndex);
+                int max = data.getInt(maxIndex) * totalMonthsInRange;
+
+                budgets.add(Budget.fromCents(name, max, currentCents));
+            } while(data.moveToNext());
+        }
+
+        data.close();
+
+        budgets.add(blankBudget);
+
+        return budgets;
+    }
+
+    /**
+     * @return the month of a date in milliseconds, in the local time
+     * zone, counted as the monthly budget totals count months.
+     */
+    private static int toMonth(long dateMs)
+    {
+        Calendar date = Calendar.getInstance();
+        date.setTimeInMillis(dateMs);
+        return date.get(Calendar.YEAR) * MONTHS_PER_YEAR + date.get(Calendar.MONTH);
+    }
+
+    /**
+     * Forecast the spending of each budget, expenses less revenues, by
+     * the end of the month holding the given date.
+     *
+     * The spending so far is projected over the rest of the month at a
+     * daily rate which blends the rate so far this month with the rate
+     * during the previous months. Early in the month the previous months
+     * weigh the most, and the rate so far takes over as the month goes
+     * on. A budget without spending in the previous months is projected
+     * at its rate so far.
+     *
+     * The totals are the whole-month totals of getBudgetsWithBlank(),
+     * so they come from the monthly budget totals, and are remembered
+     * between calls rather than being read again.
+     *
+     * @param nowMs
+     *      the current date in milliseconds
+     * @return the forecast in cents of each budget, by budget name
+     */
+    public Map<String, Long> getMonthEndForecasts(long nowMs)
+    {
+        final Calendar date = Calendar.getInstance();
+        date.setTimeInMillis(nowMs);
+        final int year = date.get(Calendar.YEAR);
+        final int month = date.get(Calendar.MONTH);
+
+        // Days of the month so far, including today
+        final int daysElapsed = date.get(Calendar.DAY_OF_MONTH);
+        final int daysInMonth = date.getActualMaximum(Calendar.DAY_OF_MONTH);
+
+        final long monthStartMs = CalendarUtil.getStartOfMonthMs(year, month);
+        final long monthEndMs = CalendarUtil.getEndOfMonthMs(year, month);
+
+        date.setTimeInMillis(monthStartMs);
+        date.add(Calendar.MONTH, -FORECAST_HISTORY_MONTHS);
+        final long historyStartMs = date.getTimeInMillis();
+        final long historyEndMs = monthStartMs - 1;
+        final long historyDays = toDay(monthStartMs) - toDay(historyStartMs);
+
+        final Map<String, Long> historyCents = new HashMap<>();
+        for(Budget budget : getBudgets(historyStartMs, historyEndMs))
+        {
+            historyCents.put(budget.name, budget.currentCents);
+        }
+
+        // Weight of the rate so far against the rate of previous months
+        final double elapsedWeight = (double)daysElapsed / daysInMonth;
+
+        final Map<String, Long> forecasts = new HashMap<>();
+        for(Budget budget : getBudgets(monthStartMs, monthEndMs))
+        {
+            double rateCents = (double)budget.currentCents / daysElapsed;
+
+            Long previousCents = historyCents.get(budget.name);
+            if(previousCents != null && previousCents != 0)
+            {
+                double historyRateCents = (double)previousCents / historyDays;
+                rateCents = elapsedWeight * rateCents + (1 - elapsedWeight) * historyRateCents;
+            }
+
+            long remainingCents = Math.round(rateCents * (daysInMonth - daysElapsed));
+            forecasts.put(budget.name, budget.currentCents + remainingCents);
+        }
+
+        return forecasts;
+    }
+
+    /**
+     * @return the date in milliseconds moved by an amount of a Calendar
+     * field, in the local time zone
+     */
+    private static long addToDate(long dateMs, int field, int amount)
+    {
+        Calendar date = Calendar.getInstance();
+        date.setTimeInMillis(dateMs);
+        date.add(field, amount);
+        return date.getTimeInMillis();
+    }
+
+    /**
+     * Compare the spending of each budget, expenses less revenues, during
+     * a date range with its spending during the same range one month
+     * earlier and one year earlier.
+     *
+     * All three ranges are totalled in a single grouped query, each by a
+     * conditional sum. As with getBudgetsWithBlank(), if the dates cover
+     * whole months the totals are read from the monthly budget totals,
+     * and the earlier ranges are the same months shifted back, without
+     * reading any transactions.
+     *
+     * @param startDateMs
+     *      first date in milliseconds of the range
+     * @param endDateMs
+     *      last date in milliseconds of the range
+     * @return one entry per budget sorted by name, followed by an
+     * entry for transactions without a budget
+     */
+    public List<BudgetComparison> getBudgetComparisons(long startDateMs, long endDateMs)
+    {
+        final String ID_COL = "id";
+        final String NAME_COL = "name";
+        final String BLANK_COL = "blank";
+        final String CURRENT_COL = "current_total";
+        final String LAST_MONTH_COL = "last_month_total";
+        final String LAST_YEAR_COL = "last_year_total";
+
+        final String table;
+        final String budgetColumn;
+        final String typeColumn;
+        final String keyColumn;
+        final String valueColumn;
+
+        // Start and end of the range, then one month earlier, then one year earlier
+        final long [] bounds;
+
+        if(CalendarUtil.isWholeMonths(startDateMs, endDateMs))
+        {
+            checkMonthTotalsTimeZone();
+
+            table = BudgetMonthTotalsDbIds.TABLE;
+            budgetColumn = BudgetMonthTotalsDbIds.BUDGET_ID;
+            typeColumn = BudgetMonthTotalsDbIds.TYPE;
+            keyColumn = BudgetMonthTotalsDbIds.MONTH;
+            valueColumn = BudgetMonthTotalsDbIds.TOTAL;
+
+            final int startMonth = toMonth(startDateMs);
+            final int endMonth = toMonth(endDateMs);
+            bounds = new long[]
+                {
+                    startMonth, endMonth,
+                    startMonth - 1, endMonth - 1,
+                    startMonth - MONTHS_PER_YEAR, endMonth - MONTHS_PER_YEAR
+                };
+        }
+        else
+        {
+            table = TransactionDbIds.TABLE;
+            budgetColumn = "ifnull(" + TransactionDbIds.BUDGET_ID + ", 0)";
+            typeColumn = TransactionDbIds.TYPE;
+            keyColumn = TransactionDbIds.DATE;
+            valueColumn = TransactionDbIds.VALUE;
+
+            bounds = new long[]
+                {
+                    startDateMs, endDateMs,
+                    addToDate(startDateMs, Calendar.MONTH, -1), addToDate(endDateMs, Calendar.MONTH, -1),
+                    addToDate(startDateMs, Calendar.YEAR, -1), addToDate(endDateMs, Calendar.YEAR, -1)
+                };
+        }
+
+        final String signedValue = "(case " + typeColumn +
+                " when " + TransactionDbIds.EXPENSE + " then " + valueColumn +
+                " when " + TransactionDbIds.REVENUE + " then -" + valueColumn +
+                " else 0 end)";
+        final String inRange = keyColumn + " >= ? and " + keyColumn + " <= ?";
+
+        List<String> args = new ArrayList<>();
+        for(long bound : bounds)
+        {
+            args.add(Long.toString(bound));
+        }
+
+        // A range scan from the earliest to the latest date, on the type
+        // and date index for transactions, which covers all three ranges
+        args.add(Long.toString(Math.min(bounds[0], Math.min(bounds[2], bounds[4]))));
+        args.add(Long.toString(Math.max(bounds[1], Math.max(bounds[3], bounds[5]))));
+
+        final String totals = "select " + budgetColumn + " as " + ID_COL + ", " +
+                "sum(case when " + inRange + " then " + signedValue + " else 0 end) as " + CURRENT_COL + ", " +
+                "sum(case when " + inRange + " then " + signedValue + " else 0 end) as " + LAST_MONTH_COL + ", " +
+                "sum(case when " + inRange + " then " + signedValue + " else 0 end) as " + LAST_YEAR_COL + " " +
+                "from " + table + " where " +
+                typeColumn + " in (" + TransactionDbIds.EXPENSE + ", " + TransactionDbIds.REVENUE + ") and " +
+                inRange + " group by 1";
+
+        // One row per budget, plus a row for transactions without a budget
+        final String budgetRows = "select " + BudgetDbIds.ID + " as " + ID_COL + ", " +
+                BudgetDbIds.NAME + " as " + NAME_COL + ", 0 as " + BLANK_COL +
+                " from " + BudgetDbIds.TABLE + " where " + BudgetDbIds.EXISTS +
+                " union all select 0, '', 1";
+
+        SQLiteDatabase db = getReadableDatabase();
+        Cursor data = db.rawQuery("select b." + NAME_COL + ", " +
+                "ifnull(t." + CURRENT_COL + ", 0) as " + CURRENT_COL + ", " +
+                "ifnull(t." + LAST_MONTH_COL + ", 0) as " + LAST_MONTH_COL + ", " +
+                "ifnull(t." + LAST_YEAR_COL + ", 0) as " + LAST_YEAR_COL + " " +
+                "from (" + budgetRows + ") as b left join (" + totals + ") as t " +
+                "on t." + ID_COL + " = b." + ID_COL + " " +
+                "order by b." + BLANK_COL + ", b." + NAME_COL, args.toArray(new String[args.size()]));
 
-        Budget budget = null;
+        List<BudgetComparison> comparisons = new ArrayList<>();
 
-        if(data.getCount() == 1)
+        if(data.moveToFirst())
         {
-            data.moveToFirst();
-            String goalName = data.getString(data.getColumnIndexOrThrow(BudgetDbIds.NAME));
-            int goalMax = data.getInt(data.getColumnIndexOrThrow(BudgetDbIds.MAX));
+            final int nameIndex = data.getColumnIndexOrThrow(NAME_COL);
+            final int currentIndex = data.getColumnIndexOrThrow(CURRENT_COL);
+            final int lastMonthIndex = data.getColumnIndexOrThrow(LAST_MONTH_COL);
+            final int lastYearIndex = data.getColumnIndexOrThrow(LAST_YEAR_COL);
 
-            budget = new Budget(goalName, goalMax, 0);
+            do
+            {
+                comparisons.add(new BudgetComparison(data.getString(nameIndex), data.getLong(currentIndex),
+                        data.getLong(lastMonthIndex), data.getLong(lastYearIndex)));
+            } while(data.moveToNext());
         }
 
         data.close();
-        db.close();
 
-        return budget;
+        return comparisons;
     }
 
     /**
-     * Get Budget objects for each budget in the database,
-     * with the 'current' field filled out from all transactions
-     * between the provided dates.
+     * Get the expenses and revenues of each month from the month of
+     * the start date through the month of the end date, for one budget
+     * or for all transactions. Whole months are always counted, and
+     * months without transactions are included with no expenses or
+     * revenues.
+     *
+     * The months are read from the monthly budget totals in a single
+     * query, without reading any transactions.
      *
+     * @param budget
+     *      name of the budget, "" for transactions without a budget,
+     *      or null for all transactions
      * @param startDateMs
-     *      first date in milliseconds for transactions to compute
-     *      into the 'current' field.
+     *      a date in the first month
      * @param endDateMs
-     *      last date in milliseconds for transactions to compute
-     *      into the 'current' field.
-     * @return list of Budget objects, or an empty field if none
-     * could be found.
+     *      a date in the last month
+     * @return one entry per month, oldest first
      */
-    public List<Budget> getBudgets(long startDateMs, long endDateMs)
+    public List<BudgetMonth> getBudgetHistory(final String budget, long startDateMs, long endDateMs)
     {
-        SQLiteDatabase db = getReadableDatabase();
-
+        final String MONTH_COL = "month";
         final String TOTAL_EXPENSE_COL = "total_expense";
         final String TOTAL_REVENUE_COL = "total_revenue";
 
-        final String BUDGET_ID = BudgetDbIds.TABLE + "." + BudgetDbIds.NAME;
-        final String BUDGET_MAX = BudgetDbIds.TABLE + "." + BudgetDbIds.MAX;
-        final String TRANS_VALUE = TransactionDbIds.TABLE + "." + TransactionDbIds.VALUE;
-        final String TRANS_TYPE = TransactionDbIds.TABLE + "." + TransactionDbIds.TYPE;
-        final String TRANS_DATE = TransactionDbIds.TABLE + "." + TransactionDbIds.DATE;
-        final String TRANS_BUDGET = TransactionDbIds.TABLE + "." + TransactionDbIds.BUDGET;
-
-        Cursor data = db.rawQuery("select " + BUDGET_ID + ", " + BUDGET_MAX + ", " +
-                "(select total(" + TRANS_VALUE + ") from " + TransactionDbIds.TABLE + " where " +
-                    BUDGET_ID + " = " + TRANS_BUDGET + " and " +
-                    TRANS_TYPE + " = ? and " +
-                    TRANS_DATE + " >= ? and " +
-                    TRANS_DATE + " <= ?) " +
+        final int startMonth = toMonth(startDateMs);
+        final int endMonth = toMonth(endDateMs);
+
+        List<String> args = new ArrayList<>();
+        args.add(Integer.toString(TransactionDbIds.EXPENSE));
+        args.add(Integer.toString(TransactionDbIds.REVENUE));
+        args.add(Integer.toString(startMonth));
+        args.add(Integer.toString(endMonth));
+
+        String query = "select " + BudgetMonthTotalsDbIds.MONTH + " as " + MONTH_COL + ", " +
+                "sum(case when " + BudgetMonthTotalsDbIds.TYPE + " = ? then " + BudgetMonthTotalsDbIds.TOTAL + " else 0 end) " +
                     "as " + TOTAL_EXPENSE_COL + ", " +
-                "(select total(" + TRANS_VALUE + ") from " + TransactionDbIds.TABLE + " where " +
-                    BUDGET_ID + " = " + TRANS_BUDGET + " and " +
-                    TRANS_TYPE + " = ? and " +
-                    TRANS_DATE + " >= ? and " +
-                    TRANS_DATE + " <= ?) " +
+                "sum(case when " + BudgetMonthTotalsDbIds.TYPE + " = ? then " + BudgetMonthTotalsDbIds.TOTAL + " else 0 end) " +
                     "as " + TOTAL_REVENUE_COL + " " +
-                "from " + BudgetDbIds.TABLE + " order by " + BUDGET_ID,
-                new String[]
-                    {
-                        Integer.toString(TransactionDbIds.EXPENSE),
-                        Long.toString(startDateMs),
-                        Long.toString(endDateMs),
-                        Integer.toString(TransactionDbIds.REVENUE),
-                        Long.toString(startDateMs),
-                        Long.toString(endDateMs)
-                    });
+                "from " + BudgetMonthTotalsDbIds.TABLE + " where " +
+                BudgetMonthTotalsDbIds.MONTH + " >= ? and " +
+                BudgetMonthTotalsDbIds.MONTH + " <= ?";
 
-        LinkedList<Budget> budgets = new LinkedList<>();
+        query += monthTotalsBudgetFilter(budget, args);
 
-        // Determine over how many months the budgets represent.
-        // Adjust the budget max to match the number of months
-        // represented.
-        Calendar date = Calendar.getInstance();
-        date.setTimeInMillis(startDateMs);
-        final int MONTHS_PER_YEAR = 12;
-        int startMonths = date.get(Calendar.YEAR) * MONTHS_PER_YEAR + date.get(Calendar.MONTH);
-        date.setTimeInMillis(endDateMs);
-        int endMonths = date.get(Calendar.YEAR) * MONTHS_PER_YEAR + date.get(Calendar.MONTH);
-        int totalMonthsInRange = endMonths - startMonths + 1;
+        query += " group by " + BudgetMonthTotalsDbIds.MONTH + " order by " + BudgetMonthTotalsDbIds.MONTH;
+
+        checkMonthTotalsTimeZone();
+
+        SQLiteDatabase db = getReadableDatabase();
+        Cursor data = db.rawQuery(query, args.toArray(new String[args.size()]));
+
+        List<BudgetMonth> history = new ArrayList<>(Math.max(endMonth - startMonth + 1, 0));
+        int nextMonth = startMonth;
 
         if(data.moveToFirst())
         {
+            final int monthIndex = data.getColumnIndexOrThrow(MONTH_COL);
+            final int expenseIndex = data.getColumnIndexOrThrow(TOTAL_EXPENSE_COL);
+            final int revenueIndex = data.getColumnIndexOrThrow(TOTAL_REVENUE_COL);
+
             do
             {
-                String name = data.getString(data.getColumnIndexOrThrow(BudgetDbIds.NAME));
-                int max = data.getInt(data.getColumnIndexOrThrow(BudgetDbIds.MAX)) * totalMonthsInRange;
-                double expenses = data.getDouble(data.getColumnIndexOrThrow(TOTAL_EXPENSE_COL));
-                double revenues = data.getDouble(data.getColumnIndexOrThrow(TOTAL_REVENUE_COL));
-                double current = expenses - revenues;
-                int currentRounded = (int)Math.ceil(current);
+                int month = data.getInt(monthIndex);
+                for(; nextMonth < month; nextMonth++)
+                {
+                    history.add(new BudgetMonth(nextMonth / MONTHS_PER_YEAR, nextMonth % MONTHS_PER_YEAR, 0, 0));
+                }
 
-                budgets.add(new Budget(name, max, currentRounded));
+                history.add(new BudgetMonth(month / MONTHS_PER_YEAR, month % MONTHS_PER_YEAR,
+                        data.getLong(expenseIndex), data.getLong(revenueIndex)));
+                nextMonth = month + 1;
             } while(data.moveToNext());
         }
 
         data.close();
-        db.close();
 
-        return budgets;
+        for(; nextMonth <= endMonth; nextMonth++)
+        {
+            history.add(new BudgetMonth(nextMonth / MONTHS_PER_YEAR, nextMonth % MONTHS_PER_YEAR, 0, 0));
+        }
+
+        return history;
     }
 
     /**
-     * Get Budget object representing transactions which
-     * have no budget, e.g. the budget is blank. The 'current' field
-     * will be filled out from all transactions between the provided
-     * dates, and the 'max' field is left at 0.
+     * Get the expenses and revenues of each day, week or month from the
+     * one holding the start date through the one holding the end date.
+     * Buckets without transactions are included with no expenses or
+     * revenues. Weeks start on the first day of the week of the locale.
      *
+     * The transactions are read and grouped into buckets in a single
+     * query. The bucket of each transaction is found by integer
+     * arithmetic on its date, in the local time zone.
+     *
+     * @param bucketSize
+     *      TotalsBucket.DAY, WEEK or MONTH
+     * @param budget
+     *      name of the budget, "" for transactions without a budget,
+     *      or null for transactions of any budget
+     * @param account
+     *      if not null, only transactions of this account are counted
      * @param startDateMs
-     *      first date in milliseconds for transactions to compute
-     *      into the 'current' field.
+     *      a date in the first bucket
      * @param endDateMs
-     *      last date in milliseconds for transactions to compute
-     *      into the 'current' field.
-     * @return Budget object
+     *      a date in the last bucket
+     * @return one entry per bucket, oldest first
      */
-    public Budget getBlankBudget(long startDateMs, long endDateMs)
+    public List<TotalsBucket> getTotalsByBucket(final int bucketSize, final String budget, final String account,
+                                                long startDateMs, long endDateMs)
     {
+        final String BUCKET_COL = "bucket";
+        final String TOTAL_EXPENSE_COL = "total_expense";
+        final String TOTAL_REVENUE_COL = "total_revenue";
+
+        final Calendar date = Calendar.getInstance();
+
+        // Counting days from a Thursday, 1 January 1970, this many days
+        // are added so that each week starts on the first day of the week
+        final int weekShift = (Calendar.THURSDAY - date.getFirstDayOfWeek() + DAYS_PER_WEEK) % DAYS_PER_WEEK;
+
+        final String bucketOf;
+        final int calendarField;
+        switch(bucketSize)
+        {
+            case TotalsBucket.DAY:
+                bucketOf = dayOf(TransactionDbIds.DATE);
+                calendarField = Calendar.DAY_OF_MONTH;
+                break;
+            case TotalsBucket.WEEK:
+                bucketOf = floorDivOf(dayOf(TransactionDbIds.DATE) + " + " + weekShift, DAYS_PER_WEEK);
+                calendarField = Calendar.WEEK_OF_YEAR;
+                break;
+            case TotalsBucket.MONTH:
+                bucketOf = monthOf(TransactionDbIds.DATE);
+                calendarField = Calendar.MONTH;
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown bucket size: " + bucketSize);
+        }
+
+        List<String> args = new ArrayList<>();
+        args.add(Integer.toString(TransactionDbIds.EXPENSE));
+        args.add(Integer.toString(TransactionDbIds.REVENUE));
+        args.add(Long.toString(startDateMs));
+        args.add(Long.toString(endDateMs));
+
+        String query = "select " + bucketOf + " as " + BUCKET_COL + ", " +
+                "sum(case when " + TransactionDbIds.TYPE + " = ? then " + TransactionDbIds.VALUE + " else 0 end) " +
+                    "as " + TOTAL_EXPENSE_COL + ", " +
+                "sum(case when " + TransactionDbIds.TYPE + " = ? then " + TransactionDbIds.VALUE + " else 0 end) " +
+                    "as " + TOTAL_REVENUE_COL + " " +
+                "from " + TransactionDbIds.TABLE + " where " +
+                TransactionDbIds.DATE + " >= ? and " +
+                TransactionDbIds.DATE + " <= ?" +
+                budgetFilter(budget, args);
+
+        if(account != null)
+        {
+            query += " and " + TransactionDbIds.ACCOUNT + " = ?";
+            args.add(account);
+        }
+
+        query += " group by 1";
+
         SQLiteDatabase db = getReadableDatabase();
+        Cursor data = db.rawQuery(query, args.toArray(new String[args.size()]));
+
+        Map<Long, long[]> totals = new HashMap<>();
+
+        while(data.moveToNext())
+        {
+            totals.put(data.getLong(0), new long[]{data.getLong(1), data.getLong(2)});
+        }
+
+        data.close();
+
+        // Start at the bucket holding the start date
+        date.setTimeInMillis(startDateMs);
+        date.setTimeInMillis(CalendarUtil.getStartOfDayMs(date.get(Calendar.YEAR), date.get(Calendar.MONTH),
+                date.get(Calendar.DAY_OF_MONTH)));
+        if(bucketSize == TotalsBucket.WEEK)
+        {
+            while(date.get(Calendar.DAY_OF_WEEK) != date.getFirstDayOfWeek())
+            {
+                date.add(Calendar.DAY_OF_MONTH, -1);
+            }
+        }
+        else if(bucketSize == TotalsBucket.MONTH)
+        {
+            date.set(Calendar.DAY_OF_MONTH, 1);
+        }
+
+        List<TotalsBucket> buckets = new ArrayList<>();
+
+        while(date.getTimeInMillis() <= endDateMs)
+        {
+            final long bucketStartMs = date.getTimeInMillis();
+            final long bucket;
+            if(bucketSize == TotalsBucket.DAY)
+            {
+                bucket = toDay(bucketStartMs);
+            }
+            else if(bucketSize == TotalsBucket.WEEK)
+            {
+                bucket = floorDiv(toDay(bucketStartMs) + weekShift, DAYS_PER_WEEK);
+            }
+            else
+            {
+                bucket = toMonth(bucketStartMs);
+            }
+
+            date.add(calendarField, 1);
+            final long bucketEndMs = date.getTimeInMillis() - 1;
+
+            long [] bucketTotals = totals.get(bucket);
+            buckets.add(new TotalsBucket(bucketStartMs, bucketEndMs,
+                    bucketTotals != null ? bucketTotals[0] : 0,
+                    bucketTotals != null ? bucketTotals[1] : 0));
+        }
+
+        return buckets;
+    }
 
+    /**
+     * Get the totals of each account: its expenses and revenues between
+     * the provided dates, and its balance over all time. Transactions
+     * without an account are totalled under the account "".
+     *
+     * The totals of all accounts are summed by one query over every
+     * transaction, as the balance is over all time. Every column it reads
+     * is in the (account, type, date, value) index, which SQLite may scan
+     * in place of the table, but accounts are grouped with a null account
+     * read as "", so the groups are sorted separately.
+     *
+     * @param startDateMs
+     *      first date in milliseconds of the expenses and revenues
+     * @param endDateMs
+     *      last date in milliseconds of the expenses and revenues
+     * @return the totals of each account, sorted by account
+     */
+    public List<AccountTotal> getAccountTotals(long startDateMs, long endDateMs)
+    {
+        final String ACCOUNT_COL = "account";
         final String TOTAL_EXPENSE_COL = "total_expense";
         final String TOTAL_REVENUE_COL = "total_revenue";
+        final String BALANCE_COL = "balance";
 
-        final String TRANS_VALUE = TransactionDbIds.TABLE + "." + TransactionDbIds.VALUE;
-        final String TRANS_TYPE = TransactionDbIds.TABLE + "." + TransactionDbIds.TYPE;
-        final String TRANS_DATE = TransactionDbIds.TABLE + "." + TransactionDbIds.DATE;
-        final String TRANS_BUDGET = TransactionDbIds.TABLE + "." + TransactionDbIds.BUDGET;
-
-        Cursor data = db.rawQuery("select " +
-                        "(select total(" + TRANS_VALUE + ") from " + TransactionDbIds.TABLE + " where " +
-                        TRANS_BUDGET + " = '' and " +
-                        TRANS_TYPE + " = ? and " +
-                        TRANS_DATE + " >= ? and " +
-                        TRANS_DATE + " <= ?) " +
-                        "as " + TOTAL_EXPENSE_COL + ", " +
-                        "(select total(" + TRANS_VALUE + ") from " + TransactionDbIds.TABLE + " where " +
-                        TRANS_BUDGET + " = '' and " +
-                        TRANS_TYPE + " = ? and " +
-                        TRANS_DATE + " >= ? and " +
-                        TRANS_DATE + " <= ?) " +
-                        "as " + TOTAL_REVENUE_COL,
-                new String[]
-                        {
-                                Integer.toString(TransactionDbIds.EXPENSE),
-                                Long.toString(startDateMs),
-                                Long.toString(endDateMs),
-                                Integer.toString(TransactionDbIds.REVENUE),
-                                Long.toString(startDateMs),
-                                Long.toString(endDateMs)
-                        });
+        final String inRange = TransactionDbIds.DATE + " >= ? and " + TransactionDbIds.DATE + " <= ?";
+        final String expense = TransactionDbIds.TYPE + " = " + TransactionDbIds.EXPENSE;
+        final String revenue = TransactionDbIds.TYPE + " = " + TransactionDbIds.REVENUE;
+
+        final String [] args = new String[]
+            {
+                Long.toString(startDateMs),
+                Long.toString(endDateMs),
+                Long.toString(startDateMs),
+                Long.toString(endDateMs)
+            };
+
+        SQLiteDatabase db = getReadableDatabase();
+        Cursor data = db.rawQuery("select ifnull(" + TransactionDbIds.ACCOUNT + ", '') as " + ACCOUNT_COL + ", " +
+                "sum(case when " + expense + " and " + inRange + " then " + TransactionDbIds.VALUE + " else 0 end) " +
+                    "as " + TOTAL_EXPENSE_COL + ", " +
+                "sum(case when " + revenue + " and " + inRange + " then " + TransactionDbIds.VALUE + " else 0 end) " +
+                    "as " + TOTAL_REVENUE_COL + ", " +
+                "sum(case when " + revenue + " then " + TransactionDbIds.VALUE +
+                    " when " + expense + " then -" + TransactionDbIds.VALUE + " else 0 end) " +
+                    "as " + BALANCE_COL + " " +
+                "from " + TransactionDbIds.TABLE + " group by 1 order by 1", args);
+
+        List<AccountTotal> totals = new ArrayList<>();
+
+        if(data.moveToFirst())
+        {
+            final int accountIndex = data.getColumnIndexOrThrow(ACCOUNT_COL);
+            final int expenseIndex = data.getColumnIndexOrThrow(TOTAL_EXPENSE_COL);
+            final int revenueIndex = data.getColumnIndexOrThrow(TOTAL_REVENUE_COL);
+            final int balanceIndex = data.getColumnIndexOrThrow(BALANCE_COL);
+
+            do
+            {
+                totals.add(new AccountTotal(data.getString(accountIndex), data.getLong(expenseIndex),
+                        data.getLong(revenueIndex), data.getLong(balanceIndex)));
+            } while(data.moveToNext());
+        }
+
+        data.close();
+
+        return totals;
+    }
+
+    /**
+     * Get the descriptions with the largest totals, for transactions
+     * of the given type between the provided dates. Descriptions are
+     * compared ignoring surrounding whitespace and case, so
+     * "Grocer" and "grocer " are totalled together.
+     *
+     * The totals are grouped, sorted and limited in a single query,
+     * so only the returned rows are read from the database.
+     *
+     * @param type
+     *      TransactionDbIds.EXPENSE or TransactionDbIds.REVENUE
+     * @param budget
+     *      name of the budget, "" for transactions without a budget,
+     *      or null for transactions of any budget
+     * @param startDateMs
+     *      first date in milliseconds of the transactions
+     * @param endDateMs
+     *      last date in milliseconds of the transactions
+     * @param limit
+     *      maximum number of descriptions to return
+     * @return the totals of each description, largest first
+     */
+    public List<DescriptionTotal> getTopDescriptions(final int type, final String budget, long startDateMs,
+                                                     long endDateMs, int limit)
+    {
+        final String DESCRIPTION_COL = "shown_description";
+        final String COUNT_COL = "transaction_count";
+        final String TOTAL_COL = "total";
+
+        final String normalized = "lower(trim(ifnull(" + TransactionDbIds.DESCRIPTION + ", '')))";
+
+        List<String> args = new ArrayList<>();
+        args.add(Long.toString(startDateMs));
+        args.add(Long.toString(endDateMs));
+
+        String query = "select max(trim(ifnull(" + TransactionDbIds.DESCRIPTION + ", ''))) as " + DESCRIPTION_COL + ", " +
+                "count(*) as " + COUNT_COL + ", " +
+                "sum(" + TransactionDbIds.VALUE + ") as " + TOTAL_COL + " " +
+                "from " + TransactionDbIds.TABLE + " where " +
+                TransactionDbIds.TYPE + " = " + type + " and " +
+                TransactionDbIds.DATE + " >= ? and " +
+                TransactionDbIds.DATE + " <= ?" +
+                budgetFilter(budget, args) + " " +
+                "group by " + normalized + " " +
+                "order by " + TOTAL_COL + " desc, " + normalized + " " +
+                "limit " + limit;
+
+        SQLiteDatabase db = getReadableDatabase();
+        Cursor data = db.rawQuery(query, args.toArray(new String[args.size()]));
 
-        int total = 0;
+        List<DescriptionTotal> totals = new ArrayList<>();
 
         if(data.moveToFirst())
         {
-            int expenses = data.getInt(data.getColumnIndexOrThrow(TOTAL_EXPENSE_COL));
-            int revenues = data.getInt(data.getColumnIndexOrThrow(TOTAL_REVENUE_COL));
-            total = expenses - revenues;
+            final int descriptionIndex = data.getColumnIndexOrThrow(DESCRIPTION_COL);
+            final int countIndex = data.getColumnIndexOrThrow(COUNT_COL);
+            final int totalIndex = data.getColumnIndexOrThrow(TOTAL_COL);
+
+            do
+            {
+                totals.add(new DescriptionTotal(data.getString(descriptionIndex), data.getInt(countIndex),
+                        data.getLong(totalIndex)));
+            } while(data.moveToNext());
         }
 
         data.close();
-        db.close();
 
-        return new Budget("", 0, total);
+        return totals;
     }
 
     /**
@@ -374,7 +2074,7 @@ class DBHelper extends SQLiteOpenHelper
     {
         SQLiteDatabase db = getReadableDatabase();
         Cursor data = db.rawQuery("select " + BudgetDbIds.NAME + " from " + BudgetDbIds.TABLE +
-                " ORDER BY " + BudgetDbIds.NAME, null);
+                " where " + BudgetDbIds.EXISTS + " ORDER BY " + BudgetDbIds.NAME, null);
 
         LinkedList<String> budgetNames = new LinkedList<>();
 
@@ -389,7 +2089,6 @@ class DBHelper extends SQLiteOpenHelper
         }
 
         data.close();
-        db.close();
 
         return budgetNames;
     }
@@ -400,7 +2099,8 @@ class DBHelper extends SQLiteOpenHelper
     public int getBudgetCount()
     {
         SQLiteDatabase db = getReadableDatabase();
-        Cursor data =  db.rawQuery("SELECT Count(*) FROM " + BudgetDbIds.TABLE, null);
+        Cursor data =  db.rawQuery("SELECT Count(*) FROM " + BudgetDbIds.TABLE +
+                " where " + BudgetDbIds.EXISTS, null);
 
         int numItems = 0;
 
@@ -411,7 +2111,6 @@ class DBHelper extends SQLiteOpenHelper
         }
 
         data.close();
-        db.close();
 
         return numItems;
     }
@@ -419,101 +2118,359 @@ class DBHelper extends SQLiteOpenHelper
     /**
      * Insert a transaction into the database.
      *
+     * @param value
+     *      value of the transaction, which is stored rounded
+     *      to the nearest cent
      * @return true if the insertion was successful,
      * false otherwise
      */
     public boolean insertTransaction(final int type, final String description, final String account, final String budget,
                                  final double value, final String note, final long dateInMs, final String receipt)
     {
+        SQLiteDatabase db = getWritableDatabase();
+        final long valueCents = MoneyUtil.toCents(value);
+
         ContentValues contentValues = new ContentValues();
         contentValues.put(TransactionDbIds.TYPE, type);
         contentValues.put(TransactionDbIds.DESCRIPTION, description);
         contentValues.put(TransactionDbIds.ACCOUNT, account);
-        contentValues.put(TransactionDbIds.BUDGET, budget);
-        contentValues.put(TransactionDbIds.VALUE, value);
+        contentValues.put(TransactionDbIds.VALUE, valueCents);
         contentValues.put(TransactionDbIds.NOTE, note);
         contentValues.put(TransactionDbIds.DATE, dateInMs);
         contentValues.put(TransactionDbIds.RECEIPT, receipt);
 
-        SQLiteDatabase db = getWritableDatabase();
-        long newId = db.insert(TransactionDbIds.TABLE, null, contentValues);
-        db.close();
+        long newId = -1;
+
+        beginTransactionChange();
+        try
+        {
+            // The budget is added, if it is new, in the same database
+            // transaction as the transaction which uses it
+            db.beginTransaction();
+            try
+            {
+                contentValues.put(TransactionDbIds.BUDGET_ID, getOrAddBudgetId(db, budget));
+                newId = db.insert(TransactionDbIds.TABLE, null, contentValues);
+                if(newId != -1)
+                {
+                    db.setTransactionSuccessful();
+                }
+            }
+            finally
+            {
+                db.endTransaction();
+            }
+        }
+        finally
+        {
+            transactionsChanged(null, (newId != -1) ?
+                    new BudgetDelta(budget, type, dateInMs, valueCents) : null);
+        }
 
         if(newId != -1)
         {
-            sendChangeNotification();
+            sendChangeNotification(type);
         }
 
         return (newId != -1);
     }
 
     /**
-     * Insert a transaction into the database, using a provided
-     * writable database instance. This is useful if
-     * multiple insertions will occur in the same transaction.
+     * Start inserting transactions and budgets in bulk, such as when
+     * importing. All rows are inserted in one database transaction,
+     * which is only committed if setSuccessful() is called before end():
      *
-     * @param writableDb
-     *      writable database instance to use
-     * @return true if the insertion was successful,
-     * false otherwise
+     *     BulkInserter inserter = db.beginBulkInsert();
+     *     try
+     *     {
+     *         inserter.insertTransaction(...);
+     *         inserter.setSuccessful();
+     *     }
+     *     finally
+     *     {
+     *         inserter.end();
+     *     }
+     */
+    public BulkInserter beginBulkInsert()
+    {
+        return new BulkInserter(getWritableDatabase());
+    }
+
+    /**
+     * Inserts rows in bulk, see beginBulkInsert(). The insert statement
+     * is compiled once and reused for every row, the id of each budget
+     * is looked up once, and a single change notification is sent when
+     * the rows are committed, rather than one per row.
+     *
+     * An instance must only be used from one thread.
+     */
+    public class BulkInserter
+    {
+        private final SQLiteDatabase _db;
+        private final SQLiteStatement _insertTransaction;
+        private final SQLiteStatement _addBudgetName;
+        private final SQLiteStatement _findBudgetId;
+        private final Map<String, Long> _budgetIds = new HashMap<>();
+        private boolean _successful = false;
+        private boolean _inserted = false;
+
+        private BulkInserter(SQLiteDatabase writableDb)
+        {
+            _db = writableDb;
+            _insertTransaction = _db.compileStatement("insert into " + TransactionDbIds.TABLE + "(" +
+                    TransactionDbIds.NAME + ", " +
+                    TransactionDbIds.TYPE + ", " +
+                    TransactionDbIds.DESCRIPTION + ", " +
+                    TransactionDbIds.ACCOUNT + ", " +
+                    TransactionDbIds.BUDGET_ID + ", " +
+                    TransactionDbIds.VALUE + ", " +
+                    TransactionDbIds.NOTE + ", " +
+                    TransactionDbIds.DATE + ", " +
+                    TransactionDbIds.RECEIPT + ") values (?, ?, ?, ?, ?, ?, ?, ?, ?)");
+            _addBudgetName = _db.compileStatement("insert or ignore into " + BudgetDbIds.TABLE +
+                    "(" + BudgetDbIds.NAME + ") values (?)");
+            _findBudgetId = _db.compileStatement("select " + BudgetDbIds.ID + " from " + BudgetDbIds.TABLE +
+                    " where " + BudgetDbIds.NAME + " = ?");
+
+            _db.beginTransaction();
+        }
+
+        /**
+         * Insert a transaction.
+         *
+         * @param valueCents
+         *      value of the transaction in cents
+         * @return true if the insertion was successful,
+         * false otherwise
+         */
+        public boolean insertTransaction(final int id, final int type, final String description,
+                                         final String account, final String budget, final long valueCents,
+                                         final String note, final long dateInMs, final String receipt)
+        {
+            final Long budgetId = getBudgetId(budget);
+
+            _insertTransaction.clearBindings();
+            _insertTransaction.bindLong(1, id);
+            _insertTransaction.bindLong(2, type);
+            bindStringOrNull(_insertTransaction, 3, description);
+            bindStringOrNull(_insertTransaction, 4, account);
+            if(budgetId != null)
+            {
+                _insertTransaction.bindLong(5, budgetId);
+            }
+            _insertTransaction.bindLong(6, valueCents);
+            bindStringOrNull(_insertTransaction, 7, note);
+            _insertTransaction.bindLong(8, dateInMs);
+            bindStringOrNull(_insertTransaction, 9, receipt);
+
+            long newId;
+            try
+            {
+                newId = _insertTransaction.executeInsert();
+            }
+            catch(SQLException e)
+            {
+                // For example, a transaction with the same id exists
+                newId = -1;
+            }
+
+            if(newId != -1)
+            {
+                _inserted = true;
+            }
+
+            return (newId != -1);
+        }
+
+        /**
+         * Insert a budget.
+         *
+         * @param name
+         *      name of the budget
+         * @param max
+         *      the value of the budget, per month
+         * @return true if the insertion was successful,
+         * false otherwise
+         */
+        public boolean insertBudget(final String name, final int max)
+        {
+            return DBHelper.this.insertBudget(_db, name, max);
+        }
+
+        /**
+         * Mark the inserted rows to be committed by end().
+         */
+        public void setSuccessful()
+        {
+            _db.setTransactionSuccessful();
+            _successful = true;
+        }
+
+        /**
+         * Finish inserting. The rows are committed if setSuccessful()
+         * was called, and rolled back otherwise.
+         */
+        public void end()
+        {
+            _insertTransaction.close();
+            _addBudgetName.close();
+            _findBudgetId.close();
+            _db.endTransaction();
+
+            // Budgets may have been inserted even if no transactions were,
+            // and any changes made while the rows were uncommitted must
+            // be seen as happening now.
+            dataChanged();
+
+            if(_successful && _inserted)
+            {
+                sendChangeNotification();
+            }
+        }
+
+        /**
+         * Same as getOrAddBudgetId(), but remembering the id of each name.
+         */
+        private Long getBudgetId(final String name)
+        {
+            if(name == null || name.isEmpty())
+            {
+                return null;
+            }
+
+            Long id = _budgetIds.get(name);
+            if(id == null)
+            {
+                _addBudgetName.bindString(1, name);
+                _addBudgetName.executeInsert();
+
+                _findBudgetId.bindString(1, name);
+                id = _findBudgetId.simpleQueryForLong();
+
+                _budgetIds.put(name, id);
+            }
+
+            return id;
+        }
+    }
+
+    private static void bindStringOrNull(SQLiteStatement statement, int index, final String value)
+    {
+        if(value != null)
+        {
+            statement.bindString(index, value);
+        }
+        else
+        {
+            statement.bindNull(index);
+        }
+    }
+
+    /**
+     * Update the transaction in the database. The unique ID for
+     * the transaction must be provided, all other fields represent
+     * the values as will be updated in the database.
+     *
+     * @param id
+     *      unique id for the transaction
+     * @param value
+     *      value of the transaction, which is stored rounded
+     *      to the nearest cent
+     * @return true if the provided transaction exists and the value
+     * was successfully updated, false otherwise.
      */
-    public boolean insertTransaction(SQLiteDatabase writableDb, final int id, final int type, final String description, final String account, final String budget,
-                                     final double value, final String note, final long dateInMs, final String receipt)
+    public boolean updateTransaction(final int id, final int type, final String description,
+                                     final String account, final String budget, final double value,
+                                     final String note, final long dateInMs, final String receipt)
     {
+        SQLiteDatabase db = getWritableDatabase();
+        final long valueCents = MoneyUtil.toCents(value);
+
         ContentValues contentValues = new ContentValues();
-        contentValues.put(TransactionDbIds.NAME, id);
         contentValues.put(TransactionDbIds.TYPE, type);
         contentValues.put(TransactionDbIds.DESCRIPTION, description);
         contentValues.put(TransactionDbIds.ACCOUNT, account);
-        contentValues.put(TransactionDbIds.BUDGET, budget);
-        contentValues.put(TransactionDbIds.VALUE, value);
+        contentValues.put(TransactionDbIds.VALUE, valueCents);
         contentValues.put(TransactionDbIds.NOTE, note);
         contentValues.put(TransactionDbIds.DATE, dateInMs);
         contentValues.put(TransactionDbIds.RECEIPT, receipt);
 
-        long newId = writableDb.insert(TransactionDbIds.TABLE, null, contentValues);
+        int rowsUpdated = 0;
+        BudgetDelta removed = null;
+
+        beginTransactionChange();
+        try
+        {
+            // Read the transaction as it was in the same database
+            // transaction as it is changed, so the change is exact
+            db.beginTransaction();
+            try
+            {
+                removed = readRemovedTransaction(db, id);
+                contentValues.put(TransactionDbIds.BUDGET_ID, getOrAddBudgetId(db, budget));
+
+                rowsUpdated = db.update(TransactionDbIds.TABLE, contentValues,
+                        TransactionDbIds.NAME + "=?",
+                        new String[]{Integer.toString(id)});
+                db.setTransactionSuccessful();
+            }
+            finally
+            {
+                db.endTransaction();
+            }
+        }
+        finally
+        {
+            if(rowsUpdated == 1)
+            {
+                transactionsChanged(removed, new BudgetDelta(budget, type, dateInMs, valueCents));
+            }
+            else
+            {
+                transactionsChanged(null, null);
+            }
+        }
 
-        if(newId != -1)
+        if(rowsUpdated == 1)
         {
-            sendChangeNotification();
+            // The transaction leaves the list of its old type
+            // if its type changed
+            if(removed != null && removed.type != type)
+            {
+                sendChangeNotification(removed.type, type);
+            }
+            else
+            {
+                sendChangeNotification(type);
+            }
         }
 
-        return (newId != -1);
+        return (rowsUpdated == 1);
     }
 
     /**
-     * Update the transaction in the database. The unique ID for
-     * the transaction must be provided, all other fields represent
-     * the values as will be updated in the database.
+     * Remove the receipt from a transaction, leaving the rest of it as is.
      *
      * @param id
      *      unique id for the transaction
-     * @return true if the provided transaction exists and the value
-     * was successfully updated, false otherwise.
+     * @return true if the provided transaction exists and its receipt
+     * was successfully removed, false otherwise.
      */
-    public boolean updateTransaction(final int id, final int type, final String description,
-                                     final String account, final String budget, final double value,
-                                     final String note, final long dateInMs, final String receipt)
+    public boolean removeTransactionReceipt(final int id)
     {
+        SQLiteDatabase db = getWritableDatabase();
+
         ContentValues contentValues = new ContentValues();
-        contentValues.put(TransactionDbIds.TYPE, type);
-        contentValues.put(TransactionDbIds.DESCRIPTION, description);
-        contentValues.put(TransactionDbIds.ACCOUNT, account);
-        contentValues.put(TransactionDbIds.BUDGET, budget);
-        contentValues.put(TransactionDbIds.VALUE, value);
-        contentValues.put(TransactionDbIds.NOTE, note);
-        contentValues.put(TransactionDbIds.DATE, dateInMs);
-        contentValues.put(TransactionDbIds.RECEIPT, receipt);
+        contentValues.put(TransactionDbIds.RECEIPT, "");
 
-        SQLiteDatabase db = getWritableDatabase();
         int rowsUpdated = db.update(TransactionDbIds.TABLE, contentValues,
                 TransactionDbIds.NAME + "=?",
                 new String[]{Integer.toString(id)});
-        db.close();
 
         if(rowsUpdated == 1)
         {
-            sendChangeNotification();
+            // The type is not read, so either type may have changed
+            sendChangeNotification(TransactionDbIds.EXPENSE, TransactionDbIds.REVENUE);
         }
 
         return (rowsUpdated == 1);
@@ -530,7 +2487,7 @@ class DBHelper extends SQLiteOpenHelper
     public Transaction getTransaction(final int id)
     {
         SQLiteDatabase db = getReadableDatabase();
-        Cursor data = db.rawQuery("select * from " + TransactionDbIds.TABLE +
+        Cursor data = db.rawQuery("select " + TransactionProjections.DETAIL + " from " + TransactionDbIds.TABLE +
                 " where " + TransactionDbIds.NAME + "=?", new String[]{Integer.toString(id)});
 
         Transaction transaction = null;
@@ -542,7 +2499,6 @@ class DBHelper extends SQLiteOpenHelper
         }
 
         data.close();
-        db.close();
 
         return transaction;
     }
@@ -559,22 +2515,28 @@ class DBHelper extends SQLiteOpenHelper
      */
     public int getTransactionCount(final int type)
     {
-        SQLiteDatabase db = getReadableDatabase();
-        Cursor data =  db.rawQuery("SELECT Count(*) FROM " + TransactionDbIds.TABLE +
-                " where " + TransactionDbIds.TYPE + "=?", new String[]{Integer.toString(type)});
-
-        int numItems = 0;
-
-        if(data.getCount() == 1)
-        {
-            data.moveToFirst();
-            numItems = data.getInt(0);
-        }
-
-        data.close();
-        db.close();
+        return getTransactionCount(type, (String)null);
+    }
 
-        return numItems;
+    /**
+     * Returns the number of transactions in the database of the provided
+     * type and budget, as getTransactions() would return without a search
+     * or dates.
+     *
+     * The count is the sum of the counts in the monthly budget totals,
+     * so no transactions are read.
+     *
+     * @param type
+     *      transaction type to query, either EXPENSE or
+     *      REVENUE
+     * @param budget
+     *      name of the budget, "" for transactions without a budget,
+     *      or null for transactions of any budget
+     * @return the number of transactions
+     */
+    public int getTransactionCount(final int type, final String budget)
+    {
+        return countFromMonthTotals(type, budget, null, null);
     }
 
     /**
@@ -588,12 +2550,36 @@ class DBHelper extends SQLiteOpenHelper
     public boolean deleteTransaction(final int id)
     {
         SQLiteDatabase db = getWritableDatabase();
-        int rowsDeleted =  db.delete(TransactionDbIds.TABLE,
-                TransactionDbIds.NAME + " = ? ",
-                new String[]{Integer.toString(id)});
-        db.close();
+        int rowsDeleted = 0;
+        BudgetDelta removed = null;
 
-        if(rowsDeleted == 1)
+        beginTransactionChange();
+        try
+        {
+            db.beginTransaction();
+            try
+            {
+                removed = readRemovedTransaction(db, id);
+                rowsDeleted = db.delete(TransactionDbIds.TABLE,
+                        TransactionDbIds.NAME + " = ? ",
+                        new String[]{Integer.toString(id)});
+                db.setTransactionSuccessful();
+            }
+            finally
+            {
+                db.endTransaction();
+            }
+        }
+        finally
+        {
+            transactionsChanged((rowsDeleted == 1) ? removed : null, null);
+        }
+
+        if(rowsDeleted == 1 && removed != null)
+        {
+            sendChangeNotification(removed.type);
+        }
+        else if(rowsDeleted == 1)
         {
             sendChangeNotification();
         }
@@ -611,58 +2597,357 @@ class DBHelper extends SQLiteOpenHelper
      * @param budget
      *      if not null, all returned expenses will be from this budget.
      * @param search
-     *      if not null, all returned expenses will have at least one field
-     *      which contains this query string
+     *      if not null, all returned expenses will have words in their
+     *      description, account or note starting with each word in
+     *      this query string, or if it is a number, a value starting
+     *      with it
      */
     public Cursor getTransactions(int type, String budget, String search, Long startDateMs, Long endDateMs)
     {
+        return getTransactions(TransactionProjections.DETAIL, type, budget, search, startDateMs, endDateMs);
+    }
+
+    /**
+     * Returns a cursor pointing to the transactions which
+     * getTransactions() returns for the same arguments, with only
+     * the given columns.
+     *
+     * @param projection
+     *      the columns to select, one of TransactionProjections
+     */
+    public Cursor getTransactions(String projection, int type, String budget, String search,
+                                  Long startDateMs, Long endDateMs)
+    {
+        SQLiteDatabase db = getReadableDatabase();
+
+        LinkedList<String> args = new LinkedList<>();
+
+        String query = "select " + projection + " from " + TransactionDbIds.TABLE + " where " +
+                transactionFilter(type, budget, search, startDateMs, endDateMs, args) +
+                TRANSACTION_ORDER;
+
+        String [] argArray = args.toArray(new String[args.size()]);
+
+        Cursor res =  db.rawQuery(query, argArray);
+        return res;
+    }
+
+    /**
+     * Returns a cursor pointing to one page of the transactions which
+     * getTransactions() returns for the same arguments, in the same order.
+     *
+     * Each page starts after the last transaction of the previous page,
+     * by date and id, rather than at an offset. Reading a page costs the
+     * same however far into the list it is, and transactions added or
+     * removed in earlier pages do not shift later pages.
+     *
+     * @param after
+     *      the last transaction of the previous page, or null for
+     *      the first page
+     * @param pageSize
+     *      the most transactions to return. If fewer are returned,
+     *      this is the last page.
+     */
+    public Cursor getTransactionsPage(int type, String budget, String search, Long startDateMs, Long endDateMs,
+                                      Transaction after, int pageSize)
+    {
+        return getTransactionsPage(TransactionProjections.DETAIL, type, budget, search, startDateMs, endDateMs,
+                after, pageSize);
+    }
+
+    /**
+     * Returns a cursor pointing to the page of transactions which
+     * getTransactionsPage() returns for the same arguments, with only
+     * the given columns.
+     *
+     * @param projection
+     *      the columns to select, one of TransactionProjections. These
+     *      must include the id and date for the next page to be found.
+     */
+    public Cursor getTransactionsPage(String projection, int type, String budget, String search,
+                                      Long startDateMs, Long endDateMs, Transaction after, int pageSize)
+    {
+        return queryTransactionsPage(projection, type, budget, search, startDateMs, endDateMs,
+                (after != null) ? after.dateMs : null, (after != null) ? after.id : 0, pageSize);
+    }
+
+    /**
+     * Returns a cursor pointing to the page of transactions which
+     * getTransactionsPage() returns for the same arguments, without
+     * dates, for a list which keeps the date and id of its last row
+     * rather than a Transaction.
+     *
+     * @param afterDateMs
+     *      date of the last transaction of the previous page
+     * @param afterId
+     *      id of the last transaction of the previous page
+     */
+    public Cursor getTransactionsPage(String projection, int type, String budget, String search,
+                                      long afterDateMs, int afterId, int pageSize)
+    {
+        return queryTransactionsPage(projection, type, budget, search, null, null,
+                afterDateMs, afterId, pageSize);
+    }
+
+    /**
+     * Query a page of transactions, as getTransactionsPage(). The page
+     * follows the transaction with the given date and id, or is the
+     * first page if afterDateMs is null.
+     */
+    private Cursor queryTransactionsPage(String projection, int type, String budget, String search,
+                                         Long startDateMs, Long endDateMs, Long afterDateMs, int afterId,
+                                         int pageSize)
+    {
+        SQLiteDatabase db = getReadableDatabase();
+
+        LinkedList<String> args = new LinkedList<>();
+
+        String query = "select " + projection + " from " + TransactionDbIds.TABLE + " where " +
+                transactionFilter(type, budget, search, startDateMs, endDateMs, args) +
+                ((afterDateMs != null) ? pageFilter(afterDateMs, afterId, args) : "") +
+                TRANSACTION_ORDER + " LIMIT " + pageSize;
+
+        return db.rawQuery(query, args.toArray(new String[args.size()]));
+    }
+
+    /**
+     * Go through the transactions which getTransactions() returns for
+     * the given type and dates, in the same order, reading them a page
+     * of TRANSACTION_PAGE_SIZE at a time so that only one page is held
+     * in memory.
+     *
+     * @param projection
+     *      the columns to select, one of TransactionProjections. These
+     *      must include the id and date for the next page to be found.
+     */
+    public void forEachTransaction(final String projection, final int type, final Long startDateMs,
+                                   final Long endDateMs, TransactionHandler handler)
+            throws IOException, InterruptedException
+    {
+        forEachPage(new PageQuery()
+        {
+            @Override
+            public Cursor getPage(Long afterDateMs, int afterId)
+            {
+                return queryTransactionsPage(projection, type, null, null, startDateMs, endDateMs,
+                        afterDateMs, afterId, TRANSACTION_PAGE_SIZE);
+            }
+        }, handler);
+    }
+
+    /**
+     * Returns the number of transactions of the provided type between
+     * the provided dates, as getTransactions() would return.
+     *
+     * If there are no dates, or the dates cover whole months, the count
+     * comes from the monthly budget totals. Otherwise the transactions in
+     * the range are counted, reading only the type and date index.
+     */
+    public int getTransactionCount(int type, Long startDateMs, Long endDateMs)
+    {
+        if(startDateMs == null && endDateMs == null)
+        {
+            return countFromMonthTotals(type, null, null, null);
+        }
+
+        if(startDateMs != null && endDateMs != null && CalendarUtil.isWholeMonths(startDateMs, endDateMs))
+        {
+            checkMonthTotalsTimeZone();
+            return countFromMonthTotals(type, null, toMonth(startDateMs), toMonth(endDateMs));
+        }
+
         SQLiteDatabase db = getReadableDatabase();
 
         LinkedList<String> args = new LinkedList<>();
 
-        String query = "select * from " + TransactionDbIds.TABLE + " where " +
-                TransactionDbIds.TYPE + "=" + type;
+        String query = "SELECT Count(*) FROM " + TransactionDbIds.TABLE + " where " +
+                transactionFilter(type, null, null, startDateMs, endDateMs, args);
+
+        return (int)DatabaseUtils.longForQuery(db, query, args.toArray(new String[args.size()]));
+    }
+
+    /**
+     * Sum the transaction counts in the monthly budget totals.
+     *
+     * @param budget
+     *      name of the budget, "" for transactions without a budget,
+     *      or null for transactions of any budget
+     * @param startMonth
+     *      first month counted, or null for no limit
+     * @param endMonth
+     *      last month counted, or null for no limit
+     */
+    private int countFromMonthTotals(final int type, final String budget, Integer startMonth, Integer endMonth)
+    {
+        List<String> args = new ArrayList<>();
+        args.add(Integer.toString(type));
+
+        String query = "select ifnull(sum(" + BudgetMonthTotalsDbIds.COUNT + "), 0) from " +
+                BudgetMonthTotalsDbIds.TABLE + " where " + BudgetMonthTotalsDbIds.TYPE + " = ?";
+
+        if(startMonth != null)
+        {
+            query += " and " + BudgetMonthTotalsDbIds.MONTH + " >= ?";
+            args.add(Integer.toString(startMonth));
+        }
 
-        if(budget != null)
+        if(endMonth != null)
         {
-            query += " AND " + TransactionDbIds.BUDGET + "=?";
-            args.addLast(budget);
+            query += " and " + BudgetMonthTotalsDbIds.MONTH + " <= ?";
+            args.add(Integer.toString(endMonth));
         }
 
+        query += monthTotalsBudgetFilter(budget, args);
+
+        SQLiteDatabase db = getReadableDatabase();
+        return (int)DatabaseUtils.longForQuery(db, query, args.toArray(new String[args.size()]));
+    }
+
+    /**
+     * Build the condition selecting the transactions which getTransactions()
+     * returns for the given arguments, adding its arguments to args.
+     */
+    private static String transactionFilter(int type, String budget, String search, Long startDateMs, Long endDateMs,
+                                            List<String> args)
+    {
+        String query = TransactionDbIds.TYPE + "=" + type + budgetFilter(budget, args);
+
         if(search != null)
         {
-            query += " AND ( ";
+            LinkedList<String> matches = new LinkedList<>();
 
-            String [] items = new String[]{TransactionDbIds.DESCRIPTION, TransactionDbIds.ACCOUNT,
-                    TransactionDbIds.VALUE, TransactionDbIds.NOTE};
+            final String textQuery = toTextSearchQuery(search);
+            if(textQuery != null)
+            {
+                matches.add(TransactionDbIds.NAME + " in (select docid from " +
+                        TransactionSearchDbIds.TABLE + " where " +
+                        TransactionSearchDbIds.TABLE + " match ?)");
+                args.add(textQuery);
+            }
 
-            for(int index = 0; index < items.length; index++)
+            final String trimmed = search.trim();
+            if(NUMERIC_SEARCH.matcher(trimmed).matches())
             {
-                query += "( " + items[index] + " LIKE ? )";
-                if(index < (items.length-1))
-                {
-                    query += " OR ";
-                }
-                args.addLast("%" + search + "%");
+                matches.add(TransactionDbIds.VALUE_TEXT + " LIKE ?");
+                args.add(trimmed + "%");
             }
 
-            query += " )";
+            if(matches.isEmpty())
+            {
+                // Nothing in the search can match
+                matches.add("0");
+            }
+
+            query += " AND ( " + TextUtils.join(" OR ", matches) + " )";
         }
 
         if(startDateMs != null && endDateMs != null)
         {
             query += " AND " + TransactionDbIds.DATE + " >= ? AND " +
                     TransactionDbIds.DATE + " <= ?";
-            args.addLast(Long.toString(startDateMs));
-            args.addLast(Long.toString(endDateMs));
+            args.add(Long.toString(startDateMs));
+            args.add(Long.toString(endDateMs));
+        }
+
+        return query;
+    }
+
+    /**
+     * Build the condition selecting the transactions of a budget, to
+     * follow other conditions, adding its arguments to args.
+     *
+     * @param budget
+     *      name of the budget, "" for transactions without a budget,
+     *      or null for all transactions
+     */
+    private static String budgetFilter(String budget, List<String> args)
+    {
+        if(budget == null)
+        {
+            return "";
         }
 
-        query += " ORDER BY " + TransactionDbIds.DATE + " DESC";
+        if(budget.isEmpty())
+        {
+            return " AND " + TransactionDbIds.BUDGET_ID + " is null";
+        }
 
-        String [] argArray = args.toArray(new String[args.size()]);
+        args.add(budget);
+        return " AND " + TransactionDbIds.BUDGET_ID + "=(select " + BudgetDbIds.ID +
+                " from " + BudgetDbIds.TABLE + " where " + BudgetDbIds.NAME + "=?)";
+    }
 
-        Cursor res =  db.rawQuery(query, argArray);
-        return res;
+    /**
+     * Build the condition selecting the monthly budget totals of a budget,
+     * as budgetFilter() does for transactions, adding its arguments to args.
+     */
+    private static String monthTotalsBudgetFilter(String budget, List<String> args)
+    {
+        if(budget == null)
+        {
+            return "";
+        }
+
+        if(budget.isEmpty())
+        {
+            return " AND " + BudgetMonthTotalsDbIds.BUDGET_ID + " = 0";
+        }
+
+        args.add(budget);
+        return " AND " + BudgetMonthTotalsDbIds.BUDGET_ID + "=(select " + BudgetDbIds.ID +
+                " from " + BudgetDbIds.TABLE + " where " + BudgetDbIds.NAME + "=?)";
+    }
+
+    /**
+     * Build the condition selecting the transactions after the transaction
+     * with the given date and id in TRANSACTION_ORDER, adding its arguments
+     * to args.
+     */
+    private static String pageFilter(long afterDateMs, int afterId, List<String> args)
+    {
+        args.add(Long.toString(afterDateMs));
+        args.add(Long.toString(afterDateMs));
+        args.add(Integer.toString(afterId));
+
+        return " AND (" + TransactionDbIds.DATE + " < ? OR (" +
+                TransactionDbIds.DATE + " = ? AND " + TransactionDbIds.NAME + " < ?))";
+    }
+
+    /**
+     * Build a full text query for the transaction search table which
+     * matches rows having a word starting with each word of the search.
+     * Words are split the same way the search table splits the text
+     * it indexes: any character other than an ASCII letter or digit,
+     * or a non-ASCII character, separates words.
+     *
+     * @return the query, or null if the search has no words
+     */
+    private static String toTextSearchQuery(final String search)
+    {
+        StringBuilder query = new StringBuilder();
+        StringBuilder word = new StringBuilder();
+
+        for(int index = 0; index <= search.length(); index++)
+        {
+            final char c = (index < search.length()) ? search.charAt(index) : ' ';
+            if(c >= 0x80 || Character.isLetterOrDigit(c))
+            {
+                word.append(c);
+            }
+            else if(word.length() > 0)
+            {
+                // Each word is quoted so that it is never taken as
+                // an operator, such as OR or NOT
+                if(query.length() > 0)
+                {
+                    query.append(' ');
+                }
+                query.append('"').append(word).append("*\"");
+                word.setLength(0);
+            }
+        }
+
+        return (query.length() > 0) ? query.toString() : null;
     }
 
     /**
@@ -704,10 +2989,116 @@ class DBHelper extends SQLiteOpenHelper
         String [] args = argList.toArray(new String[argList.size()]);
 
         SQLiteDatabase db = getReadableDatabase();
-        Cursor res =  db.rawQuery("select * from " + TransactionDbIds.TABLE + " where " +
-                " LENGTH(" + TransactionDbIds.RECEIPT + ") > 0 " +
+        Cursor res =  db.rawQuery("select " + TransactionProjections.DETAIL + " from " + TransactionDbIds.TABLE + " where " +
+                TransactionDbIds.HAS_RECEIPT +
                 (endDate != null ? " AND " + TransactionDbIds.DATE + "<=? " : ""),
                 args);
         return res;
     }
+
+    /**
+     * Returns a Cursor pointing to one page of the transactions which
+     * getTransactionsWithReceipts() returns, ordered as getTransactions()
+     * orders them. See getTransactionsPage() for how pages are found.
+     * Only the columns of TransactionProjections.RECEIPT are selected.
+     *
+     * @param endDate
+     *      date to limit transactions by; if not null will only
+     *      returns transactions on or before the given date.
+     * @param after
+     *      the last receipt of the previous page, or null for
+     *      the first page
+     * @param pageSize
+     *      the most transactions to return. If fewer are returned,
+     *      this is the last page.
+     */
+    public Cursor getTransactionsWithReceiptsPage(Long endDate, TransactionReceipt after, int pageSize)
+    {
+        return queryTransactionsWithReceiptsPage(endDate, (after != null) ? after.dateMs : null,
+                (after != null) ? after.id : 0, pageSize);
+    }
+
+    /**
+     * Query a page of transactions with receipts, as
+     * getTransactionsWithReceiptsPage(). The page follows the transaction
+     * with the given date and id, or is the first page if afterDateMs is null.
+     */
+    private Cursor queryTransactionsWithReceiptsPage(Long endDate, Long afterDateMs, int afterId, int pageSize)
+    {
+        List<String> args = new ArrayList<>();
+
+        String query = "select " + TransactionProjections.RECEIPT + " from " + TransactionDbIds.TABLE + " where " +
+                TransactionDbIds.HAS_RECEIPT;
+
+        if(endDate != null)
+        {
+            query += " AND " + TransactionDbIds.DATE + "<=?";
+            args.add(endDate.toString());
+        }
+
+        if(afterDateMs != null)
+        {
+            query += pageFilter(afterDateMs, afterId, args);
+        }
+
+        query += TRANSACTION_ORDER + " LIMIT " + pageSize;
+
+        SQLiteDatabase db = getReadableDatabase();
+        return db.rawQuery(query, args.toArray(new String[args.size()]));
+    }
+
+    /**
+     * Go through the transactions which getTransactionsWithReceipts()
+     * returns, a page of TRANSACTION_PAGE_SIZE at a time. The handler
+     * may remove the receipt of each transaction it is given.
+     */
+    public void forEachTransactionWithReceipt(final Long endDate, TransactionHandler handler)
+            throws IOException, InterruptedException
+    {
+        forEachPage(new PageQuery()
+        {
+            @Override
+            public Cursor getPage(Long afterDateMs, int afterId)
+            {
+                return queryTransactionsWithReceiptsPage(endDate, afterDateMs, afterId, TRANSACTION_PAGE_SIZE);
+            }
+        }, handler);
+    }
+
+    /**
+     * Read the pages of a PageQuery until one is not full, giving each
+     * row to the handler. Each page is closed before the next is read,
+     * even if the handler fails.
+     */
+    private static void forEachPage(PageQuery query, TransactionHandler handler)
+            throws IOException, InterruptedException
+    {
+        Long afterDateMs = null;
+        int afterId = 0;
+        boolean morePages = true;
+
+        while(morePages)
+        {
+            Cursor cursor = query.getPage(afterDateMs, afterId);
+
+            try
+            {
+                morePages = (cursor.getCount() == TRANSACTION_PAGE_SIZE);
+
+                final int idColumn = cursor.getColumnIndexOrThrow(TransactionDbIds.NAME);
+                final int dateColumn = cursor.getColumnIndexOrThrow(TransactionDbIds.DATE);
+
+                while(cursor.moveToNext())
+                {
+                    afterId = cursor.getInt(idColumn);
+                    afterDateMs = cursor.getLong(dateColumn);
+                    handler.onTransaction(cursor);
+                }
+            }
+            finally
+            {
+                cursor.close();
+            }
+        }
+    }
 }
@@ -9,6 +9,9 @@ import android.os.Environment;
 import android.util.Log;
 
 import java.io.File;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Set;
 
 class DatabaseCleanupTask  extends AsyncTask<Void, Void, Void>
 {
@@ -50,54 +53,70 @@ class DatabaseCleanupTask  extends AsyncTask<Void, Void, Void>
         progress.show();
     }
 
-    private void removeOldReceiptsFromTransactions(DBHelper db)
+    /**
+     * Stop going through the transactions once the task was canceled.
+     */
+    private void checkCancelled() throws InterruptedException
     {
-        Cursor cursor = db.getTransactionsWithReceipts(receiptPurgeCutoff);
+        if(isCancelled())
+        {
+            throw new InterruptedException();
+        }
+    }
 
-        while(cursor.moveToNext())
+    private void removeOldReceiptsFromTransactions(final DBHelper db) throws IOException, InterruptedException
+    {
+        db.forEachTransactionWithReceipt(receiptPurgeCutoff, new DBHelper.TransactionHandler()
         {
-            Transaction transaction = Transaction.toTransaction(cursor);
-            File receipt = new File(transaction.receipt);
-            boolean result = receipt.delete();
-            if(result == false)
+            @Override
+            public void onTransaction(Cursor cursor) throws InterruptedException
             {
-                Log.i(TAG, "Failed to delete old receipt from transaction: " + transaction.id);
-            }
+                checkCancelled();
 
-            db.updateTransaction(transaction.id, transaction.type, transaction.description,
-                    transaction.account, transaction.budget, transaction.value, transaction.note,
-                    transaction.dateMs, /* no receipt */ "");
-        }
-        cursor.close();
+                TransactionReceipt transaction = TransactionReceipt.toTransactionReceipt(cursor);
+
+                File receipt = new File(transaction.receipt);
+                boolean result = receipt.delete();
+                if(result == false)
+                {
+                    Log.i(TAG, "Failed to delete old receipt from transaction: " + transaction.id);
+                }
+
+                db.removeTransactionReceipt(transaction.id);
+            }
+        });
     }
 
-    private static void correctTransactionsWithMissingReceipts(DBHelper db)
+    private void correctTransactionsWithMissingReceipts(final DBHelper db)
+            throws IOException, InterruptedException
     {
-        Cursor cursor = db.getTransactionsWithReceipts(null);
-
-        while(cursor.moveToNext())
+        db.forEachTransactionWithReceipt(null, new DBHelper.TransactionHandler()
         {
-            Transaction transaction = Transaction.toTransaction(cursor);
-            if(transaction.receipt.isEmpty() == false)
+            @Override
+            public void onTransaction(Cursor cursor) throws InterruptedException
             {
-                File receipt = new File(transaction.receipt);
-                if(receipt.isFile() == false)
+                checkCancelled();
+
+                TransactionReceipt transaction = TransactionReceipt.toTransactionReceipt(cursor);
+
+                if(transaction.receipt.isEmpty() == false)
                 {
-                    // This entry's receipt is missing. Cannot recover
-                    // the receipt image, but can update database to remove
-                    // the receipt from the transaction
-                    db.updateTransaction(transaction.id, transaction.type, transaction.description,
-                            transaction.account, transaction.budget, transaction.value, transaction.note,
-                            transaction.dateMs, /* no receipt */ "");
-                    Log.i(TAG, "Transaction " + transaction.id + " listed a receipt but it is missing, " +
-                            "removing receipt");
+                    File receipt = new File(transaction.receipt);
+                    if(receipt.isFile() == false)
+                    {
+                        // This entry's receipt is missing. Cannot recover
+                        // the receipt image, but can update database to remove
+                        // the receipt from the transaction
+                        db.removeTransactionReceipt(transaction.id);
+                        Log.i(TAG, "Transaction " + transaction.id + " listed a receipt but it is missing, " +
+                                "removing receipt");
+                    }
                 }
             }
-        }
-        cursor.close();
+        });
     }
 
-    private void deleteOrphanedReceipts(DBHelper db)
+    private void deleteOrphanedReceipts(DBHelper db) throws IOException, InterruptedException
     {
         File imageDir = activity.getExternalFilesDir(Environment.DIRECTORY_PICTURES);
         if(imageDir == null || imageDir.exists() == false)
@@ -106,7 +125,17 @@ class DatabaseCleanupTask  extends AsyncTask<Void, Void, Void>
             return;
         }
 
-        Cursor cursor = db.getTransactionsWithReceipts(null);
+        // Collect the receipts used by transactions, a page at a time
+        final Set<File> usedReceipts = new HashSet<>();
+        db.forEachTransactionWithReceipt(null, new DBHelper.TransactionHandler()
+        {
+            @Override
+            public void onTransaction(Cursor cursor) throws InterruptedException
+            {
+                checkCancelled();
+                usedReceipts.add(new File(TransactionReceipt.toTransactionReceipt(cursor).receipt));
+            }
+        });
 
         File [] files = imageDir.listFiles();
         if(files == null)
@@ -118,22 +147,8 @@ class DatabaseCleanupTask  extends AsyncTask<Void, Void, Void>
 
         for(File receipt : files)
         {
-            // Search for this receipt attached to a transaction
-            boolean found = false;
-            cursor.moveToPosition(-1);
-            while(cursor.moveToNext())
-            {
-                Transaction transaction = Transaction.toTransaction(cursor);
-                File transactionReceipt = new File(transaction.receipt);
-                if(transactionReceipt.equals(receipt))
-                {
-                    // Found the receipt used in the database, ok to move on
-                    found = true;
-                    break;
-                }
-            }
-
-            if(found == false)
+            // Keep the receipt if it is attached to a transaction
+            if(usedReceipts.contains(receipt) == false)
             {
                 Log.i(TAG, "Deleting orphaned receipt: " + receipt.getAbsolutePath());
                 boolean result = receipt.delete();
@@ -143,23 +158,30 @@ class DatabaseCleanupTask  extends AsyncTask<Void, Void, Void>
                 }
             }
         }
-
-        cursor.close();
     }
 
     protected Void doInBackground(Void... nothing)
     {
-        DBHelper db = new DBHelper(activity);
+        DBHelper db = BudgetWatchApplication.getDatabase(activity);
 
-        if(receiptPurgeCutoff != null)
+        try
         {
-            removeOldReceiptsFromTransactions(db);
-        }
-
-        correctTransactionsWithMissingReceipts(db);
-        deleteOrphanedReceipts(db);
+            if(receiptPurgeCutoff != null)
+            {
+                removeOldReceiptsFromTransactions(db);
+            }
 
-        db.close();
+            correctTransactionsWithMissingReceipts(db);
+            deleteOrphanedReceipts(db);
+        }
+        catch(InterruptedException e)
+        {
+            // The task was canceled, onCancelled() reports it
+        }
+        catch(IOException e)
+        {
+            Log.w(TAG, "Cleanup failed", e);
+        }
 
         return null;
     }
@@ -0,0 +1,157 @@
+package protect.budgetwatch;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+
+/**
+ * Runs the queries of a screen on a background thread and delivers
+ * their results on the main thread, so the main thread never waits
+ * on the database.
+ */
+class DatabaseLoader
+{
+    /**
+     * A query, run on a background thread.
+     */
+    interface Query<T>
+    {
+        T load();
+    }
+
+    /**
+     * Receives the result of a query on the main thread. It is not
+     * called if the load was canceled first. If the query fails, its
+     * exception is thrown on the main thread instead.
+     */
+    interface Callback<T>
+    {
+        void onLoaded(T result);
+    }
+
+    /**
+     * A query which was started, and which may be canceled until its
+     * result is delivered.
+     */
+    static class Load
+    {
+        private volatile boolean _canceled = false;
+        private volatile boolean _finished = false;
+
+        /**
+         * Drop the result of the query. If the query has not started
+         * yet it is not run.
+         */
+        void cancel()
+        {
+            _canceled = true;
+            _finished = true;
+        }
+
+        /**
+         * @return true once the result was delivered or the load
+         * was canceled
+         */
+        boolean isFinished()
+        {
+            return _finished;
+        }
+    }
+
+    private static final Handler MAIN_HANDLER = new Handler(Looper.getMainLooper());
+
+    // Number of queries run at once. The database uses write-ahead
+    // logging, so reads do not wait on each other, and a slow report
+    // does not hold up the list of another screen.
+    private static final int LOAD_THREADS = 3;
+
+    private static Executor _executor = Executors.newFixedThreadPool(LOAD_THREADS);
+
+    /**
+     * Replace the executor queries are run on. Tests use an executor
+     * which runs each query right away on the calling thread.
+     *
+     * @return the executor which was replaced, so that it may be restored
+     */
+    static Executor setExecutor(Executor executor)
+    {
+        final Executor previous = _executor;
+        _executor = executor;
+        return previous;
+    }
+
+    static <T> Load load(final Query<T> query, final Callback<T> callback)
+    {
+        final Load load = new Load();
+
+        _executor.execute(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                if(load._canceled)
+                {
+                    return;
+                }
+
+                final T result;
+                try
+                {
+                    result = query.load();
+                }
+                catch(final RuntimeException e)
+                {
+                    // Fail on the main thread, as the query would have
+                    // if it ran there, rather than leaving the screen
+                    // waiting on a result which never comes
+                    deliver(new Runnable()
+                    {
+                        @Override
+                        public void run()
+                        {
+                            if(load._canceled)
+                            {
+                                return;
+                            }
+
+                            load._finished = true;
+                            throw e;
+                        }
+                    });
+                    return;
+                }
+
+                deliver(new Runnable()
+                {
+                    @Override
+                    public void run()
+                    {
+                        if(load._canceled)
+                        {
+                            return;
+                        }
+
+                        load._finished = true;
+                        callback.onLoaded(result);
+                    }
+                });
+            }
+        });
+
+        return load;
+    }
+
+    private static void deliver(Runnable deliver)
+    {
+        if(Looper.myLooper() == Looper.getMainLooper())
+        {
+            deliver.run();
+        }
+        else
+        {
+            MAIN_HANDLER.post(deliver);
+        }
+    }
+}
@@ -0,0 +1,181 @@
+package protect.budgetwatch;
+
+import android.os.Bundle;
+import androidx.appcompat.app.ActionBar;
+import androidx.appcompat.app.AppCompatActivity;
+import androidx.appcompat.widget.Toolbar;
+import android.view.MenuItem;
+import android.view.View;
+import android.widget.ListAdapter;
+import android.widget.ListView;
+import android.widget.ProgressBar;
+import android.widget.TextView;
+
+import java.text.DateFormat;
+import java.util.Calendar;
+
+/**
+ * A screen which lists what was read for a date range, shown under the
+ * range itself. The range is given by two extras of the intent, and is
+ * the current month if they are missing. The list is read in the
+ * background by a DatabaseLoader.
+ */
+abstract class DateRangeListActivity<T> extends AppCompatActivity
+{
+    private final String _startExtra;
+    private final String _endExtra;
+    private final int _emptyTextId;
+
+    private DBHelper _db;
+    private DatabaseLoader.Load _loading;
+
+    /**
+     * @param startExtra
+     *      name of the extra with the start of the range
+     * @param endExtra
+     *      name of the extra with the end of the range
+     * @param emptyTextId
+     *      text shown in place of an empty list, or 0 to show
+     *      the list even when it is empty
+     */
+    DateRangeListActivity(String startExtra, String endExtra, int emptyTextId)
+    {
+        _startExtra = startExtra;
+        _endExtra = endExtra;
+        _emptyTextId = emptyTextId;
+    }
+
+    /**
+     * Read what is listed for the date range. This is called on a
+     * background thread.
+     */
+    abstract T load(DBHelper db, long startMs, long endMs);
+
+    /**
+     * @return an adapter listing what load() read
+     */
+    abstract ListAdapter createAdapter(T loaded);
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState)
+    {
+        super.onCreate(savedInstanceState);
+        setContentView(R.layout.date_range_list_activity);
+        Toolbar toolbar = (Toolbar) findViewById(R.id.toolbar);
+        setSupportActionBar(toolbar);
+        ActionBar actionBar = getSupportActionBar();
+        if(actionBar != null)
+        {
+            actionBar.setDisplayHomeAsUpEnabled(true);
+        }
+
+        _db = BudgetWatchApplication.getDatabase(this);
+    }
+
+    @Override
+    public void onResume()
+    {
+        super.onResume();
+
+        final Calendar date = Calendar.getInstance();
+
+        final long dateMonthEndMs = CalendarUtil.getEndOfMonthMs(date.get(Calendar.YEAR),
+                date.get(Calendar.MONTH));
+        final long dateMonthStartMs = CalendarUtil.getStartOfMonthMs(date.get(Calendar.YEAR),
+                date.get(Calendar.MONTH));
+
+        final Bundle b = getIntent().getExtras();
+        final long startMs = b != null ? b.getLong(_startExtra, dateMonthStartMs) : dateMonthStartMs;
+        final long endMs = b != null ? b.getLong(_endExtra, dateMonthEndMs) : dateMonthEndMs;
+
+        date.setTimeInMillis(startMs);
+        String startString = DateFormat.getDateInstance(DateFormat.SHORT).format(date.getTime());
+
+        date.setTimeInMillis(endMs);
+        String endString = DateFormat.getDateInstance(DateFormat.SHORT).format(date.getTime());
+
+        String dateRangeFormat = getResources().getString(R.string.dateRangeFormat);
+        final TextView dateRangeField = (TextView) findViewById(R.id.dateRange);
+        dateRangeField.setText(String.format(dateRangeFormat, startString, endString));
+
+        final ListView list = (ListView) findViewById(R.id.list);
+        final TextView helpText = (TextView)findViewById(R.id.helpText);
+        final ProgressBar loading = (ProgressBar)findViewById(R.id.loading);
+
+        // Until the list is read only show that it is loading
+        list.setVisibility(View.GONE);
+        helpText.setVisibility(View.GONE);
+        loading.setVisibility(View.VISIBLE);
+
+        if(_loading != null)
+        {
+            _loading.cancel();
+        }
+
+        _loading = DatabaseLoader.load(new DatabaseLoader.Query<T>()
+        {
+            @Override
+            public T load()
+            {
+                return DateRangeListActivity.this.load(_db, startMs, endMs);
+            }
+        }, new DatabaseLoader.Callback<T>()
+        {
+            @Override
+            public void onLoaded(T loaded)
+            {
+                showList(loaded);
+            }
+        });
+    }
+
+    private void showList(T loaded)
+    {
+        final ListView list = (ListView) findViewById(R.id.list);
+        final TextView helpText = (TextView)findViewById(R.id.helpText);
+        final ProgressBar loading = (ProgressBar)findViewById(R.id.loading);
+
+        loading.setVisibility(View.GONE);
+
+        final ListAdapter adapter = createAdapter(loaded);
+
+        if(adapter.isEmpty() == false || _emptyTextId == 0)
+        {
+            list.setVisibility(View.VISIBLE);
+            helpText.setVisibility(View.GONE);
+        }
+        else
+        {
+            list.setVisibility(View.GONE);
+            helpText.setVisibility(View.VISIBLE);
+            helpText.setText(_emptyTextId);
+        }
+
+        list.setAdapter(adapter);
+    }
+
+    @Override
+    public boolean onOptionsItemSelected(MenuItem item)
+    {
+        int id = item.getItemId();
+
+        if(id == android.R.id.home)
+        {
+            finish();
+            return true;
+        }
+
+        return super.onOptionsItemSelected(item);
+    }
+
+    @Override
+    public void onDestroy()
+    {
+        if(_loading != null)
+        {
+            _loading.cancel();
+        }
+
+        super.onDestroy();
+    }
+}
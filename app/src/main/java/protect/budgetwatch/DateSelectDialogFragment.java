@@ -14,6 +14,25 @@ import android.widget.Toast;
 
 public class DateSelectDialogFragment extends DialogFragment {
 
+    private static final String START_EXTRA_ARG = "startExtra";
+    private static final String END_EXTRA_ARG = "endExtra";
+
+    /**
+     * Create a dialog which restarts the current activity with the
+     * selected range in the given extras, keeping its other extras.
+     * Without these arguments the budgets are shown for the range.
+     */
+    static DateSelectDialogFragment forCurrentActivity(String startExtra, String endExtra)
+    {
+        Bundle args = new Bundle();
+        args.putString(START_EXTRA_ARG, startExtra);
+        args.putString(END_EXTRA_ARG, endExtra);
+
+        DateSelectDialogFragment fragment = new DateSelectDialogFragment();
+        fragment.setArguments(args);
+        return fragment;
+    }
+
     @Override
     public void onAttach(Context context) {
         super.onAttach(context);
@@ -54,15 +73,26 @@ public class DateSelectDialogFragment extends DialogFragment {
                             return;
                         }
 
-                        Intent intent = new Intent(getActivity(), BudgetActivity.class);
-                        intent.setFlags(
-                                Intent.FLAG_ACTIVITY_NEW_TASK | Intent.FLAG_ACTIVITY_TASK_ON_HOME);
+                        final Bundle args = getArguments();
+                        if(args != null)
+                        {
+                            Intent intent = new Intent(getActivity().getIntent());
+                            intent.putExtra(args.getString(START_EXTRA_ARG), startOfBudgetMs);
+                            intent.putExtra(args.getString(END_EXTRA_ARG), endOfBudgetMs);
+                            startActivity(intent);
+                        }
+                        else
+                        {
+                            Intent intent = new Intent(getActivity(), BudgetActivity.class);
+                            intent.setFlags(
+                                    Intent.FLAG_ACTIVITY_NEW_TASK | Intent.FLAG_ACTIVITY_TASK_ON_HOME);
 
-                        Bundle bundle = new Bundle();
-                        bundle.putLong("budgetStart", startOfBudgetMs);
-                        bundle.putLong("budgetEnd", endOfBudgetMs);
-                        intent.putExtras(bundle);
-                        startActivity(intent);
+                            Bundle bundle = new Bundle();
+                            bundle.putLong("budgetStart", startOfBudgetMs);
+                            bundle.putLong("budgetEnd", endOfBudgetMs);
+                            intent.putExtras(bundle);
+                            startActivity(intent);
+                        }
 
                         getActivity().finish();
                     }
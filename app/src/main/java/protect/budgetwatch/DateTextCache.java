@@ -0,0 +1,115 @@
+package protect.budgetwatch;
+
+import java.text.DateFormat;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TimeZone;
+
+/**
+ * Keeps the formatted text of recently shown dates, so lists and
+ * exports of many transactions format each distinct date once rather
+ * than once per transaction. The text is formatted again after the
+ * default locale or time zone changes. Safe to use from any thread.
+ */
+class DateTextCache
+{
+    private static final long MS_PER_DAY = 24L * 60 * 60 * 1000;
+
+    // Number of distinct dates kept, least recently used are dropped
+    private static final int CACHE_SIZE = 512;
+
+    private static final DateTextCache DATES = new DateTextCache(false);
+    private static final DateTextCache DATE_TIMES = new DateTextCache(true);
+
+    private final boolean _withTime;
+    private final Map<Long, String> _texts = new LinkedHashMap<Long, String>(CACHE_SIZE, 0.75f, true)
+    {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, String> eldest)
+        {
+            return size() > CACHE_SIZE;
+        }
+    };
+
+    private Locale _locale;
+    private String _timeZoneId;
+    private TimeZone _timeZone;
+    private DateFormat _format;
+
+    private DateTextCache(boolean withTime)
+    {
+        _withTime = withTime;
+    }
+
+    /**
+     * @return the cache of dates formatted as SimpleDateFormat.getDateInstance()
+     * does, with one entry per day
+     */
+    static DateTextCache dates()
+    {
+        return DATES;
+    }
+
+    /**
+     * @return the cache of dates formatted with their time of day, as
+     * DateFormat.getDateTimeInstance(DEFAULT, DEFAULT) does, with one
+     * entry per distinct time
+     */
+    static DateTextCache dateTimes()
+    {
+        return DATE_TIMES;
+    }
+
+    synchronized String format(long dateMs)
+    {
+        checkDefaults();
+
+        long key = _withTime ? dateMs : dayOf(dateMs);
+
+        String text = _texts.get(key);
+        if(text == null)
+        {
+            text = _format.format(dateMs);
+            _texts.put(key, text);
+        }
+
+        return text;
+    }
+
+    /**
+     * @return the number of the local day the given time falls in.
+     * Without the time of day, all times of a day share the same text.
+     */
+    private long dayOf(long dateMs)
+    {
+        long localMs = dateMs + _timeZone.getOffset(dateMs);
+        long day = localMs / MS_PER_DAY;
+        if(localMs % MS_PER_DAY < 0)
+        {
+            // Round times before 1970 down to the start of their day
+            day--;
+        }
+        return day;
+    }
+
+    private void checkDefaults()
+    {
+        Locale locale = Locale.getDefault();
+        String timeZoneId = TimeZone.getDefault().getID();
+
+        if(locale.equals(_locale) && timeZoneId.equals(_timeZoneId))
+        {
+            return;
+        }
+
+        _locale = locale;
+        _timeZoneId = timeZoneId;
+        _timeZone = TimeZone.getTimeZone(timeZoneId);
+        _format = _withTime ?
+                DateFormat.getDateTimeInstance(DateFormat.DEFAULT, DateFormat.DEFAULT, locale) :
+                DateFormat.getDateInstance(DateFormat.DEFAULT, locale);
+        _format.setTimeZone(_timeZone);
+        _texts.clear();
+    }
+}
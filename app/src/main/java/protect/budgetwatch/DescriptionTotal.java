@@ -0,0 +1,19 @@
+package protect.budgetwatch;
+
+/**
+ * The total of the transactions sharing a description,
+ * as returned by DBHelper.getTopDescriptions().
+ */
+public class DescriptionTotal
+{
+    public final String description; // "" for transactions without a description
+    public final int count;
+    public final long totalCents;
+
+    public DescriptionTotal(final String description, final int count, final long totalCents)
+    {
+        this.description = description;
+        this.count = count;
+        this.totalCents = totalCents;
+    }
+}
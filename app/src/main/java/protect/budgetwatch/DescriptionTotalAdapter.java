@@ -0,0 +1,62 @@
+package protect.budgetwatch;
+
+import android.content.Context;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.ArrayAdapter;
+import android.widget.TextView;
+
+import java.util.List;
+
+class DescriptionTotalAdapter extends ArrayAdapter<DescriptionTotal>
+{
+    private final String NO_DESCRIPTION_NAME;
+    private final String TOTAL_FORMAT;
+
+    public DescriptionTotalAdapter(Context context, List<DescriptionTotal> items)
+    {
+        super(context, 0, items);
+
+        NO_DESCRIPTION_NAME = context.getResources().getString(R.string.noDescriptionName);
+        TOTAL_FORMAT = context.getResources().getString(R.string.descriptionTotalFormat);
+    }
+
+    static class ViewHolder
+    {
+        TextView descriptionName;
+        TextView descriptionTotal;
+    }
+
+    @Override
+    public View getView(int position, View convertView, ViewGroup parent)
+    {
+        // Get the data item for this position
+        DescriptionTotal item = getItem(position);
+
+        ViewHolder holder;
+
+        // Check if an existing view is being reused, otherwise inflate the view
+
+        if (convertView == null)
+        {
+            convertView = LayoutInflater.from(getContext()).inflate(R.layout.description_total_layout,
+                    parent, false);
+
+            holder = new ViewHolder();
+            holder.descriptionName = (TextView) convertView.findViewById(R.id.descriptionName);
+            holder.descriptionTotal = (TextView) convertView.findViewById(R.id.descriptionTotal);
+            convertView.setTag(holder);
+        }
+        else
+        {
+            holder = (ViewHolder)convertView.getTag();
+        }
+
+        holder.descriptionName.setText(item.description.isEmpty() ? NO_DESCRIPTION_NAME : item.description);
+        holder.descriptionTotal.setText(String.format(TOTAL_FORMAT,
+                MoneyUtil.toUnits(item.totalCents), item.count));
+
+        return convertView;
+    }
+}
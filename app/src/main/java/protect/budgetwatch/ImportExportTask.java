@@ -118,7 +118,7 @@ class ImportExportTask extends AsyncTask<Void, Void, Boolean>
     protected Boolean doInBackground(Void... nothing)
     {
         boolean result;
-        final DBHelper db = new DBHelper(activity);
+        final DBHelper db = BudgetWatchApplication.getDatabase(activity);
 
         if(doImport)
         {
@@ -129,8 +129,6 @@ class ImportExportTask extends AsyncTask<Void, Void, Boolean>
             result = performExport(target, db, startTimeMs, endTimeMs);
         }
 
-        db.close();
-
         return result;
     }
 
@@ -18,21 +18,19 @@ import java.util.List;
  */
 public class JsonDatabaseExporter implements DatabaseExporter
 {
-    public void exportData(Context context, DBHelper db, Long startTimeMs, Long endTimeMs, OutputStream outStream, ImportExportProgressUpdater updater) throws IOException, InterruptedException
+    public void exportData(Context context, DBHelper db, Long startTimeMs, Long endTimeMs, OutputStream outStream, final ImportExportProgressUpdater updater) throws IOException, InterruptedException
     {
         OutputStreamWriter stream = new OutputStreamWriter(outStream, Charsets.UTF_8);
         BufferedWriter output = new BufferedWriter(stream);
-        JsonWriter writer = new JsonWriter(output);
+        final JsonWriter writer = new JsonWriter(output);
 
         int numEntries = 0;
 
         List<String> budgetNames = db.getBudgetNames();
         numEntries += budgetNames.size();
 
-        Cursor expenseTransactions = db.getTransactions(DBHelper.TransactionDbIds.EXPENSE, null, null, startTimeMs, endTimeMs);
-        numEntries += expenseTransactions.getCount();
-        Cursor revenueTransactions = db.getTransactions(DBHelper.TransactionDbIds.REVENUE, null, null, startTimeMs, endTimeMs);
-        numEntries += revenueTransactions.getCount();
+        numEntries += db.getTransactionCount(DBHelper.TransactionDbIds.EXPENSE, startTimeMs, endTimeMs);
+        numEntries += db.getTransactionCount(DBHelper.TransactionDbIds.REVENUE, startTimeMs, endTimeMs);
 
         updater.setTotal(numEntries);
 
@@ -41,47 +39,49 @@ public class JsonDatabaseExporter implements DatabaseExporter
             writer.setIndent("   ");
             writer.beginArray();
 
-            for (Cursor cursor : new Cursor[]{
-                db.getTransactions(DBHelper.TransactionDbIds.EXPENSE, null, null, startTimeMs, endTimeMs),
-                db.getTransactions(DBHelper.TransactionDbIds.REVENUE, null, null, startTimeMs, endTimeMs)
-            })
+            for (int type : new int[]{DBHelper.TransactionDbIds.EXPENSE, DBHelper.TransactionDbIds.REVENUE})
             {
-                while (cursor.moveToNext())
+                // Read the transactions a page at a time, so that only
+                // one page is held in memory
+                db.forEachTransaction(DBHelper.TransactionProjections.DETAIL, type, startTimeMs, endTimeMs,
+                        new DBHelper.TransactionHandler()
                 {
-                    Transaction transaction = Transaction.toTransaction(cursor);
-
-                    String receiptFilename = "";
-                    if(transaction.receipt.length() > 0)
-                    {
-                        File receiptFile = new File(transaction.receipt);
-                        receiptFilename = receiptFile.getName();
-                    }
-
-                    writer.beginObject();
-
-                    writer.name("ID").value(transaction.id);
-                    writer.name(DBHelper.TransactionDbIds.TYPE).value(
-                            transaction.type == DBHelper.TransactionDbIds.EXPENSE ?
-                                "EXPENSE" : "REVENUE");
-                    writer.name(DBHelper.TransactionDbIds.DESCRIPTION).value(transaction.description);
-                    writer.name(DBHelper.TransactionDbIds.ACCOUNT).value(transaction.account);
-                    writer.name(DBHelper.TransactionDbIds.BUDGET).value(transaction.budget);
-                    writer.name(DBHelper.TransactionDbIds.VALUE).value(transaction.value);
-                    writer.name(DBHelper.TransactionDbIds.NOTE).value(transaction.note);
-                    writer.name(DBHelper.TransactionDbIds.DATE).value(transaction.dateMs);
-                    writer.name(DBHelper.TransactionDbIds.RECEIPT).value(receiptFilename);
-
-                    writer.endObject();
-
-                    updater.update();
-
-                    if (Thread.currentThread().isInterrupted())
+                    @Override
+                    public void onTransaction(Cursor cursor) throws IOException, InterruptedException
                     {
-                        throw new InterruptedException();
+                        Transaction transaction = Transaction.toTransaction(cursor);
+
+                        String receiptFilename = "";
+                        if(transaction.receipt.length() > 0)
+                        {
+                            File receiptFile = new File(transaction.receipt);
+                            receiptFilename = receiptFile.getName();
+                        }
+
+                        writer.beginObject();
+
+                        writer.name("ID").value(transaction.id);
+                        writer.name(DBHelper.TransactionDbIds.TYPE).value(
+                                transaction.type == DBHelper.TransactionDbIds.EXPENSE ?
+                                    "EXPENSE" : "REVENUE");
+                        writer.name(DBHelper.TransactionDbIds.DESCRIPTION).value(transaction.description);
+                        writer.name(DBHelper.TransactionDbIds.ACCOUNT).value(transaction.account);
+                        writer.name(DBHelper.TransactionDbIds.BUDGET).value(transaction.budget);
+                        writer.name(DBHelper.TransactionDbIds.VALUE).value(MoneyUtil.toDecimal(transaction.valueCents));
+                        writer.name(DBHelper.TransactionDbIds.NOTE).value(transaction.note);
+                        writer.name(DBHelper.TransactionDbIds.DATE).value(transaction.dateMs);
+                        writer.name(DBHelper.TransactionDbIds.RECEIPT).value(receiptFilename);
+
+                        writer.endObject();
+
+                        updater.update();
+
+                        if (Thread.currentThread().isInterrupted())
+                        {
+                            throw new InterruptedException();
+                        }
                     }
-                }
-
-                cursor.close();
+                });
             }
 
 
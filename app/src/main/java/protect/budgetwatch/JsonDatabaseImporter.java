@@ -1,7 +1,6 @@
 package protect.budgetwatch;
 
 import android.content.Context;
-import android.database.sqlite.SQLiteDatabase;
 import android.os.Environment;
 import android.util.JsonReader;
 import android.util.JsonToken;
@@ -12,6 +11,7 @@ import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.math.BigDecimal;
 
 /**
  * Class for importing a database from JSON formatted data.
@@ -23,8 +23,7 @@ public class JsonDatabaseImporter implements DatabaseImporter
         InputStreamReader reader = new InputStreamReader(input, Charsets.UTF_8);
         JsonReader parser = new JsonReader(reader);
 
-        SQLiteDatabase database = db.getWritableDatabase();
-        database.beginTransaction();
+        DBHelper.BulkInserter inserter = db.beginBulkInsert();
 
         try
         {
@@ -40,7 +39,7 @@ public class JsonDatabaseImporter implements DatabaseImporter
                 String description = null;
                 String account = null;
                 String budget = null;
-                Double value = null;
+                String value = null;
                 String note = null;
                 Long dateMs = null;
                 String receiptFilename = null;
@@ -69,7 +68,9 @@ public class JsonDatabaseImporter implements DatabaseImporter
                             budget = parser.nextString();
                             break;
                         case DBHelper.TransactionDbIds.VALUE:
-                            value = parser.nextDouble();
+                            // Read as a string so that the value is
+                            // not rounded through a double
+                            value = parser.nextString();
                             break;
                         case DBHelper.TransactionDbIds.NOTE:
                             note = parser.nextString();
@@ -93,11 +94,11 @@ public class JsonDatabaseImporter implements DatabaseImporter
                 switch (type)
                 {
                     case "BUDGET":
-                        importBudget(database, db, name, value);
+                        importBudget(inserter, name, value);
                         break;
                     case "EXPENSE":
                     case "REVENUE":
-                        importTransaction(context, database, db, id, type, description, account, budget, value, note, dateMs, receiptFilename);
+                        importTransaction(context, inserter, id, type, description, account, budget, value, note, dateMs, receiptFilename);
                         break;
                     default:
                         throw new FormatException("Issue parsing JSON data, unexpected type: " + type);
@@ -124,7 +125,7 @@ public class JsonDatabaseImporter implements DatabaseImporter
 
             // Do not close the parser, as it will close the input stream;
             // Closing the input stream is the responsibility of the caller.
-            database.setTransactionSuccessful();
+            inserter.setSuccessful();
         }
         catch(IllegalArgumentException e)
         {
@@ -132,8 +133,7 @@ public class JsonDatabaseImporter implements DatabaseImporter
         }
         finally
         {
-            database.endTransaction();
-            database.close();
+            inserter.end();
         }
     }
 
@@ -141,9 +141,9 @@ public class JsonDatabaseImporter implements DatabaseImporter
      * Import a single transaction into the database using the given
      * session.
      */
-    private void importTransaction(Context context, SQLiteDatabase database, DBHelper helper,
+    private void importTransaction(Context context, DBHelper.BulkInserter inserter,
                                    Integer id, String typeStr, String description, String account,
-                                   String budget, Double value, String note, Long dateMs,
+                                   String budget, String value, String note, Long dateMs,
                                    String receiptFilename)
             throws FormatException
     {
@@ -166,6 +166,16 @@ public class JsonDatabaseImporter implements DatabaseImporter
             throw new FormatException("Missing required data in JSON record");
         }
 
+        long valueCents;
+        try
+        {
+            valueCents = MoneyUtil.toCents(value);
+        }
+        catch(NumberFormatException e)
+        {
+            throw new FormatException("Failed to parse value: " + value, e);
+        }
+
         // All the other fields can be blank strings if they are missing.
 
         description = (description != null ? description : "");
@@ -188,14 +198,14 @@ public class JsonDatabaseImporter implements DatabaseImporter
             }
         }
 
-        helper.insertTransaction(database, id, type, description, account, budget, value, note, dateMs, receipt);
+        inserter.insertTransaction(id, type, description, account, budget, valueCents, note, dateMs, receipt);
     }
 
     /**
      * Import a single budget into the database using the given
      * session.
      */
-    private void importBudget(SQLiteDatabase database, DBHelper helper, String name, Double value)
+    private void importBudget(DBHelper.BulkInserter inserter, String name, String value)
             throws FormatException
     {
         // Check that both fields exist
@@ -205,6 +215,16 @@ public class JsonDatabaseImporter implements DatabaseImporter
             throw new FormatException("Missing required data in JSON record");
         }
 
-        helper.insertBudget(database, name, value.intValue());
+        int max;
+        try
+        {
+            max = new BigDecimal(value).intValue();
+        }
+        catch(NumberFormatException e)
+        {
+            throw new FormatException("Failed to parse value: " + value, e);
+        }
+
+        inserter.insertBudget(name, max);
     }
 }
@@ -49,6 +49,8 @@ public class MainActivity extends AppCompatActivity
                 R.string.budgetDescription));
         menuItems.add(new MainMenuItem(R.drawable.transaction, R.string.transactionsTitle,
                 R.string.transactionsDescription));
+        menuItems.add(new MainMenuItem(R.drawable.purchase_order, R.string.accountsTitle,
+                R.string.accountsDescription));
 
         final ListView buttonList = (ListView) findViewById(R.id.list);
         final MenuAdapter buttonListAdapter = new MenuAdapter(this, menuItems);
@@ -75,6 +77,9 @@ public class MainActivity extends AppCompatActivity
                     case R.string.transactionsTitle:
                         goalClass = TransactionActivity.class;
                         break;
+                    case R.string.accountsTitle:
+                        goalClass = AccountActivity.class;
+                        break;
                     default:
                         Log.w(TAG, "Unexpected menu text id: " + item.menuTextId);
                         break;
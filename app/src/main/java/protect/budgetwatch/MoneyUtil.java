@@ -0,0 +1,104 @@
+package protect.budgetwatch;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Conversions between monetary values and the whole number of
+ * cents (hundredths) they are stored as in the database.
+ */
+class MoneyUtil
+{
+    private static final int CENTS_PER_UNIT = 100;
+    private static final int CENTS_DIGITS = 2;
+
+    /**
+     * Convert a value to cents, rounding to the nearest cent.
+     */
+    public static long toCents(double value)
+    {
+        return toCents(BigDecimal.valueOf(value));
+    }
+
+    /**
+     * Convert a decimal string, such as "12.34", to cents, rounding
+     * to the nearest cent.
+     *
+     * @throws NumberFormatException if the string is not a valid
+     * number or is too large to be represented
+     */
+    public static long toCents(String value) throws NumberFormatException
+    {
+        return toCents(new BigDecimal(value.trim()));
+    }
+
+    private static long toCents(BigDecimal value) throws NumberFormatException
+    {
+        try
+        {
+            return value.movePointRight(CENTS_DIGITS)
+                    .setScale(0, RoundingMode.HALF_UP)
+                    .longValueExact();
+        }
+        catch(ArithmeticException e)
+        {
+            throw new NumberFormatException("Value out of range: " + value);
+        }
+    }
+
+    /**
+     * @return the value of the given cents in whole units, e.g. 1234 as 12.34
+     */
+    public static double toUnits(long cents)
+    {
+        return (double)cents / CENTS_PER_UNIT;
+    }
+
+    /**
+     * Append the value of the given cents in whole units with two
+     * decimal places, e.g. 1234 as 12.34, as String.format(Locale.US, "%.2f")
+     * would of toUnits(cents) but without any intermediate objects.
+     *
+     * @return the given builder
+     */
+    public static StringBuilder appendUnits(StringBuilder builder, long cents)
+    {
+        long units = cents / CENTS_PER_UNIT;
+        int fraction = (int)Math.abs(cents % CENTS_PER_UNIT);
+
+        // The sign of values between -1 and 0 is lost from the units
+        if(cents < 0 && units == 0)
+        {
+            builder.append('-');
+        }
+
+        builder.append(units).append('.');
+        if(fraction < 10)
+        {
+            builder.append('0');
+        }
+        return builder.append(fraction);
+    }
+
+    /**
+     * @return the exact decimal value of the given cents, e.g. 1234 as 12.34
+     */
+    public static BigDecimal toDecimal(long cents)
+    {
+        return BigDecimal.valueOf(cents, CENTS_DIGITS);
+    }
+
+    /**
+     * @return the given cents in whole units, rounded up, e.g. 1201 as 13
+     * and -1299 as -12
+     */
+    public static int toUnitsRoundedUp(long cents)
+    {
+        long units = cents / CENTS_PER_UNIT;
+        if(cents % CENTS_PER_UNIT > 0)
+        {
+            units++;
+        }
+        return (int)units;
+    }
+}
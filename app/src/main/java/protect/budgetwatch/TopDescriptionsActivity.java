@@ -0,0 +1,53 @@
+package protect.budgetwatch;
+
+import android.os.Bundle;
+import android.widget.ListAdapter;
+
+import java.util.List;
+
+/**
+ * Lists the descriptions with the largest expenses during a date range,
+ * either of one budget or of all budgets.
+ */
+public class TopDescriptionsActivity extends DateRangeListActivity<List<DescriptionTotal>>
+{
+    // Number of descriptions listed
+    private final static int TOP_DESCRIPTIONS = 25;
+
+    private String _budget;
+
+    public TopDescriptionsActivity()
+    {
+        super("budgetStart", "budgetEnd", R.string.noTopDescriptions);
+    }
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState)
+    {
+        super.onCreate(savedInstanceState);
+
+        final Bundle b = getIntent().getExtras();
+        _budget = b != null ? b.getString("budget", null) : null;
+
+        if(_budget != null)
+        {
+            setTitle(String.format(getResources().getString(R.string.topDescriptionsForBudgetTitle), _budget));
+        }
+        else
+        {
+            setTitle(R.string.topDescriptions);
+        }
+    }
+
+    @Override
+    List<DescriptionTotal> load(DBHelper db, long startMs, long endMs)
+    {
+        return db.getTopDescriptions(DBHelper.TransactionDbIds.EXPENSE, _budget, startMs, endMs, TOP_DESCRIPTIONS);
+    }
+
+    @Override
+    ListAdapter createAdapter(List<DescriptionTotal> totals)
+    {
+        return new DescriptionTotalAdapter(this, totals);
+    }
+}
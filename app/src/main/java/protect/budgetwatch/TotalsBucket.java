@@ -0,0 +1,26 @@
+package protect.budgetwatch;
+
+/**
+ * The expenses and revenues during one day, week or month,
+ * as returned by DBHelper.getTotalsByBucket().
+ */
+public class TotalsBucket
+{
+    // Sizes of bucket
+    public static final int DAY = 1;
+    public static final int WEEK = 2;
+    public static final int MONTH = 3;
+
+    public final long startMs;
+    public final long endMs;
+    public final long expenseCents;
+    public final long revenueCents;
+
+    public TotalsBucket(final long startMs, final long endMs, final long expenseCents, final long revenueCents)
+    {
+        this.startMs = startMs;
+        this.endMs = endMs;
+        this.expenseCents = expenseCents;
+        this.revenueCents = revenueCents;
+    }
+}
@@ -10,12 +10,13 @@ public class Transaction
     public final String account;
     public final String budget;
     public final double value;
+    public final long valueCents;
     public final String note;
     public final long dateMs;
     public final String receipt;
 
     private Transaction(final int id, final int type, final String description, final String account,
-                       final String budget, final double value, final String note, final long dateMs,
+                       final String budget, final long valueCents, final String note, final long dateMs,
                        final String receipt)
     {
         this.id = id;
@@ -23,7 +24,8 @@ public class Transaction
         this.description = description;
         this.account = account;
         this.budget = budget;
-        this.value = value;
+        this.value = MoneyUtil.toUnits(valueCents);
+        this.valueCents = valueCents;
         this.note = note;
         this.dateMs = dateMs;
         this.receipt = receipt;
@@ -48,13 +50,13 @@ public class Transaction
         String description = cursor.getString(cursor.getColumnIndexOrThrow(DBHelper.TransactionDbIds.DESCRIPTION));
         String account = cursor.getString(cursor.getColumnIndexOrThrow(DBHelper.TransactionDbIds.ACCOUNT));
         String budget = cursor.getString(cursor.getColumnIndexOrThrow(DBHelper.TransactionDbIds.BUDGET));
-        double value = cursor.getDouble(cursor.getColumnIndexOrThrow(DBHelper.TransactionDbIds.VALUE));
+        long valueCents = cursor.getLong(cursor.getColumnIndexOrThrow(DBHelper.TransactionDbIds.VALUE));
         String note = cursor.getString(cursor.getColumnIndexOrThrow(DBHelper.TransactionDbIds.NOTE));
         long dateMs = cursor.getLong(cursor.getColumnIndexOrThrow(DBHelper.TransactionDbIds.DATE));
         String receipt = cursor.getString(cursor.getColumnIndexOrThrow(DBHelper.TransactionDbIds.RECEIPT));
 
         return new Transaction(id, type, toBlankIfNull(description), toBlankIfNull(account),
-                toBlankIfNull(budget), value, toBlankIfNull(note), dateMs,
+                toBlankIfNull(budget), valueCents, toBlankIfNull(note), dateMs,
                 toBlankIfNull(receipt));
     }
-}
\ No newline at end of file
+}
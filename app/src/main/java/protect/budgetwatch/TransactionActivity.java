@@ -14,12 +14,15 @@ import androidx.appcompat.app.ActionBar;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.appcompat.widget.Toolbar;
 import androidx.appcompat.widget.SearchView;
+import androidx.fragment.app.Fragment;
 import android.util.Log;
 import android.view.Menu;
 import android.view.MenuItem;
 import android.view.View;
 import android.widget.DatePicker;
 
+import java.util.Objects;
+
 public class TransactionActivity extends AppCompatActivity
 {
     private TransactionDatabaseChangedReceiver _dbChanged;
@@ -27,6 +30,9 @@ public class TransactionActivity extends AppCompatActivity
 
     private boolean _currentlySearching = false;
 
+    // The search of the transactions being shown, or null if all are shown
+    private String _displayedSearch = null;
+
     @Override
     protected void onCreate(Bundle savedInstanceState)
     {
@@ -50,6 +56,8 @@ public class TransactionActivity extends AppCompatActivity
 
     private void resetView(String search)
     {
+        _displayedSearch = search;
+
         TabLayout tabLayout = (TabLayout) findViewById(R.id.tabLayout);
         tabLayout.removeAllTabs();
         tabLayout.addTab(tabLayout.newTab().setText(R.string.expensesTitle));
@@ -100,7 +108,28 @@ public class TransactionActivity extends AppCompatActivity
                 search = getIntent().getStringExtra(SearchManager.QUERY);
             }
 
-            resetView(search);
+            if(Objects.equals(search, _displayedSearch))
+            {
+                // The same transactions are listed, so only the tabs of the
+                // types which changed are read again, and within them only
+                // the rows which changed are updated
+                for(Fragment fragment : getSupportFragmentManager().getFragments())
+                {
+                    if(fragment instanceof TransactionFragment)
+                    {
+                        TransactionFragment transactions = (TransactionFragment)fragment;
+                        if(_dbChanged.hasChanged(transactions.getTransactionType()))
+                        {
+                            transactions.refresh();
+                        }
+                    }
+                }
+            }
+            else
+            {
+                resetView(search);
+            }
+
             _dbChanged.reset();
         }
     }
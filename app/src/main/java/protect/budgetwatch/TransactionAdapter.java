@@ -0,0 +1,313 @@
+package protect.budgetwatch;
+
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.ImageView;
+import android.widget.TextView;
+
+import androidx.recyclerview.widget.DiffUtil;
+import androidx.recyclerview.widget.RecyclerView;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Shows a list of transactions, read a page at a time from a
+ * TransactionPageSource as the list is scrolled. Pages are read
+ * in the background by a DatabaseLoader.
+ */
+class TransactionAdapter extends RecyclerView.Adapter<TransactionAdapter.ViewHolder>
+{
+    // Number of transactions read from the database at a time
+    static final int PAGE_SIZE = 100;
+
+    // When the last visible row is this close to the end of the
+    // loaded rows, the next page is read
+    static final int PREFETCH_DISTANCE = 20;
+
+    interface OnTransactionClickListener
+    {
+        void onTransactionClick(TransactionRow transaction);
+    }
+
+    /**
+     * Receives notice on the main thread each time transactions were
+     * read and shown.
+     */
+    interface OnLoadedListener
+    {
+        void onTransactionsLoaded();
+    }
+
+    private final TransactionPageSource _source;
+    private final OnTransactionClickListener _listener;
+    private final List<TransactionRow> _rows = new ArrayList<>();
+    private boolean _hasMore = true;
+    private OnLoadedListener _loadedListener;
+    private DatabaseLoader.Load _loading;
+
+    public TransactionAdapter(TransactionPageSource source, OnTransactionClickListener listener)
+    {
+        _source = source;
+        _listener = listener;
+        setHasStableIds(true);
+    }
+
+    static class ViewHolder extends RecyclerView.ViewHolder
+    {
+        TextView nameField;
+        TextView valueField;
+        TextView dateField;
+        TextView budgetField;
+        ImageView receiptIcon;
+        TextView note;
+        View noteLayout;
+
+        ViewHolder(View view)
+        {
+            super(view);
+            nameField = (TextView) view.findViewById(R.id.name);
+            valueField = (TextView) view.findViewById(R.id.value);
+            dateField = (TextView) view.findViewById(R.id.date);
+            budgetField = (TextView) view.findViewById(R.id.budget);
+            receiptIcon = (ImageView) view.findViewById(R.id.receiptIcon);
+            note = (TextView) view.findViewById(R.id.note);
+            noteLayout = view.findViewById(R.id.noteLayout);
+        }
+    }
+
+    private static class Refresh
+    {
+        List<TransactionRow> rows;
+        DiffUtil.DiffResult diff;
+    }
+
+    public void setOnLoadedListener(OnLoadedListener listener)
+    {
+        _loadedListener = listener;
+    }
+
+    /**
+     * @return true while transactions are being read in the background
+     */
+    public boolean isLoading()
+    {
+        return _loading != null && _loading.isFinished() == false;
+    }
+
+    /**
+     * Stop reading transactions, dropping what was read so far.
+     */
+    public void cancel()
+    {
+        if(_loading != null)
+        {
+            _loading.cancel();
+        }
+    }
+
+    private void notifyLoaded()
+    {
+        if(_loadedListener != null)
+        {
+            _loadedListener.onTransactionsLoaded();
+        }
+    }
+
+    /**
+     * Replace any loaded transactions with the first page.
+     */
+    public void loadFirstPage()
+    {
+        cancel();
+
+        _loading = DatabaseLoader.load(new DatabaseLoader.Query<List<TransactionRow>>()
+        {
+            @Override
+            public List<TransactionRow> load()
+            {
+                return _source.loadPage(null, PAGE_SIZE);
+            }
+        }, new DatabaseLoader.Callback<List<TransactionRow>>()
+        {
+            @Override
+            public void onLoaded(List<TransactionRow> page)
+            {
+                _rows.clear();
+                _rows.addAll(page);
+                _hasMore = page.size() == PAGE_SIZE;
+                notifyDataSetChanged();
+                notifyLoaded();
+            }
+        });
+    }
+
+    /**
+     * Read the next page of transactions if the given row is near
+     * the end of those loaded so far.
+     *
+     * @param lastVisiblePosition
+     *      position of the last row shown in the list
+     */
+    public void loadMoreIfNear(int lastVisiblePosition)
+    {
+        if(isLoading() || _hasMore == false || lastVisiblePosition < _rows.size() - PREFETCH_DISTANCE)
+        {
+            return;
+        }
+
+        final TransactionRow last = _rows.isEmpty() ? null : _rows.get(_rows.size() - 1);
+
+        _loading = DatabaseLoader.load(new DatabaseLoader.Query<List<TransactionRow>>()
+        {
+            @Override
+            public List<TransactionRow> load()
+            {
+                return _source.loadPage(last, PAGE_SIZE);
+            }
+        }, new DatabaseLoader.Callback<List<TransactionRow>>()
+        {
+            @Override
+            public void onLoaded(List<TransactionRow> page)
+            {
+                int start = _rows.size();
+                _rows.addAll(page);
+                _hasMore = page.size() == PAGE_SIZE;
+                notifyItemRangeInserted(start, page.size());
+                notifyLoaded();
+            }
+        });
+    }
+
+    /**
+     * Read the loaded transactions again after the database changed,
+     * and only update the rows which were added, removed or changed.
+     * The rows are compared in the background as well.
+     */
+    public void refresh()
+    {
+        cancel();
+
+        final int count = Math.max(_rows.size(), PAGE_SIZE);
+        final List<TransactionRow> oldRows = new ArrayList<>(_rows);
+
+        _loading = DatabaseLoader.load(new DatabaseLoader.Query<Refresh>()
+        {
+            @Override
+            public Refresh load()
+            {
+                final Refresh refresh = new Refresh();
+                refresh.rows = _source.loadPage(null, count);
+                refresh.diff = DiffUtil.calculateDiff(new DiffUtil.Callback()
+                {
+                    @Override
+                    public int getOldListSize()
+                    {
+                        return oldRows.size();
+                    }
+
+                    @Override
+                    public int getNewListSize()
+                    {
+                        return refresh.rows.size();
+                    }
+
+                    @Override
+                    public boolean areItemsTheSame(int oldPosition, int newPosition)
+                    {
+                        return oldRows.get(oldPosition).id == refresh.rows.get(newPosition).id;
+                    }
+
+                    @Override
+                    public boolean areContentsTheSame(int oldPosition, int newPosition)
+                    {
+                        return oldRows.get(oldPosition).sameContents(refresh.rows.get(newPosition));
+                    }
+                });
+                return refresh;
+            }
+        }, new DatabaseLoader.Callback<Refresh>()
+        {
+            @Override
+            public void onLoaded(Refresh refresh)
+            {
+                _rows.clear();
+                _rows.addAll(refresh.rows);
+                _hasMore = refresh.rows.size() == count;
+                refresh.diff.dispatchUpdatesTo(TransactionAdapter.this);
+                notifyLoaded();
+            }
+        });
+    }
+
+    public TransactionRow getItem(int position)
+    {
+        return _rows.get(position);
+    }
+
+    @Override
+    public int getItemCount()
+    {
+        return _rows.size();
+    }
+
+    @Override
+    public long getItemId(int position)
+    {
+        return _rows.get(position).id;
+    }
+
+    @Override
+    public ViewHolder onCreateViewHolder(ViewGroup parent, int viewType)
+    {
+        View view = LayoutInflater.from(parent.getContext()).inflate(R.layout.transaction_layout, parent, false);
+        final ViewHolder holder = new ViewHolder(view);
+
+        view.setOnClickListener(new View.OnClickListener()
+        {
+            @Override
+            public void onClick(View v)
+            {
+                int position = holder.getAdapterPosition();
+                if(position != RecyclerView.NO_POSITION && _listener != null)
+                {
+                    _listener.onTransactionClick(_rows.get(position));
+                }
+            }
+        });
+
+        return holder;
+    }
+
+    @Override
+    public void onBindViewHolder(ViewHolder holder, int position)
+    {
+        TransactionRow transaction = _rows.get(position);
+
+        holder.nameField.setText(transaction.description);
+        holder.valueField.setText(transaction.valueText);
+        holder.budgetField.setText(transaction.budget);
+        holder.dateField.setText(transaction.dateText);
+
+        if(transaction.hasReceipt)
+        {
+            holder.receiptIcon.setVisibility(View.VISIBLE);
+        }
+        else
+        {
+            holder.receiptIcon.setVisibility(View.GONE);
+        }
+
+        if(transaction.note == null || transaction.note.isEmpty())
+        {
+            holder.noteLayout.setVisibility(View.GONE);
+            holder.note.setText("");
+        }
+        else
+        {
+            holder.noteLayout.setVisibility(View.VISIBLE);
+            holder.note.setText(transaction.note);
+        }
+    }
+}
@@ -4,21 +4,43 @@ import android.content.BroadcastReceiver;
 import android.content.Context;
 import android.content.Intent;
 
+import java.util.HashSet;
+import java.util.Set;
+
 /**
  * This Broadcast Receiver helps one determine if the transactions
  * database has changed since the receiver was created or was
- * last reset.
+ * last reset, and which types of transactions changed.
  */
 public class TransactionDatabaseChangedReceiver extends BroadcastReceiver
 {
     public static final String ACTION_DATABASE_CHANGED = "protect.budgetwatch.TRANSACTION_DATABASE_CHANGED";
 
+    // Types of the transactions which changed, as DBHelper.TransactionDbIds.TYPE.
+    // Missing if transactions of any type may have changed.
+    public static final String EXTRA_TRANSACTION_TYPES = "transactionTypes";
+
     private boolean _hasChanged = false;
+    private boolean _allTypesChanged = false;
+    private final Set<Integer> _changedTypes = new HashSet<>();
 
     @Override
     public void onReceive(Context context, Intent intent)
     {
         _hasChanged = true;
+
+        int [] types = intent.getIntArrayExtra(EXTRA_TRANSACTION_TYPES);
+        if(types == null)
+        {
+            _allTypesChanged = true;
+        }
+        else
+        {
+            for(int type : types)
+            {
+                _changedTypes.add(type);
+            }
+        }
     }
 
     public boolean hasChanged()
@@ -26,8 +48,18 @@ public class TransactionDatabaseChangedReceiver extends BroadcastReceiver
         return _hasChanged;
     }
 
+    /**
+     * @return true if transactions of the given type may have changed
+     */
+    public boolean hasChanged(int type)
+    {
+        return _allTypesChanged || _changedTypes.contains(type);
+    }
+
     public void reset()
     {
         _hasChanged = false;
+        _allTypesChanged = false;
+        _changedTypes.clear();
     }
-}
\ No newline at end of file
+}
@@ -1,23 +1,29 @@
 package protect.budgetwatch;
 
 import android.content.Intent;
-import android.database.Cursor;
 import android.os.Bundle;
+import androidx.annotation.NonNull;
 import androidx.fragment.app.Fragment;
-import android.util.Log;
+import androidx.recyclerview.widget.DividerItemDecoration;
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
-import android.widget.AdapterView;
-import android.widget.ListView;
+import android.widget.ProgressBar;
 import android.widget.TextView;
 
 public class TransactionFragment extends Fragment
 {
-    private final static String TAG = "BudgetWatch";
-
     private int _transactionType;
     private DBHelper _db;
+    private String _budgetToDisplay;
+    private String _searchToUse;
+
+    private RecyclerView _listView;
+    private TextView _helpText;
+    private ProgressBar _loading;
+    private TransactionAdapter _adapter;
 
     @Override
     public View onCreateView(LayoutInflater inflater, ViewGroup container, Bundle savedInstanceState)
@@ -29,82 +35,33 @@ public class TransactionFragment extends Fragment
         }
 
         _transactionType = arguments.getInt("type");
-        _db = new DBHelper(getContext());
+        _db = BudgetWatchApplication.getDatabase(getContext());
 
         // If a budget has been passed then only transactions from that budget
         // will be displayed. Otherwise, all transactions wil be displayed.
         final Bundle b = getActivity().getIntent().getExtras();
-        final String budgetToDisplay = b != null ? b.getString("budget", null) : null;
+        _budgetToDisplay = b != null ? b.getString("budget", null) : null;
 
         // If a search has been passed in that will further filter what is displayed
-        final String searchToUse = arguments.getString("search", null);
+        _searchToUse = arguments.getString("search", null);
 
-        View layout = inflater.inflate(R.layout.list_layout, container, false);
-        ListView listView = (ListView) layout.findViewById(R.id.list);
-        final TextView helpText = (TextView) layout.findViewById(R.id.helpText);
+        View layout = inflater.inflate(R.layout.transaction_list_layout, container, false);
+        _listView = (RecyclerView) layout.findViewById(R.id.list);
+        _helpText = (TextView) layout.findViewById(R.id.helpText);
+        _loading = (ProgressBar) layout.findViewById(R.id.loading);
 
-        Cursor cursor = _db.getTransactions(_transactionType, budgetToDisplay, searchToUse, null, null);
+        final LinearLayoutManager layoutManager = new LinearLayoutManager(getContext());
+        _listView.setLayoutManager(layoutManager);
+        _listView.addItemDecoration(new DividerItemDecoration(getContext(), DividerItemDecoration.VERTICAL));
 
-        if(cursor.getCount() > 0)
-        {
-            listView.setVisibility(View.VISIBLE);
-            helpText.setVisibility(View.GONE);
-        }
-        else
-        {
-            listView.setVisibility(View.GONE);
-            helpText.setVisibility(View.VISIBLE);
-
-            String message;
-
-            if(searchToUse == null)
-            {
-                if(budgetToDisplay == null)
-                {
-                    int stringId = (_transactionType == DBHelper.TransactionDbIds.EXPENSE) ?
-                            R.string.noExpenses : R.string.noRevenues;
-                    message = getResources().getString(stringId);
-                }
-                else
-                {
-                    int stringId = (_transactionType == DBHelper.TransactionDbIds.EXPENSE) ?
-                            R.string.noExpensesForBudget : R.string.noRevenuesForBudget;
-                    String base = getResources().getString(stringId);
-                    message = String.format(base, budgetToDisplay);
-                }
-            }
-            else
-            {
-                int stringId = (_transactionType == DBHelper.TransactionDbIds.EXPENSE) ?
-                        R.string.searchEmptyExpenses : R.string.searchEmptyRevenues;
-                message = getResources().getString(stringId);
-
-                getResources().getString(stringId);
-            }
-
-            helpText.setText(message);
-        }
-
-        final TransactionCursorAdapter adapter = new TransactionCursorAdapter(getContext(), cursor);
-        listView.setAdapter(adapter);
-
-        registerForContextMenu(listView);
-
-        listView.setOnItemClickListener(new AdapterView.OnItemClickListener()
+        TransactionPageSource source = new TransactionPageSource(_db, _transactionType,
+                _budgetToDisplay, _searchToUse);
+        _adapter = new TransactionAdapter(source, new TransactionAdapter.OnTransactionClickListener()
         {
             @Override
-            public void onItemClick(AdapterView<?> parent, View view, int position, long id)
+            public void onTransactionClick(TransactionRow transaction)
             {
-                Cursor selected = (Cursor)parent.getItemAtPosition(position);
-                if(selected == null)
-                {
-                    Log.w(TAG, "Clicked transaction at position " + position + " is null");
-                    return;
-                }
-
-                Transaction transaction = Transaction.toTransaction(selected);
-
-                Intent i = new Intent(view.getContext(), TransactionViewActivity.class);
+                Intent i = new Intent(getContext(), TransactionViewActivity.class);
                 final Bundle b = new Bundle();
                 b.putInt("id", transaction.id);
                 b.putInt("type", _transactionType);
@@ -113,6 +70,34 @@ public class TransactionFragment extends Fragment
                 startActivity(i);
             }
         });
+        _listView.setAdapter(_adapter);
+
+        // Read further pages only as the list is scrolled toward them
+        _listView.addOnScrollListener(new RecyclerView.OnScrollListener()
+        {
+            @Override
+            public void onScrolled(@NonNull RecyclerView recyclerView, int dx, int dy)
+            {
+                _adapter.loadMoreIfNear(layoutManager.findLastVisibleItemPosition());
+            }
+        });
+
+        _adapter.setOnLoadedListener(new TransactionAdapter.OnLoadedListener()
+        {
+            @Override
+            public void onTransactionsLoaded()
+            {
+                updateHelpText();
+            }
+        });
+
+        // The transactions are read in the background, until
+        // then only show that they are loading
+        _listView.setVisibility(View.GONE);
+        _helpText.setVisibility(View.GONE);
+        _loading.setVisibility(View.VISIBLE);
+
+        _adapter.loadFirstPage();
 
         return layout;
     }
@@ -120,7 +105,76 @@ public class TransactionFragment extends Fragment
     @Override
     public void onDestroyView()
     {
-        _db.close();
+        // The list is gone, so drop any transactions still being read
+        _adapter.cancel();
+        _adapter = null;
         super.onDestroyView();
     }
-}
\ No newline at end of file
+
+    /**
+     * @return the type of transactions listed, as DBHelper.TransactionDbIds.TYPE
+     */
+    public int getTransactionType()
+    {
+        return _transactionType;
+    }
+
+    /**
+     * Show the changes to the transactions since they were read,
+     * only rebinding the rows which changed.
+     */
+    public void refresh()
+    {
+        if(_adapter == null)
+        {
+            return;
+        }
+
+        _adapter.refresh();
+    }
+
+    private void updateHelpText()
+    {
+        _loading.setVisibility(View.GONE);
+
+        // The first page was read, so it shows whether there are any
+        // transactions. Without a search, an empty list is known from
+        // the maintained counts before any page is queried.
+        if(_adapter.getItemCount() > 0)
+        {
+            _listView.setVisibility(View.VISIBLE);
+            _helpText.setVisibility(View.GONE);
+            return;
+        }
+
+        _listView.setVisibility(View.GONE);
+        _helpText.setVisibility(View.VISIBLE);
+
+        String message;
+
+        if(_searchToUse == null)
+        {
+            if(_budgetToDisplay == null)
+            {
+                int stringId = (_transactionType == DBHelper.TransactionDbIds.EXPENSE) ?
+                        R.string.noExpenses : R.string.noRevenues;
+                message = getResources().getString(stringId);
+            }
+            else
+            {
+                int stringId = (_transactionType == DBHelper.TransactionDbIds.EXPENSE) ?
+                        R.string.noExpensesForBudget : R.string.noRevenuesForBudget;
+                String base = getResources().getString(stringId);
+                message = String.format(base, _budgetToDisplay);
+            }
+        }
+        else
+        {
+            int stringId = (_transactionType == DBHelper.TransactionDbIds.EXPENSE) ?
+                    R.string.searchEmptyExpenses : R.string.searchEmptyRevenues;
+            message = getResources().getString(stringId);
+        }
+
+        _helpText.setText(message);
+    }
+}
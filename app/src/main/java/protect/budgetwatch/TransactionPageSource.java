@@ -0,0 +1,80 @@
+package protect.budgetwatch;
+
+import android.database.Cursor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads the transactions of one transaction list a page at a time,
+ * in the order DBHelper.getTransactions() returns them.
+ */
+class TransactionPageSource
+{
+    private final DBHelper _db;
+    private final int _type;
+    private final String _budget;
+    private final String _search;
+
+    /**
+     * @param budget
+     *      if not null, only transactions of this budget are listed
+     * @param search
+     *      if not null, only transactions matching this search are listed
+     */
+    TransactionPageSource(DBHelper db, int type, String budget, String search)
+    {
+        _db = db;
+        _type = type;
+        _budget = budget;
+        _search = search;
+    }
+
+    /**
+     * Read the page of transactions following a row.
+     *
+     * @param after
+     *      the last row of the previous page, or null for the first page
+     * @param pageSize
+     *      the most rows to read. If fewer are returned, there are
+     *      no more pages.
+     */
+    List<TransactionRow> loadPage(TransactionRow after, int pageSize)
+    {
+        // Without a search, the maintained counts tell if the list is
+        // empty without running the page query at all
+        if(after == null && _search == null && _db.getTransactionCount(_type, _budget) == 0)
+        {
+            return new ArrayList<>();
+        }
+
+        Cursor cursor;
+        if(after == null)
+        {
+            cursor = _db.getTransactionsPage(DBHelper.TransactionProjections.LIST, _type,
+                    _budget, _search, null, null, null, pageSize);
+        }
+        else
+        {
+            cursor = _db.getTransactionsPage(DBHelper.TransactionProjections.LIST, _type,
+                    _budget, _search, after.dateMs, after.id, pageSize);
+        }
+
+        List<TransactionRow> rows = new ArrayList<>(cursor.getCount());
+
+        try
+        {
+            TransactionRow.Reader reader = new TransactionRow.Reader(cursor);
+            while(cursor.moveToNext())
+            {
+                rows.add(reader.read());
+            }
+        }
+        finally
+        {
+            cursor.close();
+        }
+
+        return rows;
+    }
+}
@@ -0,0 +1,36 @@
+package protect.budgetwatch;
+
+import android.database.Cursor;
+
+/**
+ * The receipt of a transaction, read from the columns of
+ * DBHelper.TransactionProjections.RECEIPT.
+ */
+class TransactionReceipt
+{
+    public final int id;
+    public final long dateMs;
+    public final String receipt;
+
+    private TransactionReceipt(final int id, final long dateMs, final String receipt)
+    {
+        this.id = id;
+        this.dateMs = dateMs;
+        this.receipt = receipt;
+    }
+
+    /**
+     * Read the receipt at the current position of a cursor which
+     * selects DBHelper.TransactionProjections.RECEIPT.
+     *
+     * @throws IllegalArgumentException if a column was not selected
+     */
+    static TransactionReceipt toTransactionReceipt(Cursor cursor)
+    {
+        int id = cursor.getInt(cursor.getColumnIndexOrThrow(DBHelper.TransactionDbIds.NAME));
+        long dateMs = cursor.getLong(cursor.getColumnIndexOrThrow(DBHelper.TransactionDbIds.DATE));
+        String receipt = cursor.getString(cursor.getColumnIndexOrThrow(DBHelper.TransactionDbIds.RECEIPT));
+
+        return new TransactionReceipt(id, dateMs, (receipt != null) ? receipt : "");
+    }
+}
@@ -0,0 +1,113 @@
+package protect.budgetwatch;
+
+import android.database.Cursor;
+
+/**
+ * A transaction as shown in a transaction list, read from the columns
+ * of DBHelper.TransactionProjections.LIST.
+ */
+class TransactionRow
+{
+    public final int id;
+    public final String description;
+    public final String budget;
+    public final long valueCents;
+    public final String note;
+    public final long dateMs;
+    public final boolean hasReceipt;
+
+    // Shown forms of valueCents and dateMs, formatted once when the
+    // row is read so binding the row to a view formats nothing
+    public final String valueText;
+    public final String dateText;
+
+    TransactionRow(final int id, final String description, final String budget, final long valueCents,
+                   final String note, final long dateMs, final boolean hasReceipt,
+                   final String valueText, final String dateText)
+    {
+        this.id = id;
+        this.description = description;
+        this.budget = budget;
+        this.valueCents = valueCents;
+        this.note = note;
+        this.dateMs = dateMs;
+        this.hasReceipt = hasReceipt;
+        this.valueText = valueText;
+        this.dateText = dateText;
+    }
+
+    /**
+     * Reads rows from a cursor which selects DBHelper.TransactionProjections.LIST.
+     * The column indices are looked up once, the value formatter is
+     * reused for every row and dates are formatted once per day.
+     * A reader is only used by one thread.
+     */
+    static class Reader
+    {
+        private final Cursor _cursor;
+        private final int _idColumn;
+        private final int _descriptionColumn;
+        private final int _budgetColumn;
+        private final int _valueColumn;
+        private final int _noteColumn;
+        private final int _dateColumn;
+        private final int _hasReceiptColumn;
+
+        private final StringBuilder _valueBuilder = new StringBuilder();
+
+        Reader(Cursor cursor)
+        {
+            _cursor = cursor;
+            _idColumn = cursor.getColumnIndexOrThrow(DBHelper.TransactionDbIds.NAME);
+            _descriptionColumn = cursor.getColumnIndexOrThrow(DBHelper.TransactionDbIds.DESCRIPTION);
+            _budgetColumn = cursor.getColumnIndexOrThrow(DBHelper.TransactionDbIds.BUDGET);
+            _valueColumn = cursor.getColumnIndexOrThrow(DBHelper.TransactionDbIds.VALUE);
+            _noteColumn = cursor.getColumnIndexOrThrow(DBHelper.TransactionDbIds.NOTE);
+            _dateColumn = cursor.getColumnIndexOrThrow(DBHelper.TransactionDbIds.DATE);
+            _hasReceiptColumn = cursor.getColumnIndexOrThrow(DBHelper.TransactionDbIds.HAS_RECEIPT_COLUMN);
+        }
+
+        /**
+         * Read the row at the current position of the cursor.
+         */
+        TransactionRow read()
+        {
+            long valueCents = _cursor.getLong(_valueColumn);
+            long dateMs = _cursor.getLong(_dateColumn);
+
+            _valueBuilder.setLength(0);
+            String valueText = MoneyUtil.appendUnits(_valueBuilder, valueCents).toString();
+
+            return new TransactionRow(
+                    _cursor.getInt(_idColumn),
+                    _cursor.getString(_descriptionColumn),
+                    _cursor.getString(_budgetColumn),
+                    valueCents,
+                    _cursor.getString(_noteColumn),
+                    dateMs,
+                    _cursor.getInt(_hasReceiptColumn) != 0,
+                    valueText,
+                    DateTextCache.dates().format(dateMs));
+        }
+    }
+
+    /**
+     * @return true if the row shows the same as the other row,
+     * so a view bound to one need not be bound to the other
+     */
+    boolean sameContents(TransactionRow other)
+    {
+        return id == other.id &&
+                valueCents == other.valueCents &&
+                dateMs == other.dateMs &&
+                hasReceipt == other.hasReceipt &&
+                equalStrings(description, other.description) &&
+                equalStrings(budget, other.budget) &&
+                equalStrings(note, other.note);
+    }
+
+    private static boolean equalStrings(String a, String b)
+    {
+        return (a == null) ? (b == null) : a.equals(b);
+    }
+}
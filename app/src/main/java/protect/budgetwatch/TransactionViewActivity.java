@@ -34,6 +34,7 @@ import android.widget.ArrayAdapter;
 import android.widget.Button;
 import android.widget.DatePicker;
 import android.widget.EditText;
+import android.widget.ProgressBar;
 import android.widget.Spinner;
 import android.widget.TextView;
 import android.widget.Toast;
@@ -45,7 +46,6 @@ import java.text.DateFormat;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.Calendar;
-import java.util.Date;
 import java.util.GregorianCalendar;
 import java.util.LinkedList;
 import java.util.List;
@@ -61,8 +61,17 @@ public class TransactionViewActivity extends AppCompatActivity
     static final String ACTION_NEW_EXPENSE = "ActionAddExpense";
     static final String ACTION_NEW_REVENUE = "ActionAddRevenue";
 
+    // What the screen shows, as read in the background
+    private static class TransactionLoaded
+    {
+        List<String> budgetNames;
+        Transaction transaction;
+    }
+
     private String capturedUncommittedReceipt = null;
     private DBHelper _db;
+    private DatabaseLoader.Load _loading;
+    private DatabaseLoader.Load _saving;
 
     private EditText _nameEdit;
     private TextView _nameView;
@@ -84,6 +93,8 @@ public class TransactionViewActivity extends AppCompatActivity
     private View _hasReceiptButtonLayout;
     private EditText _dateEdit;
     private Spinner _budgetSpinner;
+    private View _content;
+    private ProgressBar _loadingBar;
 
     private int _transactionId;
     private int _type;
@@ -141,7 +152,7 @@ public class TransactionViewActivity extends AppCompatActivity
             getSupportActionBar().setDisplayHomeAsUpEnabled(true);
         }
 
-        _db = new DBHelper(this);
+        _db = BudgetWatchApplication.getDatabase(this);
 
         _nameEdit = (EditText) findViewById(R.id.nameEdit);
         _nameView = (TextView) findViewById(R.id.nameView);
@@ -163,6 +174,8 @@ public class TransactionViewActivity extends AppCompatActivity
         _hasReceiptButtonLayout = findViewById(R.id.hasReceiptButtonLayout);
         _dateEdit = (EditText) findViewById(R.id.dateEdit);
         _budgetSpinner = (Spinner) findViewById(R.id.budgetSpinner);
+        _content = findViewById(R.id.content);
+        _loadingBar = (ProgressBar) findViewById(R.id.loading);
 
         extractIntentFields(getIntent());
     }
@@ -212,9 +225,7 @@ public class TransactionViewActivity extends AppCompatActivity
         }
 
         final Calendar date = new GregorianCalendar();
-        final DateFormat dateFormatter = SimpleDateFormat.getDateInstance();
-
-        _dateEdit.setText(dateFormatter.format(date.getTime()));
+        _dateEdit.setText(DateTextCache.dates().format(date.getTimeInMillis()));
 
         final DatePickerDialog.OnDateSetListener dateSetListener = new DatePickerDialog.OnDateSetListener()
         {
@@ -222,7 +233,7 @@ public class TransactionViewActivity extends AppCompatActivity
             public void onDateSet(DatePicker view, int year, int month, int day)
             {
                 date.set(year, month, day);
-                _dateEdit.setText(dateFormatter.format(date.getTime()));
+                _dateEdit.setText(DateTextCache.dates().format(date.getTimeInMillis()));
             }
         };
 
@@ -243,8 +254,89 @@ public class TransactionViewActivity extends AppCompatActivity
             }
         });
 
-        List<String> actualBudgetNames = _db.getBudgetNames();
-        LinkedList<String> budgetNames = new LinkedList<>(actualBudgetNames);
+        // The budgets and the transaction are read in the background,
+        // until then only show that they are loading
+        _content.setVisibility(View.GONE);
+        _loadingBar.setVisibility(View.VISIBLE);
+
+        if(_loading != null)
+        {
+            _loading.cancel();
+        }
+
+        final boolean readTransaction = _updateTransaction || _viewTransaction;
+        final int transactionId = _transactionId;
+
+        _loading = DatabaseLoader.load(new DatabaseLoader.Query<TransactionLoaded>()
+        {
+            @Override
+            public TransactionLoaded load()
+            {
+                TransactionLoaded loaded = new TransactionLoaded();
+                loaded.budgetNames = _db.getBudgetNames();
+                loaded.transaction = readTransaction ? _db.getTransaction(transactionId) : null;
+                return loaded;
+            }
+        }, new DatabaseLoader.Callback<TransactionLoaded>()
+        {
+            @Override
+            public void onLoaded(TransactionLoaded loaded)
+            {
+                showTransaction(loaded);
+            }
+        });
+
+        View.OnClickListener captureCallback = new View.OnClickListener()
+        {
+            @Override
+            public void onClick(View v)
+            {
+                if (ContextCompat.checkSelfPermission(TransactionViewActivity.this,
+                        Manifest.permission.CAMERA) == PackageManager.PERMISSION_GRANTED)
+                {
+                    captureReceipt();
+                }
+                else
+                {
+                    ActivityCompat.requestPermissions(TransactionViewActivity.this,
+                            new String[]{Manifest.permission.CAMERA},
+                            PERMISSIONS_REQUEST_CAMERA);
+                }
+            }
+        };
+
+        _captureButton.setOnClickListener(captureCallback);
+        _updateButton.setOnClickListener(captureCallback);
+
+        _viewButton.setOnClickListener(new View.OnClickListener()
+        {
+            @Override
+            public void onClick(View v)
+            {
+                Intent i = new Intent(v.getContext(), ReceiptViewActivity.class);
+                final Bundle b = new Bundle();
+
+                final TextView receiptField = (TextView) findViewById(R.id.receiptLocation);
+
+                String receipt = receiptField.getText().toString();
+                if(capturedUncommittedReceipt != null)
+                {
+                    receipt = capturedUncommittedReceipt;
+                }
+
+                b.putString("receipt", receipt);
+                i.putExtras(b);
+                startActivity(i);
+            }
+        });
+    }
+
+    private void showTransaction(final TransactionLoaded loaded)
+    {
+        _loadingBar.setVisibility(View.GONE);
+        _content.setVisibility(View.VISIBLE);
+
+        LinkedList<String> budgetNames = new LinkedList<>(loaded.budgetNames);
 
         // A user is not allowed to create a blank budget. However, here
         // an empty budget is injected, so that a user can create a
@@ -260,7 +352,7 @@ public class TransactionViewActivity extends AppCompatActivity
 
         if(_updateTransaction || _viewTransaction)
         {
-            Transaction transaction = _db.getTransaction(_transactionId);
+            Transaction transaction = loaded.transaction;
             (_updateTransaction ? _nameEdit : _nameView).setText(transaction.description);
             (_updateTransaction ? _accountEdit : _accountView).setText(transaction.account);
 
@@ -273,7 +365,7 @@ public class TransactionViewActivity extends AppCompatActivity
 
             (_updateTransaction ? _valueEdit : _valueView).setText(String.format(Locale.US, "%.2f", transaction.value));
             (_updateTransaction ? _noteEdit : _noteView).setText(transaction.note);
-            (_updateTransaction ? _dateEdit : _dateView).setText(dateFormatter.format(new Date(transaction.dateMs)));
+            (_updateTransaction ? _dateEdit : _dateView).setText(DateTextCache.dates().format(transaction.dateMs));
             _receiptLocationField.setText(transaction.receipt);
 
             if(_viewTransaction)
@@ -353,54 +445,25 @@ public class TransactionViewActivity extends AppCompatActivity
                 _updateButton.setVisibility(View.VISIBLE);
             }
         }
+    }
 
-        View.OnClickListener captureCallback = new View.OnClickListener()
-        {
-            @Override
-            public void onClick(View v)
-            {
-                if (ContextCompat.checkSelfPermission(TransactionViewActivity.this,
-                        Manifest.permission.CAMERA) == PackageManager.PERMISSION_GRANTED)
-                {
-                    captureReceipt();
-                }
-                else
-                {
-                    ActivityCompat.requestPermissions(TransactionViewActivity.this,
-                            new String[]{Manifest.permission.CAMERA},
-                            PERMISSIONS_REQUEST_CAMERA);
-                }
-            }
-        };
-
-        _captureButton.setOnClickListener(captureCallback);
-        _updateButton.setOnClickListener(captureCallback);
-
-        _viewButton.setOnClickListener(new View.OnClickListener()
-        {
-            @Override
-            public void onClick(View v)
-            {
-                Intent i = new Intent(v.getContext(), ReceiptViewActivity.class);
-                final Bundle b = new Bundle();
-
-                final TextView receiptField = (TextView) findViewById(R.id.receiptLocation);
-
-                String receipt = receiptField.getText().toString();
-                if(capturedUncommittedReceipt != null)
-                {
-                    receipt = capturedUncommittedReceipt;
-                }
-
-                b.putString("receipt", receipt);
-                i.putExtras(b);
-                startActivity(i);
-            }
-        });
+    /**
+     * @return true while the transaction is being read or saved,
+     * when it may not be saved or deleted
+     */
+    private boolean isBusy()
+    {
+        return (_loading != null && _loading.isFinished() == false) ||
+                (_saving != null && _saving.isFinished() == false);
     }
 
     private void doSave()
     {
+        if(isBusy())
+        {
+            return;
+        }
+
         final String name = _nameEdit.getText().toString();
         // name field is optional, so it is OK if it is empty
 
@@ -424,7 +487,8 @@ public class TransactionViewActivity extends AppCompatActivity
         double value;
         try
         {
-            value = Double.parseDouble(valueStr);
+            // Parsed as a decimal and rounded to whole cents, as stored
+            value = MoneyUtil.toUnits(MoneyUtil.toCents(valueStr));
         }
         catch (NumberFormatException e)
         {
@@ -463,19 +527,69 @@ public class TransactionViewActivity extends AppCompatActivity
             capturedUncommittedReceipt = null;
         }
 
-        if(_updateTransaction)
-        {
-            _db.updateTransaction(_transactionId, _type, name, account,
-                    budget, value, note, dateMs, receipt);
+        save(name, account, budget, value, note, dateMs, receipt);
+    }
 
-        }
-        else
+    /**
+     * Insert or update the transaction in the background, and close
+     * the screen once it is written.
+     */
+    private void save(final String name, final String account, final String budget, final double value,
+                      final String note, final long dateMs, final String receipt)
+    {
+        final boolean updateTransaction = _updateTransaction;
+        final int transactionId = _transactionId;
+        final int type = _type;
+
+        _saving = DatabaseLoader.load(new DatabaseLoader.Query<Boolean>()
         {
-            _db.insertTransaction(_type, name, account, budget,
-                    value, note, dateMs, receipt);
-        }
+            @Override
+            public Boolean load()
+            {
+                if(updateTransaction)
+                {
+                    return _db.updateTransaction(transactionId, type, name, account,
+                            budget, value, note, dateMs, receipt);
+                }
+                else
+                {
+                    return _db.insertTransaction(type, name, account, budget,
+                            value, note, dateMs, receipt);
+                }
+            }
+        }, new DatabaseLoader.Callback<Boolean>()
+        {
+            @Override
+            public void onLoaded(Boolean saved)
+            {
+                finish();
+            }
+        });
+    }
 
-        finish();
+    /**
+     * Delete the transaction in the background, and close the
+     * screen once it is deleted.
+     */
+    private void delete()
+    {
+        final int transactionId = _transactionId;
+
+        _saving = DatabaseLoader.load(new DatabaseLoader.Query<Boolean>()
+        {
+            @Override
+            public Boolean load()
+            {
+                return _db.deleteTransaction(transactionId);
+            }
+        }, new DatabaseLoader.Callback<Boolean>()
+        {
+            @Override
+            public void onLoaded(Boolean deleted)
+            {
+                finish();
+            }
+        });
     }
 
     private void captureReceipt()
@@ -533,6 +647,12 @@ public class TransactionViewActivity extends AppCompatActivity
     @Override
     protected void onDestroy()
     {
+        // Saves and deletes are left to finish, only the read is dropped
+        if(_loading != null)
+        {
+            _loading.cancel();
+        }
+
         if(capturedUncommittedReceipt != null)
         {
             // The receipt was captured but never used
@@ -545,8 +665,6 @@ public class TransactionViewActivity extends AppCompatActivity
             capturedUncommittedReceipt = null;
         }
 
-        _db.close();
-
         super.onDestroy();
     }
 
@@ -612,10 +730,12 @@ public class TransactionViewActivity extends AppCompatActivity
                 {
                     Log.e(TAG, "Deleting transaction: " + _transactionId);
 
-                    _db.deleteTransaction(_transactionId);
-                    finish();
-
                     dialog.dismiss();
+
+                    if(isBusy() == false)
+                    {
+                        delete();
+                    }
                 }
             });
             builder.setNegativeButton(R.string.cancel, new DialogInterface.OnClickListener()
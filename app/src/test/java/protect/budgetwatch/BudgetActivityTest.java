@@ -10,6 +10,9 @@ import android.widget.ListView;
 import android.widget.ProgressBar;
 import android.widget.TextView;
 
+import com.google.common.util.concurrent.MoreExecutors;
+
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -21,7 +24,10 @@ import org.robolectric.shadows.ShadowActivity;
 import org.robolectric.shadows.ShadowListView;
 import org.robolectric.shadows.ShadowLog;
 
+import java.util.concurrent.Executor;
+
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
@@ -31,11 +37,23 @@ import static org.robolectric.Shadows.shadowOf;
 @Config(sdk = 24)
 public class BudgetActivityTest
 {
+    private Executor _executor;
+
     @Before
     public void setUp()
     {
         // Output logs emitted during tests so they may be accessed
         ShadowLog.stream = System.out;
+
+        // Run queries right away, so the screens are filled in
+        // before they are checked
+        _executor = DatabaseLoader.setExecutor(MoreExecutors.directExecutor());
+    }
+
+    @After
+    public void tearDown()
+    {
+        DatabaseLoader.setExecutor(_executor);
     }
 
     @Test
@@ -62,11 +80,46 @@ public class BudgetActivityTest
         final Menu menu = shadowOf(activity).getOptionsMenu();
         assertTrue(menu != null);
 
-        // The settings and add button should be present
-        assertEquals(menu.size(), 2);
+        // The calendar, add, compare and top expenses items should be present
+        assertEquals(menu.size(), 4);
 
         assertEquals("Add", menu.findItem(R.id.action_add).getTitle().toString());
         assertEquals("Select Dates", menu.findItem(R.id.action_calendar).getTitle().toString());
+        assertEquals("Compare", menu.findItem(R.id.action_compare).getTitle().toString());
+        assertEquals("Top expenses", menu.findItem(R.id.action_top_descriptions).getTitle().toString());
+    }
+
+    @Test
+    public void clickCompareLaunchesBudgetComparisonActivity()
+    {
+        final Activity activity = Robolectric.setupActivity(BudgetActivity.class);
+
+        shadowOf(activity).clickMenuItem(R.id.action_compare);
+
+        Intent intent = shadowOf(activity).getNextStartedActivity();
+
+        assertEquals(new ComponentName(activity, BudgetComparisonActivity.class), intent.getComponent());
+        Bundle extras = intent.getExtras();
+        assertNotNull(extras);
+        assertTrue(extras.containsKey("budgetStart"));
+        assertTrue(extras.containsKey("budgetEnd"));
+    }
+
+    @Test
+    public void clickTopDescriptionsLaunchesTopDescriptionsActivityForAllBudgets()
+    {
+        final Activity activity = Robolectric.setupActivity(BudgetActivity.class);
+
+        shadowOf(activity).clickMenuItem(R.id.action_top_descriptions);
+
+        Intent intent = shadowOf(activity).getNextStartedActivity();
+
+        assertEquals(new ComponentName(activity, TopDescriptionsActivity.class), intent.getComponent());
+        Bundle extras = intent.getExtras();
+        assertNotNull(extras);
+        assertTrue(extras.containsKey("budgetStart"));
+        assertTrue(extras.containsKey("budgetEnd"));
+        assertFalse(extras.containsKey("budget"));
     }
 
     @Test
@@ -14,8 +14,11 @@ import org.robolectric.android.controller.ActivityController;
 import org.robolectric.annotation.Config;
 import org.robolectric.shadows.ShadowLog;
 
+import java.util.ArrayList;
 import java.util.Calendar;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import static org.junit.Assert.assertEquals;
 
@@ -75,4 +78,36 @@ public class BudgetAdapterTest
         String fraction = String.format(fractionFormat, CURRENT_CEIL, SCALED_BUDGET);
         assertEquals(fraction, budgetValue.getText().toString());
     }
+
+    @Test
+    public void TestForecast()
+    {
+        ActivityController activityController = Robolectric.buildActivity(BudgetActivity.class).create();
+        Activity activity = (Activity)activityController.get();
+
+        final List<Budget> budgets = new ArrayList<>();
+        budgets.add(new Budget("under", 100, 10));
+        budgets.add(new Budget("over", 100, 90));
+        budgets.add(new Budget("unknown", 100, 0));
+
+        final Map<String, Long> forecasts = new HashMap<>();
+        forecasts.put("under", 5000L);
+        forecasts.put("over", 15001L);
+
+        final BudgetAdapter adapter = new BudgetAdapter(activity, budgets, forecasts);
+
+        TextView forecast = (TextView) adapter.getView(0, null, null).findViewById(R.id.budgetForecast);
+        assertEquals(View.VISIBLE, forecast.getVisibility());
+        String format = activity.getResources().getString(R.string.forecastFormat);
+        assertEquals(String.format(format, 50), forecast.getText().toString());
+
+        // Forecasts are rounded up, as the current value is
+        forecast = (TextView) adapter.getView(1, null, null).findViewById(R.id.budgetForecast);
+        assertEquals(View.VISIBLE, forecast.getVisibility());
+        format = activity.getResources().getString(R.string.forecastOverFormat);
+        assertEquals(String.format(format, 151, 51), forecast.getText().toString());
+
+        forecast = (TextView) adapter.getView(2, null, null).findViewById(R.id.budgetForecast);
+        assertEquals(View.GONE, forecast.getVisibility());
+    }
 }
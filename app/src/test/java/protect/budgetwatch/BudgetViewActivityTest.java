@@ -11,6 +11,9 @@ import android.widget.Button;
 import android.widget.EditText;
 import android.widget.TextView;
 
+import com.google.common.util.concurrent.MoreExecutors;
+
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -23,9 +26,12 @@ import org.robolectric.shadows.ShadowLog;
 import java.io.IOException;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.Executor;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import static org.robolectric.Shadows.shadowOf;
 
@@ -33,11 +39,23 @@ import static org.robolectric.Shadows.shadowOf;
 @Config(sdk = 24)
 public class BudgetViewActivityTest
 {
+    private Executor _executor;
+
     @Before
     public void setUp()
     {
         // Output logs emitted during tests so they may be accessed
         ShadowLog.stream = System.out;
+
+        // Run queries right away, so the screens are filled in
+        // before they are checked
+        _executor = DatabaseLoader.setExecutor(MoreExecutors.directExecutor());
+    }
+
+    @After
+    public void tearDown()
+    {
+        DatabaseLoader.setExecutor(_executor);
     }
 
     enum ViewMode
@@ -238,6 +256,45 @@ public class BudgetViewActivityTest
         saveBudgetWithArguments(activity, "budgetName", 1234, false);
     }
 
+    @Test
+    public void startAsEditRenameBudget() throws IOException
+    {
+        ActivityController activityController = setupActivity("budgetName", 100, false, true);
+        Activity activity = (Activity)activityController.get();
+
+        DBHelper db = new DBHelper(activity);
+        db.insertTransaction(DBHelper.TransactionDbIds.EXPENSE, "", "", "budgetName", 10, "", 1, "");
+
+        saveBudgetWithArguments(activity, "newBudgetName", 1234, false);
+
+        assertNull(db.getBudgetStoredOnly("budgetName"));
+        assertEquals("newBudgetName", db.getTransaction(1).budget);
+        db.close();
+    }
+
+    @Test
+    public void startAsEditRenameToUsedNameChangesNothing()
+    {
+        ActivityController activityController = setupActivity("budgetName", 100, false, true);
+        Activity activity = (Activity)activityController.get();
+
+        DBHelper db = new DBHelper(activity);
+        db.insertBudget("other", 50);
+
+        final EditText budgetField = (EditText) activity.findViewById(R.id.budgetNameEdit);
+        final EditText valueField = (EditText) activity.findViewById(R.id.valueEdit);
+        budgetField.setText("other");
+        valueField.setText("1234");
+
+        shadowOf(activity).clickMenuItem(R.id.action_save);
+
+        // Neither the name nor the value of either budget changed
+        assertFalse(activity.isFinishing());
+        assertEquals(100, db.getBudgetStoredOnly("budgetName").max);
+        assertEquals(50, db.getBudgetStoredOnly("other").max);
+        db.close();
+    }
+
     @Test
     public void startAsViewCheckDisplay() throws IOException
     {
@@ -344,4 +401,41 @@ public class BudgetViewActivityTest
         assertEquals("budgetName", bundle.getString("id", ""));
         assertEquals(true, bundle.getBoolean("update", false));
     }
+
+    @Test
+    public void startAsViewShowsWeeklySpending()
+    {
+        ActivityController activityController = setupActivity("budget", 100, true, false);
+        Activity activity = (Activity)activityController.get();
+
+        DBHelper db = new DBHelper(activity);
+        db.insertTransaction(DBHelper.TransactionDbIds.EXPENSE, "", "", "budget", 12.5, "",
+                System.currentTimeMillis(), "");
+        db.insertTransaction(DBHelper.TransactionDbIds.EXPENSE, "", "", "other", 100, "",
+                System.currentTimeMillis(), "");
+        db.close();
+
+        activityController.pause();
+        activityController.resume();
+
+        assertEquals(View.VISIBLE, activity.findViewById(R.id.spendingLayout).getVisibility());
+        assertEquals(View.GONE, activity.findViewById(R.id.spendingLoading).getVisibility());
+
+        BucketChartView chart = (BucketChartView)activity.findViewById(R.id.spendingChart);
+        List<TotalsBucket> buckets = chart.getBuckets();
+
+        // A year of weeks, where only the current week has spending
+        assertTrue(buckets.size() >= 52);
+        assertEquals(1250, buckets.get(buckets.size() - 1).expenseCents);
+        assertEquals(0, buckets.get(0).expenseCents);
+    }
+
+    @Test
+    public void startAsAddHidesSpending()
+    {
+        ActivityController activityController = setupActivity(null, 0, false, false);
+        Activity activity = (Activity)activityController.get();
+
+        assertEquals(View.GONE, activity.findViewById(R.id.spendingLayout).getVisibility());
+    }
 }
@@ -0,0 +1,184 @@
+package protect.budgetwatch;
+
+import com.google.common.util.concurrent.MoreExecutors;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 25)
+public class DatabaseLoaderTest
+{
+    // Holds queries until they are run by the test
+    private static class QueuedExecutor implements Executor
+    {
+        final List<Runnable> queued = new LinkedList<>();
+
+        @Override
+        public void execute(Runnable command)
+        {
+            queued.add(command);
+        }
+
+        void runAll()
+        {
+            while(queued.isEmpty() == false)
+            {
+                queued.remove(0).run();
+            }
+        }
+    }
+
+    private Executor _executor;
+
+    @Before
+    public void setUp()
+    {
+        _executor = DatabaseLoader.setExecutor(MoreExecutors.directExecutor());
+    }
+
+    @After
+    public void tearDown()
+    {
+        // Leave the executor as it was for other tests
+        DatabaseLoader.setExecutor(_executor);
+    }
+
+    private DatabaseLoader.Load load(final List<String> events)
+    {
+        return DatabaseLoader.load(new DatabaseLoader.Query<String>()
+        {
+            @Override
+            public String load()
+            {
+                events.add("query");
+                return "result";
+            }
+        }, new DatabaseLoader.Callback<String>()
+        {
+            @Override
+            public void onLoaded(String result)
+            {
+                events.add(result);
+            }
+        });
+    }
+
+    @Test
+    public void resultIsDelivered()
+    {
+        QueuedExecutor executor = new QueuedExecutor();
+        DatabaseLoader.setExecutor(executor);
+
+        List<String> events = new LinkedList<>();
+        DatabaseLoader.Load load = load(events);
+
+        assertFalse(load.isFinished());
+        assertEquals(0, events.size());
+
+        executor.runAll();
+
+        assertTrue(load.isFinished());
+        assertEquals(2, events.size());
+        assertEquals("query", events.get(0));
+        assertEquals("result", events.get(1));
+    }
+
+    @Test
+    public void canceledLoadDoesNotRun()
+    {
+        QueuedExecutor executor = new QueuedExecutor();
+        DatabaseLoader.setExecutor(executor);
+
+        List<String> events = new LinkedList<>();
+        DatabaseLoader.Load load = load(events);
+        load.cancel();
+
+        assertTrue(load.isFinished());
+
+        executor.runAll();
+
+        assertEquals(0, events.size());
+    }
+
+    @Test
+    public void failureIsThrownOnMainThread()
+    {
+        QueuedExecutor executor = new QueuedExecutor();
+        DatabaseLoader.setExecutor(executor);
+
+        final RuntimeException failure = new RuntimeException("query failed");
+        final List<String> events = new LinkedList<>();
+        DatabaseLoader.Load load = DatabaseLoader.load(new DatabaseLoader.Query<String>()
+        {
+            @Override
+            public String load()
+            {
+                throw failure;
+            }
+        }, new DatabaseLoader.Callback<String>()
+        {
+            @Override
+            public void onLoaded(String result)
+            {
+                events.add(result);
+            }
+        });
+
+        try
+        {
+            executor.runAll();
+            fail("Expected the query's exception");
+        }
+        catch(RuntimeException e)
+        {
+            assertSame(failure, e);
+        }
+
+        assertTrue(load.isFinished());
+        assertEquals(0, events.size());
+    }
+
+    @Test
+    public void canceledLoadDropsFailure()
+    {
+        QueuedExecutor executor = new QueuedExecutor();
+        DatabaseLoader.setExecutor(executor);
+
+        // The load is canceled while its query runs
+        final DatabaseLoader.Load [] load = new DatabaseLoader.Load[1];
+        load[0] = DatabaseLoader.load(new DatabaseLoader.Query<String>()
+        {
+            @Override
+            public String load()
+            {
+                load[0].cancel();
+                throw new RuntimeException("query failed");
+            }
+        }, new DatabaseLoader.Callback<String>()
+        {
+            @Override
+            public void onLoaded(String result)
+            {
+                fail("Canceled load delivered a result");
+            }
+        });
+
+        executor.runAll();
+        assertTrue(load[0].isFinished());
+    }
+}
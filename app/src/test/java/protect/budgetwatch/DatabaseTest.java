@@ -18,9 +18,11 @@ import org.robolectric.annotation.Config;
 import org.robolectric.annotation.LooperMode;
 import org.robolectric.shadows.ShadowLog;
 
+import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
@@ -63,6 +65,19 @@ public class DatabaseTest
         db.close();
     }
 
+    @Test
+    public void sharedDatabaseInstance()
+    {
+        DBHelper shared = BudgetWatchApplication.getDatabase(context);
+        assertNotNull(shared);
+        assertTrue(shared == BudgetWatchApplication.getDatabase(context.getApplicationContext()));
+        assertTrue(shared.getWritableDatabase().isWriteAheadLoggingEnabled());
+
+        // Writes through one helper are visible through the shared instance
+        assertTrue(db.insertBudget("budget", 100));
+        assertEquals(1, shared.getBudgetCount());
+    }
+
     @Test
     public void addRemoveOneBudget()
     {
@@ -422,6 +437,41 @@ public class DatabaseTest
         context.unregisterReceiver(dbChanged);
     }
 
+    @Test
+    public void changeNotificationsCarryTypes()
+    {
+        TransactionDatabaseChangedReceiver dbChanged = new TransactionDatabaseChangedReceiver();
+        context.registerReceiver(dbChanged, new IntentFilter(TransactionDatabaseChangedReceiver.ACTION_DATABASE_CHANGED));
+
+        db.insertTransaction(DBHelper.TransactionDbIds.EXPENSE, "description", "account", "budget",
+                100.50, "note", nowMs, "");
+        assertTrue(dbChanged.hasChanged());
+        assertTrue(dbChanged.hasChanged(DBHelper.TransactionDbIds.EXPENSE));
+        assertFalse(dbChanged.hasChanged(DBHelper.TransactionDbIds.REVENUE));
+        dbChanged.reset();
+
+        // Changing the type changes the lists of both types
+        db.updateTransaction(1, DBHelper.TransactionDbIds.REVENUE, "description", "account", "budget",
+                100.50, "note", nowMs, "");
+        assertTrue(dbChanged.hasChanged(DBHelper.TransactionDbIds.EXPENSE));
+        assertTrue(dbChanged.hasChanged(DBHelper.TransactionDbIds.REVENUE));
+        dbChanged.reset();
+
+        db.deleteTransaction(1);
+        assertFalse(dbChanged.hasChanged(DBHelper.TransactionDbIds.EXPENSE));
+        assertTrue(dbChanged.hasChanged(DBHelper.TransactionDbIds.REVENUE));
+        dbChanged.reset();
+
+        // A budget rename may change transactions of any type
+        assertTrue(db.insertBudget("other", 100));
+        assertFalse(dbChanged.hasChanged());
+        assertTrue(db.renameBudget("other", "renamed", 100));
+        assertTrue(dbChanged.hasChanged(DBHelper.TransactionDbIds.EXPENSE));
+        assertTrue(dbChanged.hasChanged(DBHelper.TransactionDbIds.REVENUE));
+
+        context.unregisterReceiver(dbChanged);
+    }
+
     @Test
     public void updateMissingTransaction()
     {
@@ -447,7 +497,7 @@ public class DatabaseTest
         // Create the table as it existed in revision 1
         database.execSQL(
                 "create table  " + DBHelper.BudgetDbIds.TABLE + "(" +
-                        DBHelper.BudgetDbIds.NAME + " text primary key," +
+                        "_id text primary key," +
                         DBHelper.BudgetDbIds.MAX + " INTEGER not null)");
         database.execSQL("create table " + DBHelper.TransactionDbIds.TABLE + "(" +
                 DBHelper.TransactionDbIds.NAME + " INTEGER primary key autoincrement," +
@@ -467,7 +517,7 @@ public class DatabaseTest
                                                     final String note, final long dateInMs)
     {
         ContentValues contentValues = new ContentValues();
-        contentValues.put(DBHelper.BudgetDbIds.NAME, budgetName);
+        contentValues.put("_id", budgetName);
         contentValues.put(DBHelper.BudgetDbIds.MAX, budgetMax);
         long newId = database.insert(DBHelper.BudgetDbIds.TABLE, null, contentValues);
         assertTrue(newId != -1);
@@ -484,6 +534,26 @@ public class DatabaseTest
         assertTrue(newId != -1);
     }
 
+    private void checkTransactionIndexes(SQLiteDatabase database)
+    {
+        for(String index : new String[]{DBHelper.TransactionDbIds.TYPE_DATE_INDEX,
+                DBHelper.TransactionDbIds.BUDGET_TYPE_DATE_INDEX,
+                DBHelper.TransactionDbIds.RECEIPT_DATE_INDEX,
+                DBHelper.TransactionDbIds.ACCOUNT_TYPE_DATE_INDEX})
+        {
+            Cursor cursor = database.rawQuery("select name from sqlite_master where type='index' and name=?",
+                    new String[]{index});
+            assertEquals(index, 1, cursor.getCount());
+            cursor.close();
+        }
+    }
+
+    @Test
+    public void transactionIndexesExist()
+    {
+        checkTransactionIndexes(db.getReadableDatabase());
+    }
+
     @Test
     public void databaseUpgradeFromVersion1()
     {
@@ -514,6 +584,13 @@ public class DatabaseTest
         assertEquals(200, transaction.dateMs);
         assertEquals("", transaction.receipt);
 
+        checkTransactionIndexes(database);
+
+        // Existing transactions are in the search index
+        Cursor cursor = db.getTransactions(DBHelper.TransactionDbIds.REVENUE, null, "desc", null, null);
+        assertEquals(1, cursor.getCount());
+        cursor.close();
+
         database.close();
     }
 
@@ -803,4 +880,1075 @@ public class DatabaseTest
         assertEquals(0, blankBudget.max);
         assertEquals(value, blankBudget.current);
     }
-}
\ No newline at end of file
+
+    @Test
+    public void budgetsWithBlankInSingleQuery()
+    {
+        for(int index = 0; index < 5; index++)
+        {
+            db.insertBudget("budget" + index, 100 + index);
+            db.insertTransaction(DBHelper.TransactionDbIds.EXPENSE, "", "", "budget" + index, 10 + index, "", nowMs, "");
+            db.insertTransaction(DBHelper.TransactionDbIds.REVENUE, "", "", "budget" + index, 1, "", nowMs, "");
+        }
+
+        db.insertTransaction(DBHelper.TransactionDbIds.EXPENSE, "", "", "", 7, "", nowMs, "");
+        db.insertTransaction(DBHelper.TransactionDbIds.REVENUE, "", "", "", 2, "", nowMs, "");
+
+        // Outside of the date range, should not be counted
+        db.insertTransaction(DBHelper.TransactionDbIds.EXPENSE, "", "", "budget0", 1000, "", lastYearMs - 1, "");
+        db.insertTransaction(DBHelper.TransactionDbIds.EXPENSE, "", "", "", 1000, "", lastYearMs - 1, "");
+
+        LinkedList<Budget> budgets = db.getBudgetsWithBlank(lastYearMs, nowMs);
+        assertEquals(6, budgets.size());
+
+        Budget blankBudget = budgets.removeLast();
+        assertEquals("", blankBudget.name);
+        assertEquals(0, blankBudget.max);
+        assertEquals(5, blankBudget.current);
+
+        for(int index = 0; index < 5; index++)
+        {
+            Budget budget = budgets.get(index);
+            assertEquals("budget" + index, budget.name);
+            assertEquals((100 + index)*(MONTHS_PER_YEAR+1), budget.max);
+            assertEquals(10 + index - 1, budget.current);
+        }
+    }
+
+    private void checkMonthTotalsMatchTransactions(long startMs, long endMs)
+    {
+        // Ending a millisecond early takes the range off of month
+        // boundaries, so the totals are computed from the transactions.
+        List<Budget> fromMonthTotals = db.getBudgetsWithBlank(startMs, endMs);
+        List<Budget> fromTransactions = db.getBudgetsWithBlank(startMs, endMs - 1);
+
+        assertEquals(fromTransactions.size(), fromMonthTotals.size());
+        for(int index = 0; index < fromTransactions.size(); index++)
+        {
+            assertEquals(fromTransactions.get(index).name, fromMonthTotals.get(index).name);
+            assertEquals(fromTransactions.get(index).max, fromMonthTotals.get(index).max);
+            assertEquals(fromTransactions.get(index).current, fromMonthTotals.get(index).current);
+        }
+    }
+
+    @Test
+    public void monthTotalsFollowTransactions()
+    {
+        Calendar date = Calendar.getInstance();
+        final int year = date.get(Calendar.YEAR);
+        final int month = date.get(Calendar.MONTH);
+
+        final long thisMonthStart = CalendarUtil.getStartOfMonthMs(year, month);
+        final long thisMonthEnd = CalendarUtil.getEndOfMonthMs(year, month);
+        final long lastMonthStart = CalendarUtil.getStartOfMonthMs(year, month - 1);
+        final long lastMonthEnd = CalendarUtil.getEndOfMonthMs(year, month - 1);
+
+        assertTrue(CalendarUtil.isWholeMonths(thisMonthStart, thisMonthEnd));
+        assertTrue(CalendarUtil.isWholeMonths(lastMonthStart, thisMonthEnd));
+        assertFalse(CalendarUtil.isWholeMonths(thisMonthStart, thisMonthEnd - 1));
+
+        db.insertBudget("budget1", 100);
+        db.insertBudget("budget2", 200);
+
+        db.insertTransaction(DBHelper.TransactionDbIds.EXPENSE, "", "", "budget1", 10, "", thisMonthStart, "");
+        db.insertTransaction(DBHelper.TransactionDbIds.EXPENSE, "", "", "budget1", 20, "", lastMonthEnd, "");
+        db.insertTransaction(DBHelper.TransactionDbIds.REVENUE, "", "", "budget2", 5, "", thisMonthStart + 1000, "");
+        db.insertTransaction(DBHelper.TransactionDbIds.EXPENSE, "", "", "", 3, "", lastMonthStart, "");
+
+        checkMonthTotalsMatchTransactions(thisMonthStart, thisMonthEnd);
+        checkMonthTotalsMatchTransactions(lastMonthStart, lastMonthEnd);
+        checkMonthTotalsMatchTransactions(lastMonthStart, thisMonthEnd);
+
+        List<Budget> budgets = db.getBudgets(thisMonthStart, thisMonthEnd);
+        assertEquals(10, budgets.get(0).current);
+        assertEquals(-5, budgets.get(1).current);
+
+        // Move the expense from last month into this month and another budget
+        Transaction moved = db.getTransaction(2);
+        assertTrue(db.updateTransaction(moved.id, moved.type, moved.description, moved.account,
+                "budget2", 30, moved.note, thisMonthStart, moved.receipt));
+
+        budgets = db.getBudgets(thisMonthStart, thisMonthEnd);
+        assertEquals(10, budgets.get(0).current);
+        assertEquals(25, budgets.get(1).current);
+        budgets = db.getBudgets(lastMonthStart, lastMonthEnd);
+        assertEquals(0, budgets.get(0).current);
+
+        assertTrue(db.deleteTransaction(1));
+
+        budgets = db.getBudgets(thisMonthStart, thisMonthEnd);
+        assertEquals(0, budgets.get(0).current);
+
+        checkMonthTotalsMatchTransactions(thisMonthStart, thisMonthEnd);
+        checkMonthTotalsMatchTransactions(lastMonthStart, lastMonthEnd);
+        checkMonthTotalsMatchTransactions(lastMonthStart, thisMonthEnd);
+    }
+
+    @Test
+    public void valuesStoredAsExactCents()
+    {
+        db.insertBudget("budget", 100);
+
+        // 0.1 cannot be represented exactly as a double, so summing
+        // ten of them as doubles would not give exactly 1
+        for(int index = 0; index < 10; index++)
+        {
+            assertTrue(db.insertTransaction(DBHelper.TransactionDbIds.EXPENSE, "", "", "budget",
+                    0.1, "", 1, ""));
+        }
+        db.insertTransaction(DBHelper.TransactionDbIds.EXPENSE, "", "", "", 0.01, "", 1, "");
+        db.insertTransaction(DBHelper.TransactionDbIds.REVENUE, "", "", "", 1.005, "", 1, "");
+
+        Transaction transaction = db.getTransaction(1);
+        assertEquals(10, transaction.valueCents);
+        assertEquals(0, Double.compare(0.1, transaction.value));
+
+        // Values are rounded to the nearest cent
+        transaction = db.getTransaction(12);
+        assertEquals(101, transaction.valueCents);
+
+        List<Budget> budgets = db.getBudgetsWithBlank(0, 10);
+        assertEquals(100, budgets.get(0).currentCents);
+        assertEquals(1, budgets.get(0).current);
+
+        // 0.01 - 1.01 = -1.00 exactly
+        assertEquals(-100, budgets.get(1).currentCents);
+        assertEquals(-1, budgets.get(1).current);
+
+        db.insertTransaction(DBHelper.TransactionDbIds.EXPENSE, "", "", "", 0.01, "", 1, "");
+        Budget blank = db.getBlankBudget(0, 10);
+        assertEquals(-99, blank.currentCents);
+        assertEquals(0, blank.current);
+    }
+
+    @Test
+    public void databaseUpgradeFromVersion4ConvertsValuesToCents()
+    {
+        SQLiteDatabase database = db.getWritableDatabase();
+
+        setupDatabaseVersion1(database);
+        database.execSQL("ALTER TABLE " + DBHelper.TransactionDbIds.TABLE
+                + " ADD COLUMN " + DBHelper.TransactionDbIds.RECEIPT + " TEXT");
+
+        insertBudgetAndTransactionVersion1(database, "budget", 100, DBHelper.TransactionDbIds.EXPENSE,
+                "description", "account", 10.01, "note", 200);
+        insertBudgetAndTransactionVersion1(database, "budget2", 100, DBHelper.TransactionDbIds.EXPENSE,
+                "description", "account", 0.29, "note", 200);
+
+        db.onUpgrade(database, 4, DBHelper.DATABASE_VERSION);
+
+        assertEquals(1001, db.getTransaction(1).valueCents);
+        assertEquals(29, db.getTransaction(2).valueCents);
+
+        List<Budget> budgets = db.getBudgets(0, 1000);
+        assertEquals(1001, budgets.get(0).currentCents);
+        assertEquals(11, budgets.get(0).current);
+        assertEquals(29, budgets.get(1).currentCents);
+
+        checkTransactionIndexes(database);
+    }
+
+    @Test
+    public void renameBudget()
+    {
+        db.insertBudget("budget", 100);
+        db.insertBudget("other", 50);
+        db.insertTransaction(DBHelper.TransactionDbIds.EXPENSE, "", "", "budget", 10, "", nowMs, "");
+        db.insertTransaction(DBHelper.TransactionDbIds.EXPENSE, "", "", "unlisted", 5, "", nowMs, "");
+
+        // Names which are in use by another budget, or do not exist, are rejected
+        assertFalse(db.renameBudget("budget", "other", 120));
+        assertFalse(db.renameBudget("missing", "new", 120));
+        assertFalse(db.renameBudget("unlisted", "new", 120));
+        assertEquals(100, db.getBudgetStoredOnly("budget").max);
+
+        // The value is changed with the name
+        assertTrue(db.renameBudget("budget", "renamed", 120));
+        assertNull(db.getBudgetStoredOnly("budget"));
+        assertEquals(120, db.getBudgetStoredOnly("renamed").max);
+        assertEquals("renamed", db.getTransaction(1).budget);
+
+        Cursor expenses = db.getTransactions(DBHelper.TransactionDbIds.EXPENSE, "renamed", null, null, null);
+        assertEquals(1, expenses.getCount());
+        expenses.close();
+
+        // A name only used by transactions is merged into the renamed budget
+        assertTrue(db.renameBudget("renamed", "unlisted", 120));
+        assertEquals("unlisted", db.getTransaction(1).budget);
+        assertEquals("unlisted", db.getTransaction(2).budget);
+
+        List<Budget> budgets = db.getBudgets(lastYearMs, nowMs);
+        assertEquals(2, budgets.size());
+        assertEquals("other", budgets.get(0).name);
+        assertEquals("unlisted", budgets.get(1).name);
+        assertEquals(15, budgets.get(1).current);
+        assertEquals(0, db.getBlankBudget(lastYearMs, nowMs).current);
+    }
+
+    @Test
+    public void deletedBudgetKeepsTransactions()
+    {
+        db.insertBudget("budget", 100);
+        db.insertTransaction(DBHelper.TransactionDbIds.EXPENSE, "", "", "budget", 10, "", nowMs, "");
+
+        // Transactions may use a budget name which is not a budget
+        db.insertTransaction(DBHelper.TransactionDbIds.EXPENSE, "", "", "unlisted", 5, "", nowMs, "");
+        assertEquals(1, db.getBudgetCount());
+        assertEquals(1, db.getBudgetNames().size());
+
+        assertTrue(db.deleteBudget("budget"));
+        assertFalse(db.deleteBudget("budget"));
+        assertEquals(0, db.getBudgetCount());
+        assertEquals(0, db.getBudgets(lastYearMs, nowMs).size());
+        assertFalse(db.updateBudget("budget", 10));
+        assertEquals("budget", db.getTransaction(1).budget);
+
+        Cursor expenses = db.getTransactions(DBHelper.TransactionDbIds.EXPENSE, "budget", null, null, null);
+        assertEquals(1, expenses.getCount());
+        expenses.close();
+
+        // Adding the budget again picks up its transactions
+        assertTrue(db.insertBudget("budget", 200));
+        assertFalse(db.insertBudget("budget", 300));
+        List<Budget> budgets = db.getBudgets(lastYearMs, nowMs);
+        assertEquals(1, budgets.size());
+        assertEquals(200*(MONTHS_PER_YEAR+1), budgets.get(0).max);
+        assertEquals(10, budgets.get(0).current);
+    }
+
+    @Test
+    public void bulkInsert()
+    {
+        TransactionDatabaseChangedReceiver dbChanged = new TransactionDatabaseChangedReceiver();
+        context.registerReceiver(dbChanged, new IntentFilter(TransactionDatabaseChangedReceiver.ACTION_DATABASE_CHANGED));
+
+        final int NUM_TRANSACTIONS = 100;
+
+        DBHelper.BulkInserter inserter = db.beginBulkInsert();
+        try
+        {
+            assertTrue(inserter.insertBudget("budget", 100));
+
+            for(int index = 1; index <= NUM_TRANSACTIONS; index++)
+            {
+                assertTrue(inserter.insertTransaction(index, DBHelper.TransactionDbIds.EXPENSE,
+                        "description", "account", (index % 2 == 0) ? "budget" : "",
+                        index * 100 + 1, "note", index, ""));
+            }
+
+            // A transaction with an existing id is rejected
+            assertFalse(inserter.insertTransaction(1, DBHelper.TransactionDbIds.REVENUE,
+                    "", "", "", 0, "", 0, ""));
+
+            // Nothing is announced until the rows are committed
+            assertFalse(dbChanged.hasChanged());
+
+            inserter.setSuccessful();
+        }
+        finally
+        {
+            inserter.end();
+        }
+
+        assertTrue(dbChanged.hasChanged());
+        context.unregisterReceiver(dbChanged);
+
+        assertEquals(NUM_TRANSACTIONS, db.getTransactionCount(DBHelper.TransactionDbIds.EXPENSE));
+        assertEquals(0, db.getTransactionCount(DBHelper.TransactionDbIds.REVENUE));
+
+        Transaction transaction = db.getTransaction(2);
+        checkTransaction(transaction, DBHelper.TransactionDbIds.EXPENSE, "description",
+                "account", "budget", 2.01, "note", 2, "");
+
+        List<Budget> budgets = db.getBudgetsWithBlank(0, NUM_TRANSACTIONS);
+        assertEquals(2, budgets.size());
+        assertEquals((2550 * 100 + 50), budgets.get(0).currentCents);
+        assertEquals((2500 * 100 + 50), budgets.get(1).currentCents);
+    }
+
+    @Test
+    public void bulkInsertRolledBack()
+    {
+        TransactionDatabaseChangedReceiver dbChanged = new TransactionDatabaseChangedReceiver();
+        context.registerReceiver(dbChanged, new IntentFilter(TransactionDatabaseChangedReceiver.ACTION_DATABASE_CHANGED));
+
+        DBHelper.BulkInserter inserter = db.beginBulkInsert();
+        try
+        {
+            assertTrue(inserter.insertBudget("budget", 100));
+            assertTrue(inserter.insertTransaction(1, DBHelper.TransactionDbIds.EXPENSE,
+                    "", "", "budget", 100, "", 0, ""));
+        }
+        finally
+        {
+            inserter.end();
+        }
+
+        assertFalse(dbChanged.hasChanged());
+        context.unregisterReceiver(dbChanged);
+
+        assertEquals(0, db.getBudgetCount());
+        assertEquals(0, db.getTransactionCount(DBHelper.TransactionDbIds.EXPENSE));
+    }
+
+    private int countSearchResults(final String search)
+    {
+        Cursor cursor = db.getTransactions(DBHelper.TransactionDbIds.EXPENSE, null, search, null, null);
+        int count = cursor.getCount();
+        cursor.close();
+        return count;
+    }
+
+    @Test
+    public void searchMatchesWordPrefixes()
+    {
+        db.insertTransaction(DBHelper.TransactionDbIds.EXPENSE, "Coffee at the station", "Checking",
+                "", 4.5, "with Sam", nowMs, "");
+        db.insertTransaction(DBHelper.TransactionDbIds.EXPENSE, "Train ticket", "Credit card",
+                "", 120.25, "", nowMs, "");
+
+        assertEquals(1, countSearchResults("coffee"));
+        assertEquals(1, countSearchResults("COF"));
+        assertEquals(1, countSearchResults("stat"));
+        assertEquals(1, countSearchResults("credit"));
+        assertEquals(1, countSearchResults("sam"));
+        assertEquals(2, countSearchResults("c"));
+
+        // Every word must match, in any field
+        assertEquals(1, countSearchResults("coffee checking"));
+        assertEquals(0, countSearchResults("coffee credit"));
+
+        // Words only match from their start
+        assertEquals(0, countSearchResults("ffee"));
+
+        // Query syntax is treated as text
+        assertEquals(0, countSearchResults("coffee OR train"));
+        assertEquals(0, countSearchResults("\"*"));
+
+        // Numbers also match the start of the value
+        assertEquals(1, countSearchResults("4.5"));
+        assertEquals(1, countSearchResults("120.2"));
+        assertEquals(1, countSearchResults("12"));
+        assertEquals(0, countSearchResults("20.25"));
+
+        // The index follows updates and deletes
+        Transaction transaction = db.getTransaction(1);
+        assertTrue(db.updateTransaction(transaction.id, transaction.type, "Tea", transaction.account,
+                transaction.budget, transaction.value, transaction.note, transaction.dateMs, transaction.receipt));
+        assertEquals(0, countSearchResults("coffee"));
+        assertEquals(1, countSearchResults("tea"));
+        assertEquals(1, countSearchResults("checking"));
+
+        assertTrue(db.deleteTransaction(1));
+        assertEquals(0, countSearchResults("tea"));
+        assertEquals(0, countSearchResults("checking"));
+        assertEquals(1, countSearchResults("train"));
+    }
+
+    @Test
+    public void pagedTransactions()
+    {
+        final int NUM_TRANSACTIONS = 25;
+        final int PAGE_SIZE = 10;
+
+        // Several transactions share each date, so pages must
+        // also be split by id
+        for(int index = 0; index < NUM_TRANSACTIONS; index++)
+        {
+            db.insertTransaction(DBHelper.TransactionDbIds.EXPENSE, "description", "", "",
+                    index, "", index / 3, (index % 2 == 0) ? "receipt" : "");
+        }
+        db.insertTransaction(DBHelper.TransactionDbIds.REVENUE, "", "", "", 0, "", 0, "receipt");
+
+        // Reading page by page gives the same transactions in the same
+        // order as reading them all at once
+        Cursor all = db.getTransactions(DBHelper.TransactionDbIds.EXPENSE, null, "description", 0L, 100L);
+        assertEquals(NUM_TRANSACTIONS, all.getCount());
+        assertEquals(NUM_TRANSACTIONS, db.getTransactionCount(DBHelper.TransactionDbIds.EXPENSE, 0L, 100L));
+        assertEquals(6, db.getTransactionCount(DBHelper.TransactionDbIds.EXPENSE, 0L, 1L));
+
+        Transaction last = null;
+        int pages = 0;
+        boolean morePages = true;
+        while(morePages)
+        {
+            Cursor page = db.getTransactionsPage(DBHelper.TransactionDbIds.EXPENSE, null, "description",
+                    0L, 100L, last, PAGE_SIZE);
+            morePages = (page.getCount() == PAGE_SIZE);
+            pages++;
+
+            while(page.moveToNext())
+            {
+                assertTrue(all.moveToNext());
+                last = Transaction.toTransaction(page);
+                assertEquals(Transaction.toTransaction(all).id, last.id);
+            }
+            page.close();
+        }
+
+        assertEquals(3, pages);
+        assertFalse(all.moveToNext());
+        all.close();
+
+        // Pages of transactions with receipts
+        TransactionReceipt lastReceipt = null;
+        int count = 0;
+        morePages = true;
+        while(morePages)
+        {
+            Cursor page = db.getTransactionsWithReceiptsPage(null, lastReceipt, PAGE_SIZE);
+            morePages = (page.getCount() == PAGE_SIZE);
+
+            while(page.moveToNext())
+            {
+                TransactionReceipt receipt = TransactionReceipt.toTransactionReceipt(page);
+                assertEquals("receipt", receipt.receipt);
+                if(lastReceipt != null)
+                {
+                    assertTrue(receipt.dateMs < lastReceipt.dateMs ||
+                            (receipt.dateMs == lastReceipt.dateMs && receipt.id < lastReceipt.id));
+                }
+                lastReceipt = receipt;
+                count++;
+            }
+            page.close();
+        }
+
+        assertEquals(14, count);
+    }
+
+    @Test
+    public void forEachTransactionReadsEveryPage() throws Exception
+    {
+        final int NUM_TRANSACTIONS = DBHelper.TRANSACTION_PAGE_SIZE + 1;
+        for(int index = 0; index < NUM_TRANSACTIONS; index++)
+        {
+            db.insertTransaction(DBHelper.TransactionDbIds.EXPENSE, "description", "account", "budget",
+                    index, "", index / 3, (index % 2 == 0) ? "receipt" : "");
+        }
+
+        final List<Integer> ids = new LinkedList<>();
+        db.forEachTransaction(DBHelper.TransactionProjections.DETAIL, DBHelper.TransactionDbIds.EXPENSE,
+                null, null, new DBHelper.TransactionHandler()
+        {
+            @Override
+            public void onTransaction(Cursor cursor)
+            {
+                ids.add(Transaction.toTransaction(cursor).id);
+            }
+        });
+
+        // The same transactions in the same order as reading them all at once
+        Cursor all = db.getTransactions(DBHelper.TransactionDbIds.EXPENSE, null, null, null, null);
+        assertEquals(NUM_TRANSACTIONS, ids.size());
+        for(int id : ids)
+        {
+            assertTrue(all.moveToNext());
+            assertEquals(id, Transaction.toTransaction(all).id);
+        }
+        all.close();
+
+        final int [] count = {0};
+        db.forEachTransactionWithReceipt(null, new DBHelper.TransactionHandler()
+        {
+            @Override
+            public void onTransaction(Cursor cursor)
+            {
+                count[0]++;
+            }
+        });
+        assertEquals((NUM_TRANSACTIONS + 1) / 2, count[0]);
+
+        // A failing handler stops the walk
+        count[0] = 0;
+        try
+        {
+            db.forEachTransaction(DBHelper.TransactionProjections.DETAIL, DBHelper.TransactionDbIds.EXPENSE,
+                    null, null, new DBHelper.TransactionHandler()
+            {
+                @Override
+                public void onTransaction(Cursor cursor) throws InterruptedException
+                {
+                    count[0]++;
+                    throw new InterruptedException();
+                }
+            });
+            fail("Expected the handler's exception");
+        }
+        catch(InterruptedException e)
+        {
+            assertEquals(1, count[0]);
+        }
+    }
+
+    @Test
+    public void narrowProjections()
+    {
+        db.insertTransaction(DBHelper.TransactionDbIds.EXPENSE, "description", "account", "budget",
+                1.25, "note", 1, "receipt");
+
+        // The list projection tells whether there is a receipt but
+        // does not select the account or receipt
+        Cursor cursor = db.getTransactions(DBHelper.TransactionProjections.LIST,
+                DBHelper.TransactionDbIds.EXPENSE, null, null, null, null);
+        assertEquals(1, cursor.getCount());
+        cursor.moveToFirst();
+        TransactionRow row = new TransactionRow.Reader(cursor).read();
+        assertEquals("description", row.description);
+        assertEquals("budget", row.budget);
+        assertEquals(125, row.valueCents);
+        assertTrue(row.hasReceipt);
+        assertEquals(-1, cursor.getColumnIndex(DBHelper.TransactionDbIds.ACCOUNT));
+        assertEquals(-1, cursor.getColumnIndex(DBHelper.TransactionDbIds.RECEIPT));
+
+        // A full transaction cannot be read from it
+        try
+        {
+            Transaction.toTransaction(cursor);
+            fail("Expected the missing columns to be reported");
+        }
+        catch(IllegalArgumentException e)
+        {
+            // Expected
+        }
+        cursor.close();
+
+        // The receipt projection has only what is needed to page
+        // through receipts
+        cursor = db.getTransactionsWithReceiptsPage(null, null, DBHelper.TRANSACTION_PAGE_SIZE);
+        assertEquals(1, cursor.getCount());
+        cursor.moveToFirst();
+        TransactionReceipt receipt = TransactionReceipt.toTransactionReceipt(cursor);
+        assertEquals("receipt", receipt.receipt);
+        assertEquals(1, receipt.dateMs);
+        assertEquals(-1, cursor.getColumnIndex(DBHelper.TransactionDbIds.DESCRIPTION));
+        cursor.close();
+
+        assertTrue(db.removeTransactionReceipt(receipt.id));
+        assertFalse(db.removeTransactionReceipt(receipt.id + 1));
+
+        Transaction transaction = db.getTransaction(receipt.id);
+        assertEquals("", transaction.receipt);
+        assertEquals("description", transaction.description);
+        assertEquals("account", transaction.account);
+        assertEquals("budget", transaction.budget);
+        assertEquals("note", transaction.note);
+        assertEquals(125, transaction.valueCents);
+    }
+
+    @Test
+    public void budgetHistory()
+    {
+        Calendar date = Calendar.getInstance();
+        final int year = date.get(Calendar.YEAR);
+        final int month = date.get(Calendar.MONTH);
+
+        final long thisMonthStart = CalendarUtil.getStartOfMonthMs(year, month);
+        final long lastMonthEnd = CalendarUtil.getEndOfMonthMs(year, month - 1);
+        final long threeMonthsAgoStart = CalendarUtil.getStartOfMonthMs(year, month - 3);
+
+        db.insertBudget("budget1", 100);
+        db.insertBudget("budget2", 200);
+
+        db.insertTransaction(DBHelper.TransactionDbIds.EXPENSE, "", "", "budget1", 10.50, "", thisMonthStart, "");
+        db.insertTransaction(DBHelper.TransactionDbIds.REVENUE, "", "", "budget1", 2, "", thisMonthStart, "");
+        db.insertTransaction(DBHelper.TransactionDbIds.EXPENSE, "", "", "budget1", 20, "", lastMonthEnd, "");
+        db.insertTransaction(DBHelper.TransactionDbIds.EXPENSE, "", "", "budget2", 5, "", lastMonthEnd, "");
+        db.insertTransaction(DBHelper.TransactionDbIds.EXPENSE, "", "", "", 3, "", threeMonthsAgoStart, "");
+
+        // Every month is included, even those without transactions,
+        // and whole months are counted whatever the dates within them
+        List<BudgetMonth> history = db.getBudgetHistory("budget1", threeMonthsAgoStart + 1, thisMonthStart + 1);
+        assertEquals(4, history.size());
+        for(int index = 0; index < 2; index++)
+        {
+            assertEquals(0, history.get(index).expenseCents);
+            assertEquals(0, history.get(index).revenueCents);
+        }
+        assertEquals(2000, history.get(2).expenseCents);
+        assertEquals(0, history.get(2).revenueCents);
+        assertEquals(1050, history.get(3).expenseCents);
+        assertEquals(200, history.get(3).revenueCents);
+
+        date.setTimeInMillis(thisMonthStart);
+        assertEquals(date.get(Calendar.YEAR), history.get(3).year);
+        assertEquals(date.get(Calendar.MONTH), history.get(3).month);
+        date.setTimeInMillis(threeMonthsAgoStart);
+        assertEquals(date.get(Calendar.YEAR), history.get(0).year);
+        assertEquals(date.get(Calendar.MONTH), history.get(0).month);
+
+        // Transactions without a budget
+        history = db.getBudgetHistory("", threeMonthsAgoStart, thisMonthStart);
+        assertEquals(4, history.size());
+        assertEquals(300, history.get(0).expenseCents);
+        assertEquals(0, history.get(2).expenseCents);
+
+        // All transactions
+        history = db.getBudgetHistory(null, threeMonthsAgoStart, thisMonthStart);
+        assertEquals(4, history.size());
+        assertEquals(300, history.get(0).expenseCents);
+        assertEquals(0, history.get(1).expenseCents);
+        assertEquals(2500, history.get(2).expenseCents);
+        assertEquals(1050, history.get(3).expenseCents);
+        assertEquals(200, history.get(3).revenueCents);
+
+        // A budget which does not exist has no transactions
+        history = db.getBudgetHistory("missing", threeMonthsAgoStart, thisMonthStart);
+        assertEquals(4, history.size());
+        for(BudgetMonth entry : history)
+        {
+            assertEquals(0, entry.expenseCents);
+            assertEquals(0, entry.revenueCents);
+        }
+    }
+
+    @Test
+    public void budgetTotalsCacheFollowsChanges()
+    {
+        DBHelper other = new DBHelper(context);
+
+        db.insertBudget("budget", 100);
+        db.insertTransaction(DBHelper.TransactionDbIds.EXPENSE, "", "", "budget", 10, "", nowMs, "");
+
+        LinkedList<Budget> budgets = db.getBudgetsWithBlank(lastYearMs, nowMs);
+        assertEquals(2, budgets.size());
+        assertEquals(10, budgets.getFirst().current);
+
+        // The returned list belongs to the caller
+        budgets.removeLast();
+        budgets = db.getBudgetsWithBlank(lastYearMs, nowMs);
+        assertEquals(2, budgets.size());
+
+        // Changes through any helper are seen
+        other.insertTransaction(DBHelper.TransactionDbIds.EXPENSE, "", "", "budget", 5, "", nowMs, "");
+        assertEquals(15, db.getBudgets(lastYearMs, nowMs).get(0).current);
+
+        other.insertTransaction(DBHelper.TransactionDbIds.EXPENSE, "", "", "", 3, "", nowMs, "");
+        assertEquals(3, db.getBlankBudget(lastYearMs, nowMs).current);
+
+        assertTrue(other.updateBudget("budget", 200));
+        assertEquals(200 * (MONTHS_PER_YEAR + 1), db.getBudgets(lastYearMs, nowMs).get(0).max);
+
+        assertTrue(other.renameBudget("budget", "renamed", 200));
+        assertEquals("renamed", db.getBudgets(lastYearMs, nowMs).get(0).name);
+
+        assertTrue(other.insertBudget("another", 50));
+        assertEquals(2, db.getBudgets(lastYearMs, nowMs).size());
+
+        assertTrue(other.deleteBudget("another"));
+        assertEquals(1, db.getBudgets(lastYearMs, nowMs).size());
+
+        DBHelper.BulkInserter inserter = other.beginBulkInsert();
+        try
+        {
+            assertTrue(inserter.insertBudget("imported", 10));
+            inserter.setSuccessful();
+        }
+        finally
+        {
+            inserter.end();
+        }
+        assertEquals(2, db.getBudgets(lastYearMs, nowMs).size());
+
+        other.close();
+    }
+
+    private void checkBudgetsMatch(List<Budget> expected, List<Budget> actual)
+    {
+        assertEquals(expected.size(), actual.size());
+        for(int index = 0; index < expected.size(); index++)
+        {
+            assertEquals(expected.get(index).name, actual.get(index).name);
+            assertEquals(expected.get(index).max, actual.get(index).max);
+            assertEquals(expected.get(index).current, actual.get(index).current);
+            assertEquals(expected.get(index).currentCents, actual.get(index).currentCents);
+        }
+    }
+
+    @Test
+    public void budgetTotalsCacheAppliesTransactionChanges()
+    {
+        Calendar date = Calendar.getInstance();
+        final int year = date.get(Calendar.YEAR);
+        final int month = date.get(Calendar.MONTH);
+
+        final long thisMonthStart = CalendarUtil.getStartOfMonthMs(year, month);
+        final long thisMonthEnd = CalendarUtil.getEndOfMonthMs(year, month);
+        final long lastMonthStart = CalendarUtil.getStartOfMonthMs(year, month - 1);
+
+        // Ranges read from the monthly totals and from the transactions
+        final long [][] ranges = new long[][]
+            {
+                {thisMonthStart, thisMonthEnd},
+                {lastMonthStart, thisMonthEnd},
+                {thisMonthStart, thisMonthStart + 1000},
+            };
+
+        db.insertBudget("budget1", 100);
+        db.insertBudget("budget2", 200);
+        db.insertBudget("deleted", 300);
+        db.insertTransaction(DBHelper.TransactionDbIds.EXPENSE, "", "", "deleted", 7, "", thisMonthStart, "");
+        db.deleteBudget("deleted");
+
+        for(long [] range : ranges)
+        {
+            db.getBudgetsWithBlank(range[0], range[1]);
+        }
+
+        // Each change is applied to the remembered totals, which must
+        // match totals read by a helper which remembers nothing
+        for(int step = 0; step < 6; step++)
+        {
+            switch(step)
+            {
+                case 0:
+                    db.insertTransaction(DBHelper.TransactionDbIds.EXPENSE, "", "", "budget1", 10.25, "", thisMonthStart, "");
+                    break;
+                case 1:
+                    db.insertTransaction(DBHelper.TransactionDbIds.REVENUE, "", "", "", 3, "", lastMonthStart, "");
+                    break;
+                case 2:
+                    // Move the expense to another budget and out of the short range
+                    db.updateTransaction(2, DBHelper.TransactionDbIds.EXPENSE, "", "", "budget2", 4.50, "",
+                            thisMonthStart + 2000, "");
+                    break;
+                case 3:
+                    // Change it into a revenue without a budget last month
+                    db.updateTransaction(2, DBHelper.TransactionDbIds.REVENUE, "", "", "", 1, "",
+                            lastMonthStart, "");
+                    break;
+                case 4:
+                    db.deleteTransaction(3);
+                    break;
+                case 5:
+                    // A transaction of a deleted budget is not counted
+                    db.updateTransaction(1, DBHelper.TransactionDbIds.EXPENSE, "", "", "deleted", 8, "",
+                            thisMonthStart, "");
+                    break;
+            }
+
+            DBHelper fresh = new DBHelper(context);
+            for(long [] range : ranges)
+            {
+                checkBudgetsMatch(fresh.getBudgetsWithBlank(range[0], range[1]),
+                        db.getBudgetsWithBlank(range[0], range[1]));
+            }
+            fresh.close();
+        }
+    }
+
+    @Test
+    public void totalsByBucket()
+    {
+        // Tuesday 2 January 2018, in the local time zone
+        final long dayStart = CalendarUtil.getStartOfDayMs(2018, Calendar.JANUARY, 2);
+        final long nextDayStart = CalendarUtil.getStartOfDayMs(2018, Calendar.JANUARY, 3);
+        final long nextMonthStart = CalendarUtil.getStartOfDayMs(2018, Calendar.FEBRUARY, 1);
+
+        db.insertBudget("budget", 100);
+
+        db.insertTransaction(DBHelper.TransactionDbIds.EXPENSE, "", "card", "budget", 1, "", dayStart, "");
+        db.insertTransaction(DBHelper.TransactionDbIds.EXPENSE, "", "cash", "budget", 2, "", nextDayStart - 1, "");
+        db.insertTransaction(DBHelper.TransactionDbIds.REVENUE, "", "card", "", 4, "", nextDayStart, "");
+        db.insertTransaction(DBHelper.TransactionDbIds.EXPENSE, "", "card", "", 8, "", nextMonthStart, "");
+
+        // Days, including those at the ends of the range which are only partly in it
+        List<TotalsBucket> buckets = db.getTotalsByBucket(TotalsBucket.DAY, null, null,
+                dayStart + 1000, nextDayStart + 1000);
+        assertEquals(2, buckets.size());
+        assertEquals(dayStart, buckets.get(0).startMs);
+        assertEquals(nextDayStart - 1, buckets.get(0).endMs);
+        assertEquals(300, buckets.get(0).expenseCents);
+        assertEquals(0, buckets.get(0).revenueCents);
+        assertEquals(nextDayStart, buckets.get(1).startMs);
+        assertEquals(0, buckets.get(1).expenseCents);
+        assertEquals(400, buckets.get(1).revenueCents);
+
+        // Only the transactions of a budget, or of an account
+        buckets = db.getTotalsByBucket(TotalsBucket.DAY, "budget", null, dayStart, nextDayStart);
+        assertEquals(300, buckets.get(0).expenseCents);
+        assertEquals(0, buckets.get(1).revenueCents);
+
+        buckets = db.getTotalsByBucket(TotalsBucket.DAY, null, "card", dayStart, nextDayStart);
+        assertEquals(100, buckets.get(0).expenseCents);
+        assertEquals(400, buckets.get(1).revenueCents);
+
+        // Weeks, which start on the first day of the week
+        Calendar date = Calendar.getInstance();
+        buckets = db.getTotalsByBucket(TotalsBucket.WEEK, null, null, dayStart, nextMonthStart);
+        long expenseCents = 0;
+        for(int index = 0; index < buckets.size(); index++)
+        {
+            TotalsBucket bucket = buckets.get(index);
+            date.setTimeInMillis(bucket.startMs);
+            assertEquals(date.getFirstDayOfWeek(), date.get(Calendar.DAY_OF_WEEK));
+            if(index > 0)
+            {
+                assertEquals(buckets.get(index - 1).endMs + 1, bucket.startMs);
+            }
+            assertTrue(bucket.startMs <= nextMonthStart);
+            expenseCents += bucket.expenseCents;
+        }
+        assertTrue(buckets.get(0).startMs <= dayStart);
+        assertEquals(1100, expenseCents);
+        assertEquals(800, buckets.get(buckets.size() - 1).expenseCents);
+
+        // Months
+        buckets = db.getTotalsByBucket(TotalsBucket.MONTH, null, null, dayStart, nextMonthStart);
+        assertEquals(2, buckets.size());
+        assertEquals(CalendarUtil.getStartOfMonthMs(2018, Calendar.JANUARY), buckets.get(0).startMs);
+        assertEquals(CalendarUtil.getEndOfMonthMs(2018, Calendar.JANUARY), buckets.get(0).endMs);
+        assertEquals(300, buckets.get(0).expenseCents);
+        assertEquals(400, buckets.get(0).revenueCents);
+        assertEquals(800, buckets.get(1).expenseCents);
+
+        // Days and weeks before 1970, with a transaction at the start
+        // and at the end of each day
+        final long oldStart = CalendarUtil.getStartOfDayMs(1969, Calendar.DECEMBER, 20);
+        final long oldEnd = CalendarUtil.getEndOfDayMs(1970, Calendar.JANUARY, 3);
+        List<Long> oldDayStarts = new ArrayList<>();
+        date.setTimeInMillis(oldStart);
+        while(date.getTimeInMillis() <= oldEnd)
+        {
+            final long start = date.getTimeInMillis();
+            date.add(Calendar.DAY_OF_MONTH, 1);
+            db.insertTransaction(DBHelper.TransactionDbIds.EXPENSE, "", "", "", 1, "", start, "");
+            db.insertTransaction(DBHelper.TransactionDbIds.EXPENSE, "", "", "", 2, "", date.getTimeInMillis() - 1, "");
+            oldDayStarts.add(start);
+        }
+
+        buckets = db.getTotalsByBucket(TotalsBucket.DAY, null, null, oldStart, oldEnd);
+        assertEquals(oldDayStarts.size(), buckets.size());
+        for(int index = 0; index < buckets.size(); index++)
+        {
+            assertEquals((long)oldDayStarts.get(index), buckets.get(index).startMs);
+            assertEquals(300, buckets.get(index).expenseCents);
+        }
+
+        buckets = db.getTotalsByBucket(TotalsBucket.WEEK, null, null, oldStart, oldEnd);
+        for(TotalsBucket bucket : buckets)
+        {
+            int days = 0;
+            for(long oldDayStart : oldDayStarts)
+            {
+                if(oldDayStart >= bucket.startMs && oldDayStart <= bucket.endMs)
+                {
+                    days++;
+                }
+            }
+            assertEquals(300 * days, bucket.expenseCents);
+        }
+    }
+
+    @Test
+    public void accountTotals()
+    {
+        assertEquals(0, db.getAccountTotals(0, Long.MAX_VALUE).size());
+
+        db.insertTransaction(DBHelper.TransactionDbIds.EXPENSE, "", "card", "", 1, "", 10, "");
+        db.insertTransaction(DBHelper.TransactionDbIds.EXPENSE, "", "card", "", 2, "", 20, "");
+        db.insertTransaction(DBHelper.TransactionDbIds.REVENUE, "", "card", "", 8, "", 30, "");
+        db.insertTransaction(DBHelper.TransactionDbIds.EXPENSE, "", "", "", 16, "", 20, "");
+
+        // Accounts are ordered by name, with transactions lacking one first
+        List<AccountTotal> totals = db.getAccountTotals(15, 30);
+        assertEquals(2, totals.size());
+
+        assertEquals("", totals.get(0).account);
+        assertEquals(1600, totals.get(0).expenseCents);
+        assertEquals(0, totals.get(0).revenueCents);
+        assertEquals(-1600, totals.get(0).balanceCents);
+
+        // Totals cover the date range, the balance all time
+        assertEquals("card", totals.get(1).account);
+        assertEquals(200, totals.get(1).expenseCents);
+        assertEquals(800, totals.get(1).revenueCents);
+        assertEquals(500, totals.get(1).balanceCents);
+    }
+
+    @Test
+    public void topDescriptions()
+    {
+        final int EXPENSE = DBHelper.TransactionDbIds.EXPENSE;
+
+        db.insertBudget("budget", 100);
+
+        // Descriptions differing in case and surrounding whitespace are the same
+        db.insertTransaction(EXPENSE, "Grocer", "", "budget", 1, "", 10, "");
+        db.insertTransaction(EXPENSE, " grocer ", "", "", 2, "", 20, "");
+        db.insertTransaction(EXPENSE, "Fuel", "", "budget", 4, "", 20, "");
+        db.insertTransaction(EXPENSE, "Rent", "", "", 8, "", 40, "");
+        db.insertTransaction(DBHelper.TransactionDbIds.REVENUE, "Salary", "", "", 16, "", 20, "");
+
+        List<DescriptionTotal> totals = db.getTopDescriptions(EXPENSE, null, 0, 30, 10);
+        assertEquals(2, totals.size());
+        assertEquals("Fuel", totals.get(0).description);
+        assertEquals(1, totals.get(0).count);
+        assertEquals(400, totals.get(0).totalCents);
+        assertEquals("grocer", totals.get(1).description.toLowerCase());
+        assertEquals(2, totals.get(1).count);
+        assertEquals(300, totals.get(1).totalCents);
+
+        // Only as many as the limit, largest first
+        totals = db.getTopDescriptions(EXPENSE, null, 0, 40, 1);
+        assertEquals(1, totals.size());
+        assertEquals("Rent", totals.get(0).description);
+
+        // Only the transactions of a budget
+        totals = db.getTopDescriptions(EXPENSE, "budget", 0, 40, 10);
+        assertEquals(2, totals.size());
+        assertEquals(400, totals.get(0).totalCents);
+        assertEquals(100, totals.get(1).totalCents);
+
+        totals = db.getTopDescriptions(EXPENSE, "", 0, 40, 10);
+        assertEquals(2, totals.size());
+        assertEquals("Rent", totals.get(0).description);
+        assertEquals(200, totals.get(1).totalCents);
+    }
+
+    @Test
+    public void monthEndForecasts()
+    {
+        final int EXPENSE = DBHelper.TransactionDbIds.EXPENSE;
+
+        // The 10th of a 30 day month, after 92 days in the previous three months
+        final long nowMs = CalendarUtil.getStartOfDayMs(2018, Calendar.JUNE, 10) + 1000;
+
+        db.insertBudget("history", 100);
+        db.insertBudget("new", 100);
+        db.insertBudget("none", 100);
+
+        // One unit a day in previous months, two a day so far this month
+        db.insertTransaction(EXPENSE, "", "", "history", 92, "", CalendarUtil.getStartOfDayMs(2018, Calendar.MARCH, 15), "");
+        db.insertTransaction(EXPENSE, "", "", "history", 20, "", CalendarUtil.getStartOfDayMs(2018, Calendar.JUNE, 5), "");
+
+        // Spending older than the previous months is not used
+        db.insertTransaction(EXPENSE, "", "", "new", 50, "", CalendarUtil.getStartOfDayMs(2018, Calendar.FEBRUARY, 15), "");
+        db.insertTransaction(EXPENSE, "", "", "new", 10, "", CalendarUtil.getStartOfDayMs(2018, Calendar.JUNE, 5), "");
+
+        Map<String, Long> forecasts = db.getMonthEndForecasts(nowMs);
+        assertEquals(3, forecasts.size());
+
+        // A third of the month has passed, so the rate so far counts for a third:
+        // 20 units spent, then 20 days at (200/3 + 100*2/3) cents a day
+        assertEquals(4667, (long)forecasts.get("history"));
+
+        // 10 units spent, then 20 days at a unit a day
+        assertEquals(3000, (long)forecasts.get("new"));
+
+        assertEquals(0, (long)forecasts.get("none"));
+    }
+
+    @Test
+    public void budgetSnapshot()
+    {
+        BudgetSnapshot snapshot = db.getBudgetSnapshot(0, Long.MAX_VALUE);
+        assertEquals(0, snapshot.count);
+        assertEquals(0, snapshot.budgets.size());
+        assertEquals("", snapshot.blankBudget.name);
+        assertEquals(0, snapshot.totalMax);
+        assertEquals(0, snapshot.totalCurrent);
+
+        db.insertBudget("a", 100);
+        db.insertBudget("b", 50);
+        db.insertTransaction(DBHelper.TransactionDbIds.EXPENSE, "", "", "a", 10, "", 1, "");
+        db.insertTransaction(DBHelper.TransactionDbIds.EXPENSE, "", "", "b", 20, "", 1, "");
+        db.insertTransaction(DBHelper.TransactionDbIds.EXPENSE, "", "", "", 40, "", 1, "");
+        db.insertTransaction(DBHelper.TransactionDbIds.REVENUE, "", "", "", 5, "", 1, "");
+
+        snapshot = db.getBudgetSnapshot(0, 10);
+        assertEquals(2, snapshot.count);
+        assertEquals(db.getBudgetCount(), snapshot.count);
+        checkBudgetsMatch(db.getBudgets(0, 10), snapshot.budgets);
+        assertEquals(35, snapshot.blankBudget.current);
+        assertEquals(db.getBlankBudget(0, 10).current, snapshot.blankBudget.current);
+        assertEquals(150, snapshot.totalMax);
+        assertEquals(65, snapshot.totalCurrent);
+    }
+
+    @Test
+    public void transactionCountsFollowChanges()
+    {
+        final int EXPENSE = DBHelper.TransactionDbIds.EXPENSE;
+        final int REVENUE = DBHelper.TransactionDbIds.REVENUE;
+
+        final long januaryMs = CalendarUtil.getStartOfDayMs(2018, Calendar.JANUARY, 15);
+        final long februaryMs = CalendarUtil.getStartOfDayMs(2018, Calendar.FEBRUARY, 15);
+        final long januaryStartMs = CalendarUtil.getStartOfMonthMs(2018, Calendar.JANUARY);
+        final long januaryEndMs = CalendarUtil.getEndOfMonthMs(2018, Calendar.JANUARY);
+
+        db.insertBudget("budget", 100);
+
+        db.insertTransaction(EXPENSE, "", "", "budget", 1, "", januaryMs, "");
+        db.insertTransaction(EXPENSE, "", "", "budget", 2, "", januaryMs, "");
+        db.insertTransaction(EXPENSE, "", "", "", 4, "", februaryMs, "");
+        db.insertTransaction(REVENUE, "", "", "", 8, "", januaryMs, "");
+
+        assertEquals(3, db.getTransactionCount(EXPENSE));
+        assertEquals(1, db.getTransactionCount(REVENUE));
+        assertEquals(2, db.getTransactionCount(EXPENSE, "budget"));
+        assertEquals(1, db.getTransactionCount(EXPENSE, ""));
+        assertEquals(0, db.getTransactionCount(EXPENSE, "missing"));
+        assertEquals(3, db.getTransactionCount(EXPENSE, null, null));
+        assertEquals(2, db.getTransactionCount(EXPENSE, januaryStartMs, januaryEndMs));
+        assertEquals(2, db.getTransactionCount(EXPENSE, januaryMs, januaryMs));
+
+        // Moving a transaction to another type, budget and month moves its count
+        db.updateTransaction(1, REVENUE, "", "", "", 1, "", februaryMs, "");
+        assertEquals(2, db.getTransactionCount(EXPENSE));
+        assertEquals(2, db.getTransactionCount(REVENUE));
+        assertEquals(1, db.getTransactionCount(EXPENSE, "budget"));
+        assertEquals(2, db.getTransactionCount(REVENUE, ""));
+        assertEquals(1, db.getTransactionCount(EXPENSE, januaryStartMs, januaryEndMs));
+
+        db.deleteTransaction(2);
+        assertEquals(1, db.getTransactionCount(EXPENSE));
+        assertEquals(0, db.getTransactionCount(EXPENSE, "budget"));
+        assertEquals(0, db.getTransactionCount(EXPENSE, januaryStartMs, januaryEndMs));
+    }
+
+    @Test
+    public void budgetComparisons()
+    {
+        final int EXPENSE = DBHelper.TransactionDbIds.EXPENSE;
+        final int REVENUE = DBHelper.TransactionDbIds.REVENUE;
+
+        db.insertBudget("a", 100);
+
+        db.insertTransaction(EXPENSE, "", "", "a", 30, "", CalendarUtil.getStartOfDayMs(2018, Calendar.JUNE, 15), "");
+        db.insertTransaction(EXPENSE, "", "", "a", 20, "", CalendarUtil.getStartOfDayMs(2018, Calendar.MAY, 15), "");
+        db.insertTransaction(EXPENSE, "", "", "a", 40, "", CalendarUtil.getStartOfDayMs(2017, Calendar.JUNE, 15), "");
+        db.insertTransaction(REVENUE, "", "", "a", 10, "", CalendarUtil.getStartOfDayMs(2017, Calendar.JUNE, 16), "");
+        db.insertTransaction(REVENUE, "", "", "", 5, "", CalendarUtil.getStartOfDayMs(2018, Calendar.JUNE, 16), "");
+
+        // Outside of every range compared
+        db.insertTransaction(EXPENSE, "", "", "a", 80, "", CalendarUtil.getStartOfDayMs(2018, Calendar.APRIL, 15), "");
+
+        // Whole months, from the monthly totals, and part of a month, from the transactions
+        for(long [] range : new long[][]
+            {
+                {CalendarUtil.getStartOfMonthMs(2018, Calendar.JUNE), CalendarUtil.getEndOfMonthMs(2018, Calendar.JUNE)},
+                {CalendarUtil.getStartOfDayMs(2018, Calendar.JUNE, 10), CalendarUtil.getEndOfDayMs(2018, Calendar.JUNE, 20)}
+            })
+        {
+            List<BudgetComparison> comparisons = db.getBudgetComparisons(range[0], range[1]);
+            assertEquals(2, comparisons.size());
+
+            BudgetComparison a = comparisons.get(0);
+            assertEquals("a", a.name);
+            assertEquals(3000, a.currentCents);
+            assertEquals(2000, a.lastMonthCents);
+            assertEquals(3000, a.lastYearCents);
+            assertEquals(50.0, a.getMonthChangePercent(), 0.001);
+            assertEquals(0.0, a.getYearChangePercent(), 0.001);
+
+            BudgetComparison blank = comparisons.get(1);
+            assertEquals("", blank.name);
+            assertEquals(-500, blank.currentCents);
+            assertEquals(0, blank.lastMonthCents);
+            assertEquals(0, blank.lastYearCents);
+            assertNull(blank.getMonthChangePercent());
+            assertNull(blank.getYearChangePercent());
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package protect.budgetwatch;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.text.DateFormat;
+import java.util.Calendar;
+import java.util.Locale;
+import java.util.TimeZone;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertSame;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 25)
+public class DateTextCacheTest
+{
+    private Locale _locale;
+    private TimeZone _timeZone;
+
+    @Before
+    public void setUp()
+    {
+        _locale = Locale.getDefault();
+        _timeZone = TimeZone.getDefault();
+    }
+
+    @After
+    public void tearDown()
+    {
+        Locale.setDefault(_locale);
+        TimeZone.setDefault(_timeZone);
+    }
+
+    private static long getMs(int year, int month, int day, int hour)
+    {
+        Calendar date = Calendar.getInstance();
+        date.clear();
+        date.set(year, month, day, hour, 0);
+        return date.getTimeInMillis();
+    }
+
+    @Test
+    public void sameTextAsDateFormat()
+    {
+        for(long dateMs : new long [] {0, getMs(1969, Calendar.DECEMBER, 31, 23),
+                getMs(2017, Calendar.MARCH, 1, 0), getMs(2017, Calendar.MARCH, 1, 23)})
+        {
+            assertEquals(DateFormat.getDateInstance().format(dateMs),
+                    DateTextCache.dates().format(dateMs));
+            assertEquals(DateFormat.getDateTimeInstance(DateFormat.DEFAULT, DateFormat.DEFAULT).format(dateMs),
+                    DateTextCache.dateTimes().format(dateMs));
+        }
+    }
+
+    @Test
+    public void oneEntryPerDay()
+    {
+        String morning = DateTextCache.dates().format(getMs(2017, Calendar.MARCH, 1, 1));
+        String evening = DateTextCache.dates().format(getMs(2017, Calendar.MARCH, 1, 22));
+        String nextDay = DateTextCache.dates().format(getMs(2017, Calendar.MARCH, 2, 1));
+
+        assertSame(morning, evening);
+        assertNotEquals(morning, nextDay);
+    }
+
+    @Test
+    public void formattedAgainOnLocaleOrTimeZoneChange()
+    {
+        Locale.setDefault(Locale.US);
+        TimeZone.setDefault(TimeZone.getTimeZone("UTC"));
+        long dateMs = getMs(2017, Calendar.MARCH, 1, 12);
+
+        assertEquals("Mar 1, 2017", DateTextCache.dates().format(dateMs));
+
+        Locale.setDefault(Locale.GERMANY);
+        assertEquals(DateFormat.getDateInstance().format(dateMs), DateTextCache.dates().format(dateMs));
+
+        // Noon UTC is the next day far enough east
+        Locale.setDefault(Locale.US);
+        TimeZone.setDefault(TimeZone.getTimeZone("Pacific/Kiritimati"));
+        assertEquals("Mar 2, 2017", DateTextCache.dates().format(dateMs));
+    }
+}
@@ -68,7 +68,7 @@ public class MainActivityTest
         ShadowListView shadowList = shadowOf(list);
         shadowList.populateItems();
 
-        // First item should be the Budgets, second should be Transactions
+        // First item should be the Budgets, second Transactions, third Accounts
         shadowList.performItemClick(index);
 
         testNextStartedActivity(activity, expectedActivity);
@@ -86,6 +86,12 @@ public class MainActivityTest
         testItemClickLaunchesActivity(1, "protect.budgetwatch/.TransactionActivity");
     }
 
+    @Test
+    public void clickOnAccounts()
+    {
+        testItemClickLaunchesActivity(2, "protect.budgetwatch/.AccountActivity");
+    }
+
     @Test
     public void testClickSettings()
     {
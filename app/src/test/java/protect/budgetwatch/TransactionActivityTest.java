@@ -10,6 +10,9 @@ import androidx.fragment.app.FragmentStatePagerAdapter;
 import androidx.viewpager.widget.ViewPager;
 import android.view.Menu;
 
+import com.google.common.util.concurrent.MoreExecutors;
+
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Ignore;
 import org.junit.Test;
@@ -21,6 +24,8 @@ import org.robolectric.annotation.Config;
 import org.robolectric.shadows.ShadowActivity;
 import org.robolectric.shadows.ShadowLog;
 
+import java.util.concurrent.Executor;
+
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
@@ -30,11 +35,23 @@ import static org.robolectric.Shadows.shadowOf;
 @Config(sdk = 25)
 public class TransactionActivityTest
 {
+    private Executor _executor;
+
     @Before
     public void setUp()
     {
         // Output logs emitted during tests so they may be accessed
         ShadowLog.stream = System.out;
+
+        // Run queries right away, so the screens are filled in
+        // before they are checked
+        _executor = DatabaseLoader.setExecutor(MoreExecutors.directExecutor());
+    }
+
+    @After
+    public void tearDown()
+    {
+        DatabaseLoader.setExecutor(_executor);
     }
 
     @Test
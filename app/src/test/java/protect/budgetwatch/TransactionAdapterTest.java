@@ -0,0 +1,236 @@
+package protect.budgetwatch;
+
+import android.app.Activity;
+import android.view.View;
+import android.widget.ImageView;
+import android.widget.TextView;
+
+import androidx.recyclerview.widget.RecyclerView;
+
+import com.google.common.util.concurrent.MoreExecutors;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowLog;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Executor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 25)
+public class TransactionAdapterTest
+{
+    private Activity activity;
+    private DBHelper db;
+    private Executor _executor;
+
+    @Before
+    public void setUp()
+    {
+        // Output logs emitted during tests so they may be accessed
+        ShadowLog.stream = System.out;
+
+        // Run queries right away, so the screens are filled in
+        // before they are checked
+        _executor = DatabaseLoader.setExecutor(MoreExecutors.directExecutor());
+
+        activity = Robolectric.setupActivity(BudgetViewActivity.class);
+        db = new DBHelper(activity);
+    }
+
+    @After
+    public void tearDown()
+    {
+        DatabaseLoader.setExecutor(_executor);
+        db.close();
+    }
+
+    @Test
+    public void checkTransaction()
+    {
+        final String DESCRIPTION = "description";
+        final String ACCOUNT = "account";
+        final String BUDGET = "budget";
+        final double VALUE = 100.50;
+        final String NOTE = "note";
+        final long DATE = 0;
+        final String RECEIPT = "receipt";
+
+        for(boolean hasReceipt : new boolean [] {false, true})
+        {
+            for(boolean hasNote : new boolean [] {false, true})
+            {
+                db.insertTransaction(DBHelper.TransactionDbIds.EXPENSE, DESCRIPTION, ACCOUNT, BUDGET,
+                        VALUE, hasNote ? NOTE : "", DATE, hasReceipt ? RECEIPT : "");
+
+                TransactionAdapter adapter = new TransactionAdapter(
+                        new TransactionPageSource(db, DBHelper.TransactionDbIds.EXPENSE, null, null), null);
+                adapter.loadFirstPage();
+                assertEquals(1, adapter.getItemCount());
+                int transactionId = adapter.getItem(0).id;
+
+                TransactionAdapter.ViewHolder holder = adapter.onCreateViewHolder(new RecyclerView(activity), 0);
+                adapter.onBindViewHolder(holder, 0);
+                View view = holder.itemView;
+
+                db.deleteTransaction(transactionId);
+
+                TextView nameField = (TextView) view.findViewById(R.id.name);
+                TextView valueField = (TextView) view.findViewById(R.id.value);
+                TextView dateField = (TextView) view.findViewById(R.id.date);
+                TextView budgetField = (TextView) view.findViewById(R.id.budget);
+                ImageView receiptIcon = (ImageView) view.findViewById(R.id.receiptIcon);
+                View noteLayout = view.findViewById(R.id.noteLayout);
+                TextView noteField = (TextView) view.findViewById(R.id.note);
+
+                assertEquals(hasReceipt ? View.VISIBLE : View.GONE, receiptIcon.getVisibility());
+                assertEquals(DESCRIPTION, nameField.getText().toString());
+                assertEquals(BUDGET, budgetField.getText().toString());
+
+                String expectedValue = String.format(Locale.US, "%.2f", VALUE);
+                assertEquals(expectedValue, valueField.getText().toString());
+
+                // As the date field may be converted using the current locale,
+                // simply check that there is something there.
+                assertTrue(dateField.getText().length() > 0);
+
+                assertEquals(hasNote ? View.VISIBLE : View.GONE, noteLayout.getVisibility());
+                assertEquals(hasNote ? NOTE : "", noteField.getText());
+            }
+        }
+    }
+
+    private static class RecordingObserver extends RecyclerView.AdapterDataObserver
+    {
+        final List<String> events = new ArrayList<>();
+
+        @Override
+        public void onChanged()
+        {
+            events.add("all");
+        }
+
+        @Override
+        public void onItemRangeChanged(int positionStart, int itemCount)
+        {
+            events.add("changed " + positionStart + " " + itemCount);
+        }
+
+        @Override
+        public void onItemRangeInserted(int positionStart, int itemCount)
+        {
+            events.add("inserted " + positionStart + " " + itemCount);
+        }
+
+        @Override
+        public void onItemRangeRemoved(int positionStart, int itemCount)
+        {
+            events.add("removed " + positionStart + " " + itemCount);
+        }
+
+        @Override
+        public void onItemRangeMoved(int fromPosition, int toPosition, int itemCount)
+        {
+            events.add("moved " + fromPosition + " " + toPosition + " " + itemCount);
+        }
+    }
+
+    @Test
+    public void pagesLoadAsListScrolls()
+    {
+        final int COUNT = TransactionAdapter.PAGE_SIZE + 10;
+        for(int index = 0; index < COUNT; index++)
+        {
+            db.insertTransaction(DBHelper.TransactionDbIds.EXPENSE, "description", "account", "budget",
+                    index, "", index, "");
+        }
+
+        TransactionAdapter adapter = new TransactionAdapter(
+                new TransactionPageSource(db, DBHelper.TransactionDbIds.EXPENSE, null, null), null);
+        adapter.loadFirstPage();
+        assertEquals(TransactionAdapter.PAGE_SIZE, adapter.getItemCount());
+
+        // Newest first
+        assertEquals(COUNT - 1, adapter.getItem(0).dateMs);
+
+        // Far from the end of the loaded rows nothing more is read
+        adapter.loadMoreIfNear(0);
+        assertEquals(TransactionAdapter.PAGE_SIZE, adapter.getItemCount());
+
+        adapter.loadMoreIfNear(adapter.getItemCount() - 1);
+        assertEquals(COUNT, adapter.getItemCount());
+        assertEquals(0, adapter.getItem(COUNT - 1).dateMs);
+
+        // No pages remain
+        adapter.loadMoreIfNear(adapter.getItemCount() - 1);
+        assertEquals(COUNT, adapter.getItemCount());
+    }
+
+    @Test
+    public void refreshOnlyUpdatesChangedRows()
+    {
+        final int COUNT = 10;
+        for(int index = 0; index < COUNT; index++)
+        {
+            db.insertTransaction(DBHelper.TransactionDbIds.EXPENSE, "description", "account", "budget",
+                    index, "", index, "");
+        }
+
+        TransactionAdapter adapter = new TransactionAdapter(
+                new TransactionPageSource(db, DBHelper.TransactionDbIds.EXPENSE, null, null), null);
+        adapter.loadFirstPage();
+
+        RecordingObserver observer = new RecordingObserver();
+        adapter.registerAdapterDataObserver(observer);
+
+        TransactionRow third = adapter.getItem(2);
+        db.updateTransaction(third.id, DBHelper.TransactionDbIds.EXPENSE, "changed", "account", "budget",
+                MoneyUtil.toUnits(third.valueCents), "", third.dateMs, "");
+        adapter.refresh();
+
+        assertEquals(1, observer.events.size());
+        assertEquals("changed 2 1", observer.events.get(0));
+        assertEquals("changed", adapter.getItem(2).description);
+
+        observer.events.clear();
+        db.deleteTransaction(adapter.getItem(4).id);
+        adapter.refresh();
+
+        assertEquals(1, observer.events.size());
+        assertEquals("removed 4 1", observer.events.get(0));
+        assertEquals(COUNT - 1, adapter.getItemCount());
+    }
+
+    @Test
+    public void valuesFormattedAsBefore()
+    {
+        long [] values = {0, 1, 9, 10, 99, 100, 1234, 100050, -1, -5, -99, -100, -1234,
+                Long.MAX_VALUE, Long.MIN_VALUE};
+
+        StringBuilder builder = new StringBuilder();
+        for(long cents : values)
+        {
+            builder.setLength(0);
+            String expected = MoneyUtil.toDecimal(cents).toPlainString();
+            assertEquals(expected, MoneyUtil.appendUnits(builder, cents).toString());
+        }
+
+        // The same as the format used before for values which a double holds exactly
+        for(long cents : new long [] {0, 5, 1234, -5, -1234})
+        {
+            builder.setLength(0);
+            assertEquals(String.format(Locale.US, "%.2f", MoneyUtil.toUnits(cents)),
+                    MoneyUtil.appendUnits(builder, cents).toString());
+        }
+    }
+}
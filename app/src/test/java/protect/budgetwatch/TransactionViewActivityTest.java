@@ -21,7 +21,9 @@ import android.widget.Spinner;
 import android.widget.TextView;
 
 import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.MoreExecutors;
 
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -46,6 +48,7 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Locale;
 import java.util.Set;
+import java.util.concurrent.Executor;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
@@ -63,6 +66,7 @@ public class TransactionViewActivityTest
 
     private long nowMs;
     private String nowString;
+    private Executor _executor;
 
     @Before
     public void setUp() throws ParseException
@@ -70,11 +74,21 @@ public class TransactionViewActivityTest
         // Output logs emitted during tests so they may be accessed
         ShadowLog.stream = System.out;
 
+        // Run queries right away, so the screens are filled in
+        // and saved before they are checked
+        _executor = DatabaseLoader.setExecutor(MoreExecutors.directExecutor());
+
         final DateFormat dateFormatter = SimpleDateFormat.getDateInstance();
         nowString = dateFormatter.format(System.currentTimeMillis());
         nowMs = dateFormatter.parse(nowString).getTime();
     }
 
+    @After
+    public void tearDown()
+    {
+        DatabaseLoader.setExecutor(_executor);
+    }
+
     /**
      * Register a handler in the package manager for a image capture intent
      */
@@ -309,6 +323,10 @@ public class TransactionViewActivityTest
         final int editVisibility = isLaunchedAsView ? View.GONE : View.VISIBLE;
         final int viewVisibility = isLaunchedAsView ? View.VISIBLE : View.GONE;
 
+        // The transaction was read, so it is no longer loading
+        checkFieldProperties(activity, R.id.content, View.VISIBLE, null);
+        checkFieldProperties(activity, R.id.loading, View.GONE, null);
+
         checkFieldProperties(activity, R.id.nameEdit, editVisibility, isLaunchedAsView ? "" : name);
         checkFieldProperties(activity, R.id.nameView, viewVisibility, isLaunchedAsView ? name : "");
         checkFieldProperties(activity, R.id.accountEdit, editVisibility, isLaunchedAsView ? "" : account);